@@ -0,0 +1,57 @@
+package org.madladlabs.classz.benchmarks;
+
+import org.madladlabs.classz.ClassExtractor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Getting classes out of the sample archives: unpacking into a staging directory
+ * with {@code extractFromFile}, and streaming them in memory with {@code streamFromFile}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ArchiveBenchmark {
+
+    @Param({"AccessEmployeeWithJPA.ear", "antlr-2.7.7.jar"})
+    public String archive;
+
+    private File input;
+    private Path stagingDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        input = Corpus.sample(archive);
+        stagingDir = Files.createTempDirectory("int-hunter-bench");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(stagingDir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public void extractFromFile() throws Exception {
+        ClassExtractor.extractFromFile(input, stagingDir.toFile());
+    }
+
+    @Benchmark
+    public void streamFromFile(ClassCounter counter, Blackhole blackhole) throws Exception {
+        ClassExtractor.streamFromFile(input, (entryName, in) -> {
+            blackhole.consume(in.readAllBytes());
+            counter.classes++;
+        });
+    }
+}
@@ -0,0 +1,23 @@
+package org.madladlabs.classz.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Classes processed by a benchmark invocation. JMH reports the counter as a rate,
+ * which gives throughput in classes per second next to the per-call score.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ClassCounter {
+
+    public long classes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        classes = 0;
+    }
+}
@@ -0,0 +1,65 @@
+package org.madladlabs.classz.benchmarks;
+
+import org.madladlabs.classz.ClassExtractor;
+import org.madladlabs.classz.tools.SyntheticArchiveGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Class files the benchmarks run on: a sample archive, or generated classes. */
+final class Corpus {
+
+    static final String SYNTHETIC = "synthetic";
+
+    /** Where the sample archives live; benchmarks are normally run from the project root. */
+    private static final String SAMPLES_DIR =
+            System.getProperty("intHunter.samples", "src/test/resources/archive-samples");
+
+    private Corpus() {
+    }
+
+    /** @return the bytes of every class in {@code name}, or of the synthetic corpus */
+    static List<byte[]> load(String name, int syntheticCount) throws Exception {
+        return SYNTHETIC.equals(name) ? synthetic(syntheticCount) : fromArchive(sample(name));
+    }
+
+    static File sample(String name) throws IOException {
+        File archive = new File(SAMPLES_DIR, name);
+        if (!archive.isFile()) {
+            throw new IOException("Sample archive not found: " + archive.getAbsolutePath()
+                    + " (run from the project root or set -DintHunter.samples)");
+        }
+        return archive;
+    }
+
+    static List<byte[]> fromArchive(File archive) throws IOException {
+        List<byte[]> classes = new ArrayList<>();
+        ClassExtractor.streamFromFile(archive, (entryName, in) -> classes.add(in.readAllBytes()));
+        return classes;
+    }
+
+    /** Writes {@code classes} below {@code dir} as {@code Class<n>.class} files. */
+    static void writeTo(Path dir, List<byte[]> classes) throws IOException {
+        Files.createDirectories(dir);
+        for (int i = 0; i < classes.size(); i++) {
+            Files.write(dir.resolve("Class" + i + ".class"), classes.get(i));
+        }
+    }
+
+    /**
+     * Roughly one in four classes each: a plain-JDBC DAO, a JdbcTemplate DAO, a JPA
+     * entity with int fields, and a class with no database access at all.
+     */
+    static List<byte[]> synthetic(int count) throws IOException {
+        List<byte[]> classes = new ArrayList<>(count);
+        new SyntheticArchiveGenerator()
+                .classes(count)
+                .densities(0.25, 0.25, 0.25)
+                .forEachClass((entryName, bytes) -> classes.add(bytes));
+        return classes;
+    }
+}
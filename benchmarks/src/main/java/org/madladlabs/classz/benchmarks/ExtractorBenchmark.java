@@ -0,0 +1,68 @@
+package org.madladlabs.classz.benchmarks;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import org.madladlabs.classz.spi.IBytecodeVisitor;
+import org.madladlabs.classz.spi.IExtractor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code IExtractor.process} for one registered extractor over a whole corpus,
+ * including the Javassist parse every extractor needs. The {@code classes} counter
+ * is the throughput in classes per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ExtractorBenchmark {
+
+    @Param({"HibernateIntField", "PreparedStatement", "JdbcTemplateInt"})
+    public String extractor;
+
+    @Param({Corpus.SYNTHETIC, "AccessEmployeeWithJPA.ear"})
+    public String corpus;
+
+    private IExtractor subject;
+    private List<byte[]> classes;
+    private ClassPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        subject = find(extractor);
+        classes = Corpus.load(corpus, 2000);
+        pool = new ClassPool(true);
+    }
+
+    @Benchmark
+    public void process(ClassCounter counter, Blackhole blackhole) throws Exception {
+        for (byte[] bytes : classes) {
+            CtClass ctClass = pool.makeClass(new ByteArrayInputStream(bytes));
+            try {
+                subject.process(ctClass, blackhole::consume);
+            } finally {
+                ctClass.detach();
+            }
+            counter.classes++;
+        }
+    }
+
+    /** Registered extractors by name – including bytecode visitors that are also extractors. */
+    private static IExtractor find(String name) {
+        for (IExtractor e : ServiceLoader.load(IExtractor.class)) {
+            if (e.name().equals(name)) return e;
+        }
+        for (IBytecodeVisitor v : ServiceLoader.load(IBytecodeVisitor.class)) {
+            if (v.name().equals(name) && v instanceof IExtractor) return (IExtractor) v;
+        }
+        throw new IllegalArgumentException("No extractor named " + name);
+    }
+}
@@ -0,0 +1,109 @@
+package org.madladlabs.classz.benchmarks;
+
+import org.madladlabs.classz.cache.FindingCache;
+import org.madladlabs.classz.engine.ScanEngine;
+import org.madladlabs.classz.model.Finding;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Heap held by the findings of a full {@code ScanEngine.scanDirectory} run, as a writer
+ * that keeps every finding would hold it: the used heap after a GC, with the findings
+ * still reachable and the engine dropped, less the used heap before the scan. With
+ * {@code cached} the scan is a re-scan answered from a warm {@link FindingCache}, the
+ * path incremental runs take. Reported as {@code retainedBytes} next to the number of
+ * {@code findings}, both summed over the measured scans.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class FindingHeapBenchmark {
+
+    @Param({"20000"})
+    public int classes;
+
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private Path workDir;
+    private Path classesDir;
+    private FindingCache cache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workDir = Files.createTempDirectory("int-hunter-bench");
+        classesDir = workDir.resolve("classes");
+        Corpus.writeTo(classesDir, Corpus.synthetic(classes));
+        if (cached) {
+            ScanEngine engine = newEngine(new ArrayList<>());
+            cache = FindingCache.load(workDir.resolve("findings.cache"), engine.getExtractorFingerprint(), classes);
+            engine.setCache(cache);
+            engine.scanDirectory(classesDir);          // every later scan is answered from the cache
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(workDir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public List<Finding> scanDirectory(RetainedHeap heap) throws Exception {
+        List<Finding> findings = new ArrayList<>();
+        long before = RetainedHeap.usedAfterGc();
+        ScanEngine engine = newEngine(findings);
+        engine.scanDirectory(classesDir);
+        engine = null;                                  // its dictionary and class pools are not counted
+        heap.retainedBytes += RetainedHeap.usedAfterGc() - before;
+        heap.findings += findings.size();
+        return findings;
+    }
+
+    private ScanEngine newEngine(List<Finding> findings) {
+        ScanEngine engine = new ScanEngine(findings::add);
+        engine.loadExtractors();
+        if (cache != null) {
+            engine.setCache(cache);
+        }
+        return engine;
+    }
+
+    /** Heap retained by the findings of the scans of an iteration, and how many there were. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RetainedHeap {
+
+        public long retainedBytes;
+        public long findings;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedBytes = 0;
+            findings = 0;
+        }
+
+        static long usedAfterGc() throws InterruptedException {
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+                Thread.sleep(50);
+            }
+            return memory.getHeapMemoryUsage().getUsed();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.madladlabs.classz.benchmarks;
+
+import org.madladlabs.classz.engine.ScanEngine;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A full {@code ScanEngine.scanDirectory} run with every registered extractor: file
+ * reads, constant-pool prefilter, Javassist parse and the extractors themselves.
+ * The GC profiler only sees the benchmark thread, so with {@code threads > 1} the
+ * allocation rate leaves out what the analysis workers allocate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ScanEngineBenchmark {
+
+    @Param({Corpus.SYNTHETIC, "AccessEmployeeWithJPA.ear"})
+    public String corpus;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private Path classesDir;
+    private ScanEngine engine;
+    private Blackhole blackhole;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) throws Exception {
+        this.blackhole = blackhole;
+        classesDir = Files.createTempDirectory("int-hunter-bench");
+        Corpus.writeTo(classesDir, Corpus.load(corpus, 5000));
+
+        engine = new ScanEngine(finding -> this.blackhole.consume(finding));
+        engine.loadExtractors();
+        engine.setThreads(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(classesDir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public void scanDirectory(ClassCounter counter) throws Exception {
+        engine.scanDirectory(classesDir);
+        counter.classes += engine.getClassesScanned();
+    }
+}
@@ -0,0 +1,34 @@
+package org.madladlabs.classz;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Callback used by {@link ClassExtractor#streamFromFile(java.io.File, ClassEntryHandler)}
+ * for every {@code .class} entry found while walking an archive.
+ *
+ * The stream is only valid for the duration of the call and must not be closed
+ * by the handler – it usually belongs to the enclosing archive.
+ */
+@FunctionalInterface
+public interface ClassEntryHandler {
+    void onClass(String entryName, InputStream in) throws IOException;
+
+    /**
+     * Called before the entries of a nested jar/war/ear are streamed. The fingerprint
+     * identifies the nested archive's content (see {@link ClassExtractor#fingerprint}).
+     *
+     * @return false to skip the archive without opening any of its entries
+     */
+    default boolean enterArchive(String entryName, String fingerprint) throws IOException {
+        return true;
+    }
+
+    /**
+     * Called after a nested archive that was entered. {@code complete} is false if
+     * streaming it was cut short by an error, or if any of its entries – at any depth –
+     * could not be read.
+     */
+    default void exitArchive(String entryName, boolean complete) throws IOException {
+    }
+}
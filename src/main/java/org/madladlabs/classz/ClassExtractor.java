@@ -2,22 +2,32 @@ package org.madladlabs.classz;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.madladlabs.classz.metrics.ScanMetrics;
 
 import java.io.*;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Random;
-import java.util.jar.JarFile;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.HexFormat;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 public class ClassExtractor {
     private static final Logger logger = LogManager.getLogger(ClassExtractor.class);
 
-
+    private static final String ZIP_ENCODING = "UTF8";
+    private static final long MAX_BUFFERED_ENTRY = Integer.MAX_VALUE - 8;
 
     /**
      * Converts an archive entry such as
@@ -66,48 +76,47 @@ public class ClassExtractor {
 
 
     public static void extractFromFile(File file, File outputDir) throws IOException {
+        streamFromFile(file, (entryName, in) -> saveEntry(in, new File(outputDir, entryName)));
+    }
+
+    /**
+     * Streams every {@code .class} entry of an archive – including the ones inside
+     * nested jar/war/ear entries, at any depth – straight to {@code handler}.
+     *
+     * Nothing is written to disk. A nested archive is opened in place: a STORED entry
+     * through a {@link SeekableChannelSlice} over the enclosing archive, a compressed
+     * one from an in-memory copy of the entry. The handler can skip a nested archive
+     * by its fingerprint before any of its entries are read.
+     */
+    public static void streamFromFile(File file, ClassEntryHandler handler) throws IOException {
+        streamFromFile(file, handler, new ScanMetrics());
+    }
+
+    /**
+     * Same as {@link #streamFromFile(File, ClassEntryHandler)}, counting the entries
+     * visited, nested archives opened and entry bytes read into {@code metrics}.
+     */
+    public static void streamFromFile(File file, ClassEntryHandler handler, ScanMetrics metrics) throws IOException {
         String name = file.getName().toLowerCase();
-        Random random = new Random();
         if (name.endsWith(".jar") || name.endsWith(".war") || name.endsWith(".ear") || name.endsWith(".zip")) {
-            try (JarFile jarFile = new JarFile(file)) {
-                jarFile.stream().forEach(entry -> {
-                    try {
-                        if (entry.isDirectory()) return;
-                        String entryName = entry.getName();
-
-                        if (entryName.endsWith(".class")) {
-                            saveEntry(jarFile.getInputStream(entry), new File(outputDir, entryName));
-                        } else if (entryName.endsWith(".jar") || entryName.endsWith(".war") || entryName.endsWith(".ear")) {
-                            logger.info("processing entry: "+ entryName);
-                            String newName = toHostPath(entryName).toString();
-
-                            logger.info("converted entry name: "+ newName);
-                            String suffixString = newName.substring(newName.lastIndexOf(File.separator) + 1);
-                            File tempFile = File.createTempFile(Integer.toString(random.nextInt()), suffixString);//".zip");
-                            tempFile.deleteOnExit();
-                            saveEntry(jarFile.getInputStream(entry), tempFile);
-                            extractFromFile(tempFile, outputDir);
-                        }
-                    } catch (IOException e) {
-                        logger.error("Error extracting entry: " + entry.getName(), e);
-                    }
-                });
+            SeekableByteChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try (ZipFile zipFile = new ZipFile(channel, file.getName(), ZIP_ENCODING, true)) {   // closes channel
+                streamFromZip(zipFile, channel, handler, metrics);
             }
         } else if (name.endsWith(".tar")) {
             try (TarArchiveInputStream tarIn = new TarArchiveInputStream(new FileInputStream(file))) {
                 TarArchiveEntry entry;
                 while ((entry = tarIn.getNextTarEntry()) != null) {
                     if (entry.isDirectory()) continue;
+                    metrics.entryVisited();
 
                     String entryName = entry.getName().toLowerCase();
-                    File tempFile = File.createTempFile("tarEntry", null);
-                    tempFile.deleteOnExit();
-                    saveEntry(tarIn, tempFile);
-
                     if (entryName.endsWith(".class")) {
-                        saveEntry(new FileInputStream(tempFile), new File(outputDir, entry.getName()));
-                    } else if (entryName.endsWith(".jar") || entryName.endsWith(".war") || entryName.endsWith(".ear")) {
-                        extractFromFile(tempFile, outputDir);
+                        handler.onClass(entry.getName(), new MeteredInputStream(tarIn, metrics));
+                    } else if (isNestedArchive(entryName)) {
+                        logger.info("opening nested entry: {}", entry.getName());
+                        byte[] buffer = readEntry(new MeteredInputStream(tarIn, metrics), entry.getSize(), entry.getName());
+                        streamFromNested(new SeekableInMemoryByteChannel(buffer), entry.getName(), handler, metrics);
                     }
                 }
             }
@@ -116,6 +125,148 @@ public class ClassExtractor {
         }
     }
 
+    /**
+     * Walks one (possibly nested) zip archive. {@code channel} is the channel the
+     * archive was opened on, so STORED children can be sliced out of it.
+     *
+     * @return the number of entries that could not be read – logged and skipped – counting
+     *         a nested archive that was not read in full as one
+     */
+    private static int streamFromZip(ZipFile zipFile, SeekableByteChannel channel,
+                                     ClassEntryHandler handler, ScanMetrics metrics) throws IOException {
+        int failures = 0;
+        Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+        while (entries.hasMoreElements()) {
+            ZipArchiveEntry entry = entries.nextElement();
+            if (entry.isDirectory()) continue;
+            String entryName = entry.getName();
+            metrics.entryVisited();
+
+            try {
+                if (entryName.endsWith(".class")) {
+                    try (InputStream in = new MeteredInputStream(zipFile.getInputStream(entry), metrics)) {
+                        handler.onClass(entryName, in);
+                    }
+                } else if (isNestedArchive(entryName)) {
+                    logger.info("opening nested entry: {}", entryName);
+                    SeekableByteChannel nested;
+                    if (entry.getMethod() == ZipEntry.STORED && entry.getDataOffset() >= 0) {
+                        nested = new SeekableChannelSlice(channel, entry.getDataOffset(), entry.getSize());
+                    } else {
+                        try (InputStream in = new MeteredInputStream(zipFile.getInputStream(entry), metrics)) {
+                            nested = new SeekableInMemoryByteChannel(readEntry(in, entry.getSize(), entryName));
+                        }
+                    }
+                    if (!streamFromNested(nested, entryName, handler, metrics)) {
+                        failures++;
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Error extracting entry: " + entryName, e);
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    /** @return false if some entry of the nested archive could not be read */
+    private static boolean streamFromNested(SeekableByteChannel nested, String entryName,
+                                         ClassEntryHandler handler, ScanMetrics metrics) throws IOException {
+        try (ZipFile nestedZip = new ZipFile(nested, entryName, ZIP_ENCODING, true)) {
+            metrics.nestedArchiveOpened();
+            if (!handler.enterArchive(entryName, fingerprint(nestedZip))) {
+                logger.info("skipping unchanged nested entry: {}", entryName);
+                return true;
+            }
+            boolean complete = false;
+            try {
+                complete = streamFromZip(nestedZip, nested, handler, metrics) == 0;
+            } finally {
+                handler.exitArchive(entryName, complete);
+            }
+            return complete;
+        }
+    }
+
+    /**
+     * Content fingerprint of an archive, computed from its central directory alone:
+     * the SHA-256 of every entry's name, CRC-32 and size. No entry data is read, and
+     * the same jar gets the same fingerprint wherever it is nested.
+     */
+    public static String fingerprint(ZipFile zipFile) {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        ByteBuffer numbers = ByteBuffer.allocate(2 * Long.BYTES);
+        Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+        while (entries.hasMoreElements()) {
+            ZipArchiveEntry entry = entries.nextElement();
+            sha256.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+            numbers.clear();
+            numbers.putLong(entry.getCrc()).putLong(entry.getSize());
+            sha256.update(numbers.array());
+        }
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+
+    /** Copies a nested archive entry into memory, pre-sized when the entry size is known. */
+    private static byte[] readEntry(InputStream in, long size, String entryName) throws IOException {
+        if (size > MAX_BUFFERED_ENTRY) {
+            throw new IOException("Nested archive too large to buffer in memory: " + entryName);
+        }
+        if (size < 0) {
+            return in.readAllBytes();
+        }
+        byte[] buffer = in.readNBytes((int) size);
+        if (buffer.length != size) {
+            throw new EOFException("Truncated nested archive: " + entryName);
+        }
+        return buffer;
+    }
+
+    private static boolean isNestedArchive(String entryName) {
+        return entryName.endsWith(".jar") || entryName.endsWith(".war") || entryName.endsWith(".ear");
+    }
+
+    /**
+     * Counts the bytes read from an entry, and the time spent reading them – mostly
+     * inflating – into the scan metrics. Closing it closes the wrapped stream.
+     */
+    private static final class MeteredInputStream extends FilterInputStream {
+        private final ScanMetrics metrics;
+
+        MeteredInputStream(InputStream in, ScanMetrics metrics) {
+            super(in);
+            this.metrics = metrics;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            int b = in.read();
+            metrics.decompressed(b < 0 ? 0 : 1, System.nanoTime() - start);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int n = in.read(b, off, len);
+            metrics.decompressed(Math.max(n, 0), System.nanoTime() - start);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            metrics.decompressed(skipped, 0);
+            return skipped;
+        }
+    }
+
     private static void saveEntry(InputStream in, File outFile) throws IOException {
         outFile.getParentFile().mkdirs();
         try (OutputStream out = new FileOutputStream(outFile)) {
@@ -0,0 +1,106 @@
+package org.madladlabs.classz;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Read-only window over {@code [offset, offset + size)} of another channel.
+ *
+ * Used to open a STORED (uncompressed) nested archive in place: the bytes of the
+ * inner jar sit verbatim inside the outer file, so the inner {@code ZipFile} can
+ * seek around in them without anything being copied. Closing a slice never closes
+ * the parent channel.
+ */
+final class SeekableChannelSlice implements SeekableByteChannel {
+
+    private final SeekableByteChannel parent;
+    private final long offset;
+    private final long size;
+    private long position;
+    private boolean open = true;
+
+    SeekableChannelSlice(SeekableByteChannel parent, long offset, long size) {
+        this.parent = parent;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        long remaining = size - position;
+        if (remaining <= 0) return -1;
+
+        ByteBuffer window = dst;
+        if (dst.remaining() > remaining) {
+            window = dst.slice();
+            window.limit((int) remaining);
+        }
+
+        int read;
+        if (parent instanceof FileChannel) {
+            read = ((FileChannel) parent).read(window, offset + position);   // positional, no shared state
+        } else {
+            synchronized (parent) {
+                parent.position(offset + position);
+                read = parent.read(window);
+            }
+        }
+
+        if (window != dst && read > 0) {
+            dst.position(dst.position() + read);
+        }
+        if (read > 0) position += read;
+        return read;
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position: " + newPosition);
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long newSize) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) throw new ClosedChannelException();
+    }
+}
@@ -0,0 +1,141 @@
+package org.madladlabs.classz.cache;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.madladlabs.classz.model.Finding;
+import org.madladlabs.classz.model.FindingCodec;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent record of the nested archives already scanned, by content fingerprint
+ * (see {@code ClassExtractor.fingerprint}), with everything they were found to
+ * contain. A recorded archive – clean or not – can be skipped on later runs and its
+ * findings replayed without opening a single entry.
+ *
+ * Like {@link FindingCache}, a store is only valid for the extractor fingerprint it
+ * was written with. Thread-safe.
+ */
+public class ArchiveFingerprintStore {
+
+    private static final Logger logger = LogManager.getLogger(ArchiveFingerprintStore.class);
+
+    private static final int MAGIC = 0x49484146;         // "IHAF"
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path file;
+    private final String extractorFingerprint;
+    private final Map<String, List<Finding>> archives = new HashMap<>();
+
+    private long skipped;
+    private long recorded;
+
+    private ArchiveFingerprintStore(Path file, String extractorFingerprint) {
+        this.file = file;
+        this.extractorFingerprint = extractorFingerprint;
+    }
+
+    /**
+     * Opens the store kept in {@code file}. A missing, unreadable or stale file
+     * (written for another extractor fingerprint) gives an empty store.
+     */
+    public static ArchiveFingerprintStore load(Path file, String extractorFingerprint) {
+        ArchiveFingerprintStore store = new ArchiveFingerprintStore(file, extractorFingerprint);
+        if (!Files.exists(file)) {
+            return store;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                logger.warn("Ignoring archive fingerprint store in an unknown format: " + file);
+                return store;
+            }
+            if (!extractorFingerprint.equals(in.readUTF())) {
+                logger.info("Extractor versions changed, starting with an empty archive fingerprint store");
+                return store;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String fingerprint = in.readUTF();
+                int findingCount = in.readInt();
+                List<Finding> findings = new ArrayList<>(findingCount);
+                for (int j = 0; j < findingCount; j++) {
+                    findings.add(FindingCodec.read(in));
+                }
+                store.archives.put(fingerprint, findings);
+            }
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable archive fingerprint store: " + file, e);
+            store.archives.clear();
+        }
+        return store;
+    }
+
+    /**
+     * @return the findings recorded for a nested archive – empty if it was clean – or
+     *         null if it has not been scanned before. A non-null result counts as a skip.
+     */
+    public synchronized List<Finding> lookup(String fingerprint) {
+        List<Finding> findings = archives.get(fingerprint);
+        if (findings != null) {
+            skipped++;
+        }
+        return findings;
+    }
+
+    public synchronized void record(String fingerprint, List<Finding> findings) {
+        archives.put(fingerprint, List.copyOf(findings));
+        recorded++;
+    }
+
+    /** Writes the store back to its file, replacing it atomically. */
+    public synchronized void save() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(extractorFingerprint);
+                out.writeInt(archives.size());
+                for (Map.Entry<String, List<Finding>> entry : archives.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().size());
+                    for (Finding f : entry.getValue()) {
+                        FindingCodec.write(out, f);
+                    }
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        logger.info("Saved " + archives.size() + " archive fingerprints to " + file);
+    }
+
+    public synchronized int size() {
+        return archives.size();
+    }
+
+    /** Nested archives skipped this run because their fingerprint was already recorded. */
+    public synchronized long getSkipped() {
+        return skipped;
+    }
+
+    /** Nested archives scanned and recorded this run. */
+    public synchronized long getRecorded() {
+        return recorded;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("skipped=%d, recorded=%d, known=%d", skipped, recorded, archives.size());
+    }
+}
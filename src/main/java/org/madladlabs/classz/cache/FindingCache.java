@@ -0,0 +1,184 @@
+package org.madladlabs.classz.cache;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.madladlabs.classz.model.Finding;
+import org.madladlabs.classz.model.FindingCodec;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent map from the SHA-256 of a class file to the findings the extractors
+ * produced for it, so an unchanged class does not have to be analysed again.
+ *
+ * The whole cache belongs to one extractor fingerprint (the names and versions of
+ * the loaded extractors). A file written under a different fingerprint is ignored,
+ * which is how bumping an extractor's {@code version()} invalidates old results.
+ * At most {@code maxEntries} classes are kept; the least recently used go first.
+ *
+ * Thread-safe: the scan workers look classes up concurrently.
+ */
+public class FindingCache {
+
+    private static final Logger logger = LogManager.getLogger(FindingCache.class);
+
+    private static final int MAGIC = 0x49484643;         // "IHFC"
+    private static final int FORMAT_VERSION = 1;
+    private static final int DIGEST_LENGTH = 32;
+
+    private final Path file;
+    private final String fingerprint;
+    private final int maxEntries;
+    private final LinkedHashMap<Key, List<Finding>> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private FindingCache(Path file, String fingerprint, int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be >= 1, was " + maxEntries);
+        }
+        this.file = file;
+        this.fingerprint = fingerprint;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<Finding>> eldest) {
+                if (size() <= FindingCache.this.maxEntries) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Opens the cache stored in {@code file}. A missing, unreadable or stale file
+     * (written for another extractor fingerprint) gives an empty cache.
+     */
+    public static FindingCache load(Path file, String fingerprint, int maxEntries) {
+        FindingCache cache = new FindingCache(file, fingerprint, maxEntries);
+        if (!Files.exists(file)) {
+            return cache;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                logger.warn("Ignoring finding cache in an unknown format: " + file);
+                return cache;
+            }
+            if (!fingerprint.equals(in.readUTF())) {
+                logger.info("Extractor versions changed, starting with an empty finding cache");
+                return cache;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                byte[] digest = new byte[DIGEST_LENGTH];
+                in.readFully(digest);
+                int findingCount = in.readInt();
+                List<Finding> findings = new ArrayList<>(findingCount);
+                for (int j = 0; j < findingCount; j++) {
+                    findings.add(FindingCodec.read(in));
+                }
+                cache.entries.put(new Key(digest), findings);
+            }
+            cache.evictions = 0;                 // trimming an oversized file is not a run statistic
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable finding cache: " + file, e);
+            cache.entries.clear();
+        }
+        return cache;
+    }
+
+    /** @return the cached findings for a class, or null if it has not been seen */
+    public synchronized List<Finding> get(byte[] digest) {
+        List<Finding> findings = entries.get(new Key(digest));
+        if (findings == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return findings;
+    }
+
+    public synchronized void put(byte[] digest, List<Finding> findings) {
+        entries.put(new Key(digest.clone()), List.copyOf(findings));
+    }
+
+    /** Writes the cache back to its file, replacing it atomically. */
+    public synchronized void save() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(fingerprint);
+                out.writeInt(entries.size());
+                for (Map.Entry<Key, List<Finding>> entry : entries.entrySet()) {
+                    out.write(entry.getKey().digest);
+                    out.writeInt(entry.getValue().size());
+                    for (Finding f : entry.getValue()) {
+                        FindingCodec.write(out, f);
+                    }
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        logger.info("Saved finding cache (" + entries.size() + " classes) to " + file);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        return String.format("hits=%d, misses=%d (%.1f%% hit rate), evicted=%d, entries=%d",
+                hits, misses, lookups == 0 ? 0.0 : 100.0 * hits / lookups, evictions, entries.size());
+    }
+
+    /** A SHA-256 digest with value semantics. */
+    private static final class Key {
+        final byte[] digest;
+        final int hash;
+
+        Key(byte[] digest) {
+            this.digest = digest;
+            this.hash = Arrays.hashCode(digest);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(digest, ((Key) o).digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -2,8 +2,13 @@ package org.madladlabs.classz.cli;
 
 import org.apache.commons.cli.*;
 import org.madladlabs.classz.ClassExtractor;
+import org.madladlabs.classz.cache.ArchiveFingerprintStore;
+import org.madladlabs.classz.cache.FindingCache;
 import org.madladlabs.classz.engine.ScanEngine;
-import org.madladlabs.classz.reporting.ReportAggregator;
+import org.madladlabs.classz.reporting.BinaryFindingReader;
+import org.madladlabs.classz.reporting.FindingSink;
+import org.madladlabs.classz.reporting.FindingSinks;
+import org.madladlabs.classz.reporting.SortingFindingWriter;
 
 import java.io.File;
 import java.nio.file.Files;
@@ -20,11 +25,36 @@ import org.apache.logging.log4j.Logger;
  * 1) Existing behaviour – scan an exploded classes directory
  *    java -jar int-hunter.jar --classesDir /opt/app/WEB-INF/classes --out findings.csv
  *
- * 2) NEW behaviour – scan an archive (will unpack to a temp dir if --stagingDir omitted)
+ * 2) NEW behaviour – scan an archive in memory (nothing is unpacked when --stagingDir is omitted)
  *    java -jar int-hunter.jar --archiveFile /opt/app/app.war --out findings.csv
  *
  * 3) NEW behaviour – scan an archive, supplying your own staging folder
  *    java -jar int-hunter.jar --archiveFile app.war --stagingDir /tmp/ih-work --out findings.json
+ *
+ * 4) Analyse classes on 8 worker threads (output order is unchanged)
+ *    java -jar int-hunter.jar --classesDir /opt/app/WEB-INF/classes --threads 8 --out findings.csv
+ *
+ * 5) Nightly re-scan that only analyses classes changed since the last run
+ *    java -jar int-hunter.jar --archiveFile app.ear --cacheFile ~/.int-hunter/cache.bin --out findings.csv
+ *
+ * 6) Skip nested jars (third-party libraries) already scanned on an earlier run
+ *    java -jar int-hunter.jar --archiveFile app.ear --fingerprintStore ~/.int-hunter/jars.bin --out findings.csv
+ *
+ * 7) Stream findings as JSON Lines in scan order, e.g. into a log pipeline
+ *    java -jar int-hunter.jar --archiveFile app.ear --unsorted --out findings.jsonl
+ *
+ * 8) Keep raw findings in the compact binary format, and convert them later
+ *    java -jar int-hunter.jar --archiveFile app.ear --out findings.ihb
+ *    java -jar int-hunter.jar --convertFrom findings.ihb --out findings.csv
+ *
+ * 9) Find out where a slow scan spends its time, down to each extractor
+ *    java -jar int-hunter.jar --archiveFile app.ear --timeVisitors --metricsFile metrics.json --out findings.csv
+ *
+ * 10) Give up on any class an extractor spends more than 500ms on, and list the 25 slowest
+ *    java -jar int-hunter.jar --archiveFile app.ear --classBudgetMillis 500 --slowClasses 25 --out findings.csv
+ *
+ * 11) Follow SQL kept in constants and helper methods of other classes (reads the archive twice)
+ *    java -jar int-hunter.jar --archiveFile app.ear --prePass --threads 8 --out findings.csv
  */
 public class IntHunterCLI {
 
@@ -35,7 +65,7 @@ public class IntHunterCLI {
          * ──────────────────────────── */
         Options options = new Options();
 
-        // Mutually-exclusive: either --classesDir or --archiveFile must be supplied
+        // Mutually-exclusive: one of --classesDir, --archiveFile or --convertFrom must be supplied
         OptionGroup inputGroup = new OptionGroup();
 
         Option classesDirOpt = Option.builder()
@@ -49,12 +79,20 @@ public class IntHunterCLI {
                 .longOpt("archiveFile")
                 .hasArg()
                 .argName("jar/war/ear/zip/tar")
-                .desc("Archive to analyse (will be unpacked first)")
+                .desc("Archive to analyse (streamed in memory unless --stagingDir is given)")
+                .build();
+
+        Option convertOpt = Option.builder()
+                .longOpt("convertFrom")
+                .hasArg()
+                .argName("file.ihb")
+                .desc("Convert a binary findings file to the --out format instead of scanning")
                 .build();
 
         inputGroup.addOption(classesDirOpt);
         inputGroup.addOption(archiveOpt);
-        inputGroup.setRequired(true);               // one of the two is mandatory
+        inputGroup.addOption(convertOpt);
+        inputGroup.setRequired(true);               // exactly one of the three is mandatory
         options.addOptionGroup(inputGroup);
 
         // Optional staging dir (only meaningful with --archiveFile)
@@ -62,7 +100,7 @@ public class IntHunterCLI {
                 .longOpt("stagingDir")
                 .hasArg()
                 .argName("dir")
-                .desc("Working directory where archive will be unpacked; created if absent")
+                .desc("Unpack the archive into this directory before scanning; created if absent")
                 .required(false)
                 .build());
 
@@ -71,7 +109,95 @@ public class IntHunterCLI {
                 .longOpt("out")
                 .hasArg()
                 .argName("file")
-                .desc("Output report (json|csv|html). Default: scan-report.json")
+                .desc("Output report (json|jsonl|csv|ihb), chosen by extension. Default: scan-report.json")
+                .required(false)
+                .build());
+
+        // Worker threads for class analysis (defaults to a single-threaded scan)
+        options.addOption(Option.builder()
+                .longOpt("threads")
+                .hasArg()
+                .argName("N")
+                .desc("Number of threads used to analyse classes. Default: 1")
+                .required(false)
+                .build());
+
+        // Findings of unchanged classes are replayed from this file on the next run
+        options.addOption(Option.builder()
+                .longOpt("cacheFile")
+                .hasArg()
+                .argName("file")
+                .desc("Finding cache keyed by class content; created if absent")
+                .required(false)
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt("cacheMaxEntries")
+                .hasArg()
+                .argName("N")
+                .desc("Classes kept in the finding cache, least recently used evicted first. Default: 500000")
+                .required(false)
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt("unsorted")
+                .desc("Write findings in scan order as they are found instead of sorting by class")
+                .required(false)
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt("sortBufferSize")
+                .hasArg()
+                .argName("N")
+                .desc("Findings sorted in memory before a run is spilled to disk. Default: 100000")
+                .required(false)
+                .build());
+
+        // Nested jars recorded here are skipped on later runs (only with a streamed --archiveFile)
+        options.addOption(Option.builder()
+                .longOpt("fingerprintStore")
+                .hasArg()
+                .argName("file")
+                .desc("Record of nested archives already scanned; unchanged ones are skipped. Ignored with --stagingDir")
+                .required(false)
+                .build());
+
+        // Counters and per-stage timings; always summarised on stdout, optionally saved as JSON
+        options.addOption(Option.builder()
+                .longOpt("metricsFile")
+                .hasArg()
+                .argName("file")
+                .desc("Write scan counters and per-stage / per-extractor timings to this JSON file")
+                .required(false)
+                .build());
+
+        // Huge generated methods (JSP servlets, ORM proxies) can take an extractor a long time
+        options.addOption(Option.builder()
+                .longOpt("classBudgetMillis")
+                .hasArg()
+                .argName("ms")
+                .desc("Time an extractor may spend on one class before it is stopped and reported. Default: no limit")
+                .required(false)
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt("slowClasses")
+                .hasArg()
+                .argName("N")
+                .desc("Number of slowest classes to report. Default: 10")
+                .required(false)
+                .build());
+
+        options.addOption(Option.builder()
+                .longOpt("timeVisitors")
+                .desc("Time each bytecode visitor separately (slightly slower scan)")
+                .required(false)
+                .build());
+
+        // SQL defined in one class and prepared in another; disables the cache and fingerprint store
+        options.addOption(Option.builder()
+                .longOpt("prePass")
+                .desc("Index SQL held in String fields and helper methods across the input before scanning it")
                 .required(false)
                 .build());
 
@@ -80,32 +206,68 @@ public class IntHunterCLI {
          * ──────────────────────────── */
         CommandLineParser parser = new DefaultParser();
         CommandLine cmd;
+        int threads;
+        int sortBufferSize;
+        long classBudgetMillis;
+        int slowClasses;
+        int cacheMaxEntries;
         try {
             cmd = parser.parse(options, args);
+            threads = (int) numberOption(cmd, "threads", 1, 1, Integer.MAX_VALUE);
+            sortBufferSize = (int) numberOption(cmd, "sortBufferSize", 100000, 1, Integer.MAX_VALUE);
+            classBudgetMillis = numberOption(cmd, "classBudgetMillis", 0, 0, Long.MAX_VALUE);
+            slowClasses = (int) numberOption(cmd, "slowClasses", 10, 0, Integer.MAX_VALUE);
+            cacheMaxEntries = (int) numberOption(cmd, "cacheMaxEntries", 500000, 1, Integer.MAX_VALUE);
         } catch (ParseException pe) {
+            System.err.println(pe.getMessage());
             new HelpFormatter().printHelp("int-hunter", options, true);
             System.exit(2);
             return;
         }
 
+        Path outFile = Paths.get(cmd.getOptionValue("out", "scan-report.json"));
+        if (!FindingSinks.isSupported(outFile)) {
+            System.err.println("Unsupported output format (use .csv, .json, .jsonl or .ihb): " + outFile);
+            System.exit(2);
+            return;
+        }
+
+        if (cmd.hasOption("convertFrom")) {
+            Path binaryFile = Paths.get(cmd.getOptionValue("convertFrom"));
+            BinaryFindingReader.Conversion converted = BinaryFindingReader.convert(binaryFile, outFile);
+            System.out.printf("Converted %d findings to %s%n", converted.getCount(), outFile);
+            if (!converted.isComplete()) {
+                // Written by a scan that did not finish: what is there is kept, but it may not be everything
+                System.err.println("Warning: " + binaryFile + " ends without its trailer; findings may be missing");
+                System.exit(3);
+                return;
+            }
+            System.exit(0);
+            return;
+        }
+
         /* ────────────────────────────
-         * 3. Resolve input directory
+         * 3. Resolve input
          * ──────────────────────────── */
-        Path classesDir;
+        Path classesDir = null;
+        File streamedArchive = null;
 
         if (cmd.hasOption("archiveFile")) {
-            // Use provided staging dir or a temp one
-            Path stagingDir = cmd.hasOption("stagingDir")
-                    ? Paths.get(cmd.getOptionValue("stagingDir"))
-                    : Files.createTempDirectory("int-hunter-");
+            File archive = new File(cmd.getOptionValue("archiveFile"));
 
-            Files.createDirectories(stagingDir);    // ensure exists
+            if (cmd.hasOption("stagingDir")) {
+                Path stagingDir = Paths.get(cmd.getOptionValue("stagingDir"));
+                Files.createDirectories(stagingDir);    // ensure exists
 
-            File archive = new File(cmd.getOptionValue("archiveFile"));
-            System.out.printf("Unpacking %s -> %s%n", archive.getAbsolutePath(), stagingDir);
+                System.out.printf("Unpacking %s -> %s%n", archive.getAbsolutePath(), stagingDir);
 
-            ClassExtractor.extractFromFile(archive, stagingDir.toFile());
-            classesDir = stagingDir;               // scanner will point here
+                ClassExtractor.extractFromFile(archive, stagingDir.toFile());
+                classesDir = stagingDir;               // scanner will point here
+            } else {
+                // No staging dir – stream class bytes straight out of the archive
+                System.out.printf("Scanning %s in memory%n", archive.getAbsolutePath());
+                streamedArchive = archive;
+            }
 
         } else { // --classesDir path was supplied
             classesDir = Paths.get(cmd.getOptionValue("classesDir"));
@@ -114,14 +276,86 @@ public class IntHunterCLI {
         /* ────────────────────────────
          * 4. Run scan
          * ──────────────────────────── */
-        Path outFile = Paths.get(cmd.getOptionValue("out", "scan-report.json"));
+        // Findings are streamed to disk – sorted with bounded memory unless --unsorted
+        FindingSink sink = FindingSinks.forPath(outFile);
+        if (!cmd.hasOption("unsorted")) {
+            sink = new SortingFindingWriter(sink, SortingFindingWriter.BY_CLASS_NAME,
+                    sortBufferSize,
+                    outFile.toAbsolutePath().getParent());
+        }
+        // Closed even if the scan fails, so no spilled run is left behind
+        try {
+            ScanEngine engine = new ScanEngine(sink);
+            engine.loadExtractors();
+            engine.setThreads(threads);
+            engine.setVisitorTiming(cmd.hasOption("timeVisitors"));
+            engine.setPrePass(cmd.hasOption("prePass"));
+            engine.setClassTimeBudget(classBudgetMillis);
+            engine.setSlowClassLimit(slowClasses);
 
-        ReportAggregator aggregator = new ReportAggregator(outFile);
-        ScanEngine engine = new ScanEngine(aggregator);
-        engine.loadExtractors();
-        engine.scanDirectory(classesDir);
+            FindingCache cache = null;
+            if (cmd.hasOption("cacheFile")) {
+                cache = FindingCache.load(Paths.get(cmd.getOptionValue("cacheFile")),
+                        engine.getExtractorFingerprint(),
+                        cacheMaxEntries);
+                engine.setCache(cache);
+            }
 
-        boolean findingsFound = aggregator.flush(); // true if at least one issue
+            ArchiveFingerprintStore fingerprintStore = null;
+            if (cmd.hasOption("fingerprintStore") && streamedArchive != null) {
+                fingerprintStore = ArchiveFingerprintStore.load(Paths.get(cmd.getOptionValue("fingerprintStore")),
+                        engine.getExtractorFingerprint());
+                engine.setFingerprintStore(fingerprintStore);
+            }
+            if (streamedArchive != null) {
+                engine.scanArchive(streamedArchive);
+            } else {
+                engine.scanDirectory(classesDir);
+            }
+            System.out.printf("Prefilter: skipped %d of %d classes%n",
+                    engine.getClassesRejected(), engine.getClassesScanned());
+            if (engine.getPipelineStats() != null) {
+                System.out.println("Pipeline: " + engine.getPipelineStats());
+            }
+            if (cache != null) {
+                System.out.println("Cache: " + cache);
+                cache.save();
+            }
+            if (fingerprintStore != null) {
+                System.out.println("Nested archives: " + fingerprintStore);
+                fingerprintStore.save();
+            }
+            System.out.println("Metrics:");
+            System.out.println(engine.getMetrics().toString().indent(2).stripTrailing());
+            if (cmd.hasOption("metricsFile")) {
+                engine.getMetrics().writeJson(Paths.get(cmd.getOptionValue("metricsFile")));
+            }
+        } finally {
+            sink.close();
+        }
+        boolean findingsFound = sink.getCount() > 0; // true if at least one issue
         System.exit(findingsFound ? 1 : 0);
     }
+
+    /** The value of a numeric option, {@code defaultValue} if it is absent. */
+    private static long numberOption(CommandLine cmd, String name, long defaultValue, long min, long max)
+            throws ParseException {
+        if (!cmd.hasOption(name)) {
+            return defaultValue;
+        }
+        String value = cmd.getOptionValue(name);
+        long number;
+        try {
+            number = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ParseException("--" + name + " must be a number, was: " + value);
+        }
+        if (number < min) {
+            throw new ParseException("--" + name + " must be at least " + min + ", was: " + value);
+        }
+        if (number > max) {
+            throw new ParseException("--" + name + " must be at most " + max + ", was: " + value);
+        }
+        return number;
+    }
 }
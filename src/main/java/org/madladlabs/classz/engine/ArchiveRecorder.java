@@ -0,0 +1,79 @@
+package org.madladlabs.classz.engine;
+
+import org.madladlabs.classz.cache.ArchiveFingerprintStore;
+import org.madladlabs.classz.model.Finding;
+import org.madladlabs.classz.model.StringDictionary;
+import org.madladlabs.classz.reporting.IFindingWriter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Passes findings on to the real writer while collecting them for every nested
+ * archive currently open, so each archive can be recorded under its fingerprint
+ * once it has been streamed and analysed completely. The findings of an inner jar count towards
+ * the war or ear around it as well.
+ *
+ * Only used from the thread that writes findings.
+ */
+class ArchiveRecorder implements IFindingWriter {
+
+    private final IFindingWriter writer;
+    private final ArchiveFingerprintStore store;
+    private final StringDictionary strings;
+    private final Deque<Recording> open = new ArrayDeque<>();
+
+    ArchiveRecorder(IFindingWriter writer, ArchiveFingerprintStore store, StringDictionary strings) {
+        this.writer = writer;
+        this.store = store;
+        this.strings = strings;
+    }
+
+    @Override
+    public void accept(Finding f) {
+        for (Recording recording : open) {
+            recording.findings.add(f);
+        }
+        writer.accept(f);
+    }
+
+    void begin(String fingerprint) {
+        open.push(new Recording(fingerprint));
+    }
+
+    /** A class of every open archive was not analysed in full; none of them is recorded. */
+    void incomplete() {
+        for (Recording recording : open) {
+            recording.complete = false;
+        }
+    }
+
+    void end(boolean complete) {
+        Recording recording = open.pop();
+        if (complete && recording.complete) {
+            store.record(recording.fingerprint, recording.findings);
+        }
+    }
+
+    /**
+     * Findings of a nested archive that was skipped, as recorded on an earlier run;
+     * interned in the scan's dictionary like the findings of the classes scanned.
+     */
+    void replay(List<Finding> findings) {
+        for (Finding f : findings) {
+            accept(strings.intern(f));
+        }
+    }
+
+    private static final class Recording {
+        final String fingerprint;
+        final List<Finding> findings = new ArrayList<>();
+        boolean complete = true;
+
+        Recording(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
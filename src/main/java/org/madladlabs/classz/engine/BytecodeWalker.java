@@ -0,0 +1,248 @@
+package org.madladlabs.classz.engine;
+
+import javassist.bytecode.*;
+import org.madladlabs.classz.reporting.IFindingWriter;
+import org.madladlabs.classz.spi.IBytecodeVisitor;
+
+import java.util.List;
+
+/**
+ * Decodes the methods of a class once and replays every instruction to a set of
+ * {@link IBytecodeVisitor}s.
+ *
+ * A visitor that throws is reported and dropped for the rest of the class; the
+ * others keep receiving events.
+ *
+ * A walk can be given a deadline. The clock is checked every
+ * {@value #DEADLINE_CHECK_INTERVAL} instructions, and once the deadline has passed the
+ * walk stops: the visitors get no further events, not even the end callbacks.
+ */
+public final class BytecodeWalker {
+
+    static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+    private final ClassFile classFile;
+    private final IBytecodeVisitor[] active;
+    private int activeCount;
+    private final long deadlineNanos;
+    private final boolean hasDeadline;
+    private int untilDeadlineCheck = DEADLINE_CHECK_INTERVAL;
+    private boolean aborted;
+
+    private BytecodeWalker(ClassFile classFile, int capacity, boolean hasDeadline, long deadlineNanos) {
+        this.classFile = classFile;
+        this.active = new IBytecodeVisitor[capacity];
+        this.hasDeadline = hasDeadline;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /** Walks every method of {@code classFile}, sending events to the visitors that accept the class. */
+    public static void walk(ClassFile classFile, List<? extends IBytecodeVisitor> visitors,
+                            IFindingWriter writer) throws BadBytecode {
+        walk(classFile, visitors, writer, false, 0);
+    }
+
+    /**
+     * Same as {@link #walk(ClassFile, List, IFindingWriter)}, giving up once
+     * {@link System#nanoTime()} passes {@code deadlineNanos}.
+     *
+     * @return false if the walk was cut short by the deadline
+     */
+    public static boolean walk(ClassFile classFile, List<? extends IBytecodeVisitor> visitors,
+                               IFindingWriter writer, long deadlineNanos) throws BadBytecode {
+        return walk(classFile, visitors, writer, true, deadlineNanos);
+    }
+
+    private static boolean walk(ClassFile classFile, List<? extends IBytecodeVisitor> visitors,
+                                IFindingWriter writer, boolean hasDeadline, long deadlineNanos) throws BadBytecode {
+        BytecodeWalker walker = new BytecodeWalker(classFile, visitors.size(), hasDeadline, deadlineNanos);
+        for (IBytecodeVisitor visitor : visitors) {
+            try {
+                if (visitor.visitClass(classFile, writer)) {
+                    walker.active[walker.activeCount++] = visitor;
+                }
+            } catch (RuntimeException e) {
+                walker.report(visitor, e);
+            }
+        }
+        if (walker.activeCount == 0) return true;
+
+        for (Object m : classFile.getMethods()) {
+            MethodInfo method = (MethodInfo) m;
+            if (!method.isMethod() || method.getCodeAttribute() == null) continue;
+            walker.walkMethod(method);
+            if (walker.aborted) return false;
+        }
+
+        for (int i = 0; i < walker.activeCount; i++) {
+            IBytecodeVisitor visitor = walker.active[i];
+            try {
+                visitor.visitClassEnd();
+            } catch (RuntimeException e) {
+                walker.report(visitor, e);
+            }
+        }
+        return true;
+    }
+
+    private void walkMethod(MethodInfo method) throws BadBytecode {
+        for (int i = 0; i < activeCount; i++) {
+            try {
+                active[i].visitMethod(method);
+            } catch (RuntimeException e) {
+                drop(i--, e);
+            }
+        }
+
+        ConstPool cp = method.getConstPool();
+        CodeIterator it = method.getCodeAttribute().iterator();
+        while (it.hasNext() && activeCount > 0) {
+            int pc = it.next();
+            int op = it.byteAt(pc);
+            if (hasDeadline && --untilDeadlineCheck == 0) {
+                untilDeadlineCheck = DEADLINE_CHECK_INTERVAL;
+                if (System.nanoTime() - deadlineNanos > 0) {
+                    aborted = true;
+                    return;
+                }
+            }
+
+            for (int i = 0; i < activeCount; i++) {
+                try {
+                    active[i].visitInstruction(pc, op);
+                } catch (RuntimeException e) {
+                    drop(i--, e);
+                }
+            }
+
+            switch (op) {
+                case Opcode.LDC:
+                case Opcode.LDC_W: {
+                    int cpIndex = (op == Opcode.LDC) ? it.byteAt(pc + 1) : it.u16bitAt(pc + 1);
+                    int tag = cp.getTag(cpIndex);
+                    if (tag == ConstPool.CONST_String) {
+                        String value = cp.getStringInfo(cpIndex);
+                        for (int i = 0; i < activeCount; i++) {
+                            try {
+                                active[i].visitLdc(pc, cpIndex, value);
+                            } catch (RuntimeException e) {
+                                drop(i--, e);
+                            }
+                        }
+                    } else if (tag == ConstPool.CONST_Integer) {
+                        dispatchIntConstant(pc, cp.getIntegerInfo(cpIndex));
+                    }
+                    break;
+                }
+                case Opcode.BIPUSH:
+                    dispatchIntConstant(pc, it.signedByteAt(pc + 1));
+                    break;
+                case Opcode.SIPUSH:
+                    dispatchIntConstant(pc, it.s16bitAt(pc + 1));
+                    break;
+                case Opcode.INVOKEVIRTUAL:
+                case Opcode.INVOKESPECIAL:
+                case Opcode.INVOKESTATIC:
+                case Opcode.INVOKEINTERFACE: {
+                    int cpIndex = it.u16bitAt(pc + 1);
+                    String owner, name, descriptor;
+                    if (cp.getTag(cpIndex) == ConstPool.CONST_InterfaceMethodref) {
+                        owner      = cp.getInterfaceMethodrefClassName(cpIndex);
+                        name       = cp.getInterfaceMethodrefName(cpIndex);
+                        descriptor = cp.getInterfaceMethodrefType(cpIndex);
+                    } else {
+                        owner      = cp.getMethodrefClassName(cpIndex);
+                        name       = cp.getMethodrefName(cpIndex);
+                        descriptor = cp.getMethodrefType(cpIndex);
+                    }
+                    for (int i = 0; i < activeCount; i++) {
+                        try {
+                            active[i].visitInvoke(pc, op, owner, name, descriptor);
+                        } catch (RuntimeException e) {
+                            drop(i--, e);
+                        }
+                    }
+                    break;
+                }
+                case Opcode.GETFIELD:
+                case Opcode.PUTFIELD:
+                case Opcode.GETSTATIC:
+                case Opcode.PUTSTATIC: {
+                    int cpIndex = it.u16bitAt(pc + 1);
+                    String owner      = cp.getFieldrefClassName(cpIndex);
+                    String name       = cp.getFieldrefName(cpIndex);
+                    String descriptor = cp.getFieldrefType(cpIndex);
+                    for (int i = 0; i < activeCount; i++) {
+                        try {
+                            active[i].visitFieldAccess(pc, op, owner, name, descriptor);
+                        } catch (RuntimeException e) {
+                            drop(i--, e);
+                        }
+                    }
+                    break;
+                }
+                case Opcode.WIDE: {
+                    int widened = it.byteAt(pc + 1);
+                    if (isLocalVariableOpcode(widened)) {
+                        dispatchLocalVariable(pc, widened, it.u16bitAt(pc + 2));
+                    }
+                    break;
+                }
+                default:
+                    if (op >= Opcode.ICONST_M1 && op <= Opcode.ICONST_5) {
+                        dispatchIntConstant(pc, op - Opcode.ICONST_0);
+                    } else if (isLocalVariableOpcode(op)) {
+                        dispatchLocalVariable(pc, op, it.byteAt(pc + 1));
+                    } else if (op >= Opcode.ILOAD_0 && op <= Opcode.ALOAD_3) {
+                        dispatchLocalVariable(pc, Opcode.ILOAD + (op - Opcode.ILOAD_0) / 4, (op - Opcode.ILOAD_0) % 4);
+                    } else if (op >= Opcode.ISTORE_0 && op <= Opcode.ASTORE_3) {
+                        dispatchLocalVariable(pc, Opcode.ISTORE + (op - Opcode.ISTORE_0) / 4, (op - Opcode.ISTORE_0) % 4);
+                    }
+            }
+        }
+
+        for (int i = 0; i < activeCount; i++) {
+            try {
+                active[i].visitMethodEnd();
+            } catch (RuntimeException e) {
+                drop(i--, e);
+            }
+        }
+    }
+
+    private static boolean isLocalVariableOpcode(int op) {
+        return (op >= Opcode.ILOAD && op <= Opcode.ALOAD) || (op >= Opcode.ISTORE && op <= Opcode.ASTORE);
+    }
+
+    private void dispatchIntConstant(int pc, int value) {
+        for (int i = 0; i < activeCount; i++) {
+            try {
+                active[i].visitIntConstant(pc, value);
+            } catch (RuntimeException e) {
+                drop(i--, e);
+            }
+        }
+    }
+
+    private void dispatchLocalVariable(int pc, int opcode, int slot) {
+        for (int i = 0; i < activeCount; i++) {
+            try {
+                active[i].visitLocalVariable(pc, opcode, slot);
+            } catch (RuntimeException e) {
+                drop(i--, e);
+            }
+        }
+    }
+
+    /** Removes the visitor at {@code index}, keeping the order of the remaining ones. */
+    private void drop(int index, RuntimeException e) {
+        report(active[index], e);
+        System.arraycopy(active, index + 1, active, index, activeCount - index - 1);
+        active[--activeCount] = null;
+    }
+
+    private void report(IBytecodeVisitor visitor, RuntimeException e) {
+        System.err.println("Extractor " + visitor.name() + " failed on " + classFile.getName());
+        e.printStackTrace();
+    }
+}
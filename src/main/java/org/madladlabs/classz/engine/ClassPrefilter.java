@@ -0,0 +1,61 @@
+package org.madladlabs.classz.engine;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The referenced-type names an extractor declared, pre-encoded so they can be matched
+ * against a {@link ConstantPoolIndex} without allocating.
+ *
+ * Names use the internal form ({@code java/sql/PreparedStatement}); a name starting with
+ * {@code '/'} matches any class with that simple name ({@code /JdbcTemplate}). An exact
+ * name also matches when it only appears as a descriptor, which is how annotation
+ * types such as {@code javax/persistence/Entity} show up in the constant pool.
+ */
+public final class ClassPrefilter {
+
+    private final byte[][] exact;
+    private final byte[][] descriptors;    // "L" + exact + ";"
+    private final byte[][] suffixes;
+
+    private ClassPrefilter(byte[][] exact, byte[][] descriptors, byte[][] suffixes) {
+        this.exact = exact;
+        this.descriptors = descriptors;
+        this.suffixes = suffixes;
+    }
+
+    /** @return a prefilter for {@code names}, or null if the extractor wants every class */
+    public static ClassPrefilter of(Collection<String> names) {
+        if (names == null || names.isEmpty()) return null;
+
+        List<byte[]> exact = new ArrayList<>();
+        List<byte[]> descriptors = new ArrayList<>();
+        List<byte[]> suffixes = new ArrayList<>();
+        for (String name : names) {
+            String internal = name.replace('.', '/');
+            if (internal.startsWith("/")) {
+                suffixes.add(internal.getBytes(StandardCharsets.UTF_8));
+            } else {
+                exact.add(internal.getBytes(StandardCharsets.UTF_8));
+                descriptors.add(("L" + internal + ";").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return new ClassPrefilter(exact.toArray(new byte[0][]), descriptors.toArray(new byte[0][]),
+                suffixes.toArray(new byte[0][]));
+    }
+
+    public boolean matches(ConstantPoolIndex index) {
+        for (byte[] name : exact) {
+            if (index.referencesClass(name)) return true;
+        }
+        for (byte[] suffix : suffixes) {
+            if (index.referencesClassEndingWith(suffix)) return true;
+        }
+        for (byte[] descriptor : descriptors) {
+            if (index.containsUtf8(descriptor)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,23 @@
+package org.madladlabs.classz.engine;
+
+import org.madladlabs.classz.model.Finding;
+
+import java.util.List;
+
+/**
+ * The findings of one analysed class, and whether it was analysed in full. A class
+ * that went over the time budget is not: its findings are neither cached nor allowed
+ * to stand for the nested archive it came from.
+ */
+final class ClassResult {
+
+    static final ClassResult EMPTY = new ClassResult(List.of(), true);
+
+    final List<Finding> findings;
+    final boolean complete;
+
+    ClassResult(List<Finding> findings, boolean complete) {
+        this.findings = findings;
+        this.complete = complete;
+    }
+}
@@ -0,0 +1,259 @@
+package org.madladlabs.classz.engine;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact view of a class file's constant pool, parsed straight from the raw bytes
+ * without Javassist. Nothing is decoded up front: the index only remembers where each
+ * UTF8 entry lives, and which of them name a referenced class or method, so matching
+ * is done on the bytes themselves.
+ */
+public final class ConstantPoolIndex {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private final byte[] bytes;
+    private final int[] utf8Offset;        // by cp index: start of the UTF8 payload, or -1
+    private final int[] utf8Length;
+    private final int[] classNames;        // cp indexes of the UTF8 entries named by CONSTANT_Class
+    private final int classNameCount;
+    private final int[] methodNames;       // cp indexes of the UTF8 names of Methodref/InterfaceMethodref
+    private final int methodNameCount;
+    private final int[] nameIndex;         // by cp index: name_index of a Class or NameAndType entry
+    private final int header;              // offset of access_flags, right after the pool
+
+    private ConstantPoolIndex(byte[] bytes, int[] utf8Offset, int[] utf8Length, int[] classNames, int classNameCount,
+                              int[] methodNames, int methodNameCount, int[] nameIndex, int header) {
+        this.bytes = bytes;
+        this.utf8Offset = utf8Offset;
+        this.utf8Length = utf8Length;
+        this.classNames = classNames;
+        this.classNameCount = classNameCount;
+        this.methodNames = methodNames;
+        this.methodNameCount = methodNameCount;
+        this.nameIndex = nameIndex;
+        this.header = header;
+    }
+
+    public static ConstantPoolIndex parse(byte[] classBytes) throws IOException {
+        if (classBytes.length < 10 || readInt(classBytes, 0) != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        int count = readU2(classBytes, 8);
+        int[] utf8Offset = new int[count];
+        int[] utf8Length = new int[count];
+        int[] classRefs = new int[count];
+        int[] natRefs = new int[count];      // NameAndType indexes used by method refs
+        int[] nameIndex = new int[count];    // by cp index: name_index of a Class or NameAndType
+        int classRefCount = 0;
+        int natRefCount = 0;
+        int pos = 10;
+
+        try {
+            for (int i = 1; i < count; i++) {
+                utf8Offset[i] = -1;
+                int tag = classBytes[pos] & 0xFF;
+                switch (tag) {
+                    case 1:                                   // Utf8
+                        utf8Length[i] = readU2(classBytes, pos + 1);
+                        utf8Offset[i] = pos + 3;
+                        pos += 3 + utf8Length[i];
+                        break;
+                    case 7:                                   // Class
+                        nameIndex[i] = readU2(classBytes, pos + 1);
+                        classRefs[classRefCount++] = nameIndex[i];
+                        pos += 3;
+                        break;
+                    case 10:                                  // Methodref
+                    case 11:                                  // InterfaceMethodref
+                        natRefs[natRefCount++] = readU2(classBytes, pos + 3);
+                        pos += 5;
+                        break;
+                    case 12:                                  // NameAndType
+                        nameIndex[i] = readU2(classBytes, pos + 1);
+                        pos += 5;
+                        break;
+                    case 9:                                   // Fieldref
+                    case 3: case 4:                           // Integer, Float
+                    case 17: case 18:                         // Dynamic, InvokeDynamic
+                        pos += 5;
+                        break;
+                    case 5: case 6:                           // Long, Double take two slots
+                        pos += 9;
+                        if (++i < count) utf8Offset[i] = -1;
+                        break;
+                    case 8: case 16: case 19: case 20:        // String, MethodType, Module, Package
+                        pos += 3;
+                        break;
+                    case 15:                                  // MethodHandle
+                        pos += 4;
+                        break;
+                    default:
+                        throw new IOException("Bad constant pool tag " + tag + " at entry " + i);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated constant pool", e);
+        }
+
+        for (int i = 0; i < natRefCount; i++) {
+            natRefs[i] = nameIndex[natRefs[i]];
+        }
+        if (pos + 8 > classBytes.length) {
+            throw new IOException("Truncated class header");
+        }
+        return new ConstantPoolIndex(classBytes, utf8Offset, utf8Length, classRefs, classRefCount, natRefs, natRefCount,
+                nameIndex, pos);
+    }
+
+    /** True if a CONSTANT_Class entry names exactly {@code internalName} (e.g. {@code java/sql/Connection}). */
+    public boolean referencesClass(byte[] internalName) {
+        for (int i = 0; i < classNameCount; i++) {
+            if (utf8Equals(classNames[i], internalName)) return true;
+        }
+        return false;
+    }
+
+    /** True if a CONSTANT_Class entry ends with {@code suffix} (e.g. {@code /JdbcTemplate}). */
+    public boolean referencesClassEndingWith(byte[] suffix) {
+        for (int i = 0; i < classNameCount; i++) {
+            int cp = classNames[i];
+            int len = utf8Length[cp];
+            if (len >= suffix.length && regionEquals(utf8Offset[cp] + len - suffix.length, suffix)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * True if any UTF8 entry is exactly {@code value}. Types that are only used as
+     * annotations or in signatures never get a CONSTANT_Class entry, but their
+     * descriptors ({@code Ljavax/persistence/Entity;}) are in the pool as UTF8.
+     */
+    public boolean containsUtf8(byte[] value) {
+        for (int cp = 1; cp < utf8Offset.length; cp++) {
+            if (utf8Offset[cp] >= 0 && utf8Equals(cp, value)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * True if the class itself declares a field with all the {@code access} flags and
+     * exactly the {@code descriptor}, e.g. a final {@code Ljava/lang/String;}. Read from
+     * the field table, so fields the class only uses do not count.
+     */
+    public boolean declaresField(int access, byte[] descriptor) throws IOException {
+        try {
+            int pos = header + 8 + 2 * readU2(bytes, header + 6);
+            int count = readU2(bytes, pos);
+            pos += 2;
+            for (int i = 0; i < count; i++) {
+                if ((readU2(bytes, pos) & access) == access && utf8Equals(readU2(bytes, pos + 4), descriptor)) return true;
+                pos = skipMember(pos);
+            }
+            return false;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated field table", e);
+        }
+    }
+
+    /**
+     * True if the class itself declares a method whose descriptor ends with {@code suffix},
+     * e.g. {@code )Ljava/lang/String;}. Read from the method table, so methods the class
+     * only calls do not count.
+     */
+    public boolean declaresMethodEndingWith(byte[] suffix) throws IOException {
+        try {
+            int pos = header + 8 + 2 * readU2(bytes, header + 6);
+            int fields = readU2(bytes, pos);
+            pos += 2;
+            for (int i = 0; i < fields; i++) {
+                pos = skipMember(pos);
+            }
+            int count = readU2(bytes, pos);
+            pos += 2;
+            for (int i = 0; i < count; i++) {
+                int cp = readU2(bytes, pos + 4);
+                int len = utf8Length[cp];
+                if (len >= suffix.length && regionEquals(utf8Offset[cp] + len - suffix.length, suffix)) return true;
+                pos = skipMember(pos);
+            }
+            return false;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated method table", e);
+        }
+    }
+
+    /** Offset just past the field_info / method_info at {@code pos}. */
+    private int skipMember(int pos) {
+        int attributes = readU2(bytes, pos + 6);
+        pos += 8;
+        for (int i = 0; i < attributes; i++) {
+            pos += 6 + readInt(bytes, pos + 2);
+        }
+        return pos;
+    }
+
+    /** True if a method or interface-method reference calls a method named {@code name}. */
+    public boolean referencesMethod(byte[] name) {
+        for (int i = 0; i < methodNameCount; i++) {
+            if (utf8Equals(methodNames[i], name)) return true;
+        }
+        return false;
+    }
+
+    /** Name of the class itself, in dot notation. */
+    public String thisClass() {
+        return classAt(readU2(bytes, header + 2));
+    }
+
+    /** Name of the superclass, in dot notation; null for {@code java.lang.Object} and module-info. */
+    public String superclass() {
+        int cp = readU2(bytes, header + 4);
+        return cp == 0 ? null : classAt(cp);
+    }
+
+    /** Names of the directly implemented (or, for an interface, extended) interfaces, in dot notation. */
+    public String[] interfaces() {
+        int count = readU2(bytes, header + 6);
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = classAt(readU2(bytes, header + 8 + 2 * i));
+        }
+        return names;
+    }
+
+    private String classAt(int cp) {
+        int utf8 = nameIndex[cp];
+        return new String(bytes, utf8Offset[utf8], utf8Length[utf8], StandardCharsets.UTF_8).replace('/', '.');
+    }
+
+    /** Decodes the referenced class names; meant for diagnostics and tests, not the scan path. */
+    public String[] classNames() {
+        String[] names = new String[classNameCount];
+        for (int i = 0; i < classNameCount; i++) {
+            int cp = classNames[i];
+            names[i] = new String(bytes, utf8Offset[cp], utf8Length[cp], StandardCharsets.UTF_8);
+        }
+        return names;
+    }
+
+    private boolean utf8Equals(int cp, byte[] value) {
+        return utf8Length[cp] == value.length && regionEquals(utf8Offset[cp], value);
+    }
+
+    private boolean regionEquals(int offset, byte[] value) {
+        for (int j = 0; j < value.length; j++) {
+            if (bytes[offset + j] != value[j]) return false;
+        }
+        return true;
+    }
+
+    private static int readU2(byte[] b, int pos) {
+        return ((b[pos] & 0xFF) << 8) | (b[pos + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] b, int pos) {
+        return (readU2(b, pos) << 16) | readU2(b, pos + 2);
+    }
+}
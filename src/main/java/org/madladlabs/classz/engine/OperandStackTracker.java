@@ -0,0 +1,840 @@
+package org.madladlabs.classz.engine;
+
+import javassist.bytecode.BootstrapMethodsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.CodeAttribute;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.Descriptor;
+import javassist.bytecode.ExceptionTable;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.Opcode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Abstract interpretation of the operand stack and local variables, for visitors that
+ * need to know what a call's arguments are rather than what was recently pushed.
+ *
+ * Each stack slot and local holds a value: an {@code Integer} for an int constant
+ * (ICONST, BIPUSH, SIPUSH, LDC), a {@code String} for a string constant, whatever
+ * the visitor supplied with {@link #setResult(Object)}, or null when unknown. Long
+ * and double values take two slots, as in the JVM, so the DUP and POP forms work
+ * on slots.
+ *
+ * The pass is linear: instructions are interpreted once, in code order. The stack at
+ * a forward branch target is remembered when the branch is seen and restored after
+ * an unconditional jump; where two paths meet with different values the value
+ * becomes unknown. Locals are not merged – the last store wins – and loops are not
+ * iterated, so values are a best effort, not a proof.
+ *
+ * String concatenation is followed too, both the {@code StringBuilder} / {@code StringBuffer}
+ * chains older compilers emit and {@code invokedynamic makeConcatWithConstants}: when
+ * every part is known the result is a {@code String}, when some parts are values a
+ * {@link Resolver} supplied it is a {@link Concat}. A resolver, if set, is also asked
+ * for the values of field reads and calls with an object type.
+ *
+ * Drive it from a visitor: {@link #setClassFile(ClassFile)} in {@code visitClass},
+ * {@link #reset(MethodInfo)} in {@code visitMethod},
+ * {@link #next(int, int)} first thing in {@code visitInstruction}. The more specific
+ * callbacks that follow for the same instruction then see the stack as it is before
+ * the instruction executes. Not thread-safe.
+ */
+public final class OperandStackTracker {
+
+    /** Supplies the values of field reads and call results the tracker cannot work out itself. */
+    public interface Resolver {
+        /** Value read from a field of an object type; null if unknown. */
+        Object field(String owner, String name, String descriptor);
+
+        /**
+         * Value returned by a call with an object return type. The call is the current
+         * instruction, so {@link #arguments(String)} still sees its arguments; null if unknown.
+         */
+        Object call(int opcode, String owner, String name, String descriptor, OperandStackTracker stack);
+    }
+
+    /** A concatenation some of whose parts are not constants: Strings and values supplied by a {@link Resolver}. */
+    public static final class Concat {
+        private final Object[] parts;
+
+        Concat(Object[] parts) {
+            this.parts = parts;
+        }
+
+        public int size() {
+            return parts.length;
+        }
+
+        public Object part(int i) {
+            return parts[i];
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Concat && Arrays.equals(parts, ((Concat) o).parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(parts);
+        }
+    }
+
+    /** A StringBuilder / StringBuffer being filled; parts is null once something unknown went in */
+    private static final class Appender {
+        List<Object> parts = new ArrayList<>(4);
+
+        void append(Object part) {
+            if (parts == null) return;
+            if (part == null || part instanceof Appender) {
+                parts = null;
+            } else if (part instanceof String && !parts.isEmpty() && parts.get(parts.size() - 1) instanceof String) {
+                parts.set(parts.size() - 1, parts.get(parts.size() - 1) + (String) part);
+            } else {
+                parts.add(part);
+            }
+        }
+
+        Object value() {
+            return parts == null ? null : concat(parts);
+        }
+    }
+
+    private static final String STRING_BUILDER = "java.lang.StringBuilder";
+    private static final String STRING_BUFFER = "java.lang.StringBuffer";
+
+    private byte[] code;
+    private ConstPool cp;
+    private Object[] stack = new Object[16];
+    private int depth;
+    private Object[] locals = new Object[16];
+    private final Map<Integer, Object[]> branchTargets = new HashMap<>();
+    private final Set<Integer> handlers = new HashSet<>();
+    private boolean reachable;
+
+    private int pendingPc = -1;
+    private int pendingOpcode;
+    private Object pendingResult;
+
+    private Resolver resolver;
+    private BootstrapMethodsAttribute bootstrapMethods;
+    private boolean appenders;                  // the method has created a StringBuilder
+    // Owner and name of member refs (and names of classes) by cp index, decoded once per class
+    private ConstPool namesOf;
+    private String[] refOwner, refName;
+
+    /** Asks {@code resolver} for field and call values from now on; null for none. */
+    public void setResolver(Resolver resolver) {
+        this.resolver = resolver;
+    }
+
+    /** Starts a class; needed to follow {@code invokedynamic} string concatenation. */
+    public void setClassFile(ClassFile classFile) {
+        bootstrapMethods = (BootstrapMethodsAttribute) classFile.getAttribute(BootstrapMethodsAttribute.tag);
+    }
+
+    /** Starts a method: empty stack, unknown locals. */
+    public void reset(MethodInfo method) {
+        CodeAttribute codeAttribute = method.getCodeAttribute();
+        code = codeAttribute.getCode();
+        cp = method.getConstPool();
+        if (stack.length < codeAttribute.getMaxStack()) stack = new Object[codeAttribute.getMaxStack()];
+        if (locals.length < codeAttribute.getMaxLocals()) locals = new Object[codeAttribute.getMaxLocals()];
+        Arrays.fill(stack, null);
+        Arrays.fill(locals, null);
+        depth = 0;
+        branchTargets.clear();
+        handlers.clear();
+        ExceptionTable exceptions = codeAttribute.getExceptionTable();
+        for (int i = 0; i < exceptions.size(); i++) {
+            handlers.add(exceptions.handlerPc(i));
+        }
+        reachable = true;
+        pendingPc = -1;
+        pendingResult = null;
+        appenders = false;
+    }
+
+    /** Sets the value of a local, e.g. to mark the method's parameters. */
+    public void setLocal(int slot, Object value) {
+        store(slot, value, 1);
+    }
+
+    /**
+     * Completes the previous instruction and makes the one at {@code pc} current.
+     * Instructions must be passed in code order.
+     */
+    public void next(int pc, int opcode) {
+        if (pendingPc >= 0) {
+            execute(pendingPc, pendingOpcode);
+        }
+        Object[] saved = branchTargets.remove(pc);
+        if (handlers.contains(pc)) {
+            depth = 0;
+            push(null);                                 // the caught exception
+        } else if (!reachable) {
+            depth = 0;
+            if (saved != null) {
+                System.arraycopy(saved, 0, stack, 0, saved.length);
+                depth = saved.length;
+            }
+        } else if (saved != null) {
+            merge(saved, 0, depth);
+        }
+        reachable = true;
+        pendingPc = pc;
+        pendingOpcode = opcode;
+        pendingResult = null;
+    }
+
+    /** Value {@code n} slots below the top of the stack (0 = top), before the current instruction; null if unknown. */
+    public Object peek(int n) {
+        return n < depth ? stack[depth - 1 - n] : null;
+    }
+
+    /**
+     * Value the current instruction pushes – for an invoke or field read, which would
+     * otherwise push an unknown value. Ignored for results that take two slots.
+     */
+    public void setResult(Object value) {
+        pendingResult = value;
+    }
+
+    /**
+     * Values of the arguments of the current instruction, a call with {@code descriptor},
+     * by parameter position. Long and double arguments are always unknown.
+     */
+    public Object[] arguments(String descriptor) {
+        int[] sizes = parameterSizes(descriptor);
+        Object[] args = new Object[sizes.length];
+        int slot = 0;
+        for (int k = sizes.length - 1; k >= 0; k--) {
+            if (sizes[k] == 1) args[k] = peek(slot);
+            slot += sizes[k];
+        }
+        return args;
+    }
+
+    /** Stack slots taken by each parameter of a method descriptor: 2 for long and double, else 1. */
+    public static int[] parameterSizes(String descriptor) {
+        int[] sizes = new int[8];
+        int count = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            boolean array = false;
+            char c = descriptor.charAt(i);
+            while (c == '[') {
+                array = true;
+                c = descriptor.charAt(++i);
+            }
+            if (c == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+            if (count == sizes.length) sizes = Arrays.copyOf(sizes, count * 2);
+            sizes[count++] = !array && (c == 'J' || c == 'D') ? 2 : 1;
+            i++;
+        }
+        return Arrays.copyOf(sizes, count);
+    }
+
+    /** Number of stack slots taken by the parameters of a method descriptor, without the receiver. */
+    public static int parameterSlots(String descriptor) {
+        int slots = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            boolean array = false;
+            char c = descriptor.charAt(i);
+            while (c == '[') {
+                array = true;
+                c = descriptor.charAt(++i);
+            }
+            if (c == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+            slots += !array && (c == 'J' || c == 'D') ? 2 : 1;
+            i++;
+        }
+        return slots;
+    }
+
+    /** Stack slots taken by the return value of a method descriptor. */
+    private static int returnSlots(String descriptor) {
+        char c = descriptor.charAt(descriptor.indexOf(')') + 1);
+        return c == 'V' ? 0 : c == 'J' || c == 'D' ? 2 : 1;
+    }
+
+    private void execute(int pc, int op) {
+        switch (op) {
+            case Opcode.NOP:
+                break;
+            case Opcode.ICONST_M1: case Opcode.ICONST_0: case Opcode.ICONST_1: case Opcode.ICONST_2:
+            case Opcode.ICONST_3: case Opcode.ICONST_4: case Opcode.ICONST_5:
+                push(op - Opcode.ICONST_0);
+                break;
+            case Opcode.BIPUSH:
+                push((int) code[pc + 1]);
+                break;
+            case Opcode.SIPUSH:
+                push((int) (short) u16(pc + 1));
+                break;
+            case Opcode.LDC:
+                pushConstant(code[pc + 1] & 0xff);
+                break;
+            case Opcode.LDC_W:
+                pushConstant(u16(pc + 1));
+                break;
+            case Opcode.ACONST_NULL: case Opcode.FCONST_0: case Opcode.FCONST_1: case Opcode.FCONST_2:
+                push(null);
+                break;
+            case Opcode.LCONST_0: case Opcode.LCONST_1: case Opcode.DCONST_0: case Opcode.DCONST_1: case Opcode.LDC2_W:
+                push2();
+                break;
+            case Opcode.ILOAD: case Opcode.FLOAD: case Opcode.ALOAD:
+                push(local(code[pc + 1] & 0xff));
+                break;
+            case Opcode.LLOAD: case Opcode.DLOAD:
+                push2();
+                break;
+            case Opcode.ISTORE: case Opcode.FSTORE: case Opcode.ASTORE:
+                store(code[pc + 1] & 0xff, pop(), 1);
+                break;
+            case Opcode.LSTORE: case Opcode.DSTORE:
+                pop(2);
+                store(code[pc + 1] & 0xff, null, 2);
+                break;
+            case Opcode.IALOAD: case Opcode.FALOAD: case Opcode.AALOAD: case Opcode.BALOAD:
+            case Opcode.CALOAD: case Opcode.SALOAD:
+                pop(2);
+                push(null);
+                break;
+            case Opcode.LALOAD: case Opcode.DALOAD:
+                pop(2);
+                push2();
+                break;
+            case Opcode.IASTORE: case Opcode.FASTORE: case Opcode.AASTORE: case Opcode.BASTORE:
+            case Opcode.CASTORE: case Opcode.SASTORE:
+                pop(3);
+                break;
+            case Opcode.LASTORE: case Opcode.DASTORE:
+                pop(4);
+                break;
+            case Opcode.POP:
+                pop(1);
+                break;
+            case Opcode.POP2:
+                pop(2);
+                break;
+            case Opcode.DUP:
+                duplicate(1, 0);
+                break;
+            case Opcode.DUP_X1:
+                duplicate(1, 1);
+                break;
+            case Opcode.DUP_X2:
+                duplicate(1, 2);
+                break;
+            case Opcode.DUP2:
+                duplicate(2, 0);
+                break;
+            case Opcode.DUP2_X1:
+                duplicate(2, 1);
+                break;
+            case Opcode.DUP2_X2:
+                duplicate(2, 2);
+                break;
+            case Opcode.SWAP: {
+                Object top = pop();
+                Object below = pop();
+                push(top);
+                push(below);
+                break;
+            }
+            case Opcode.IINC:
+                store(code[pc + 1] & 0xff, null, 1);
+                break;
+            case Opcode.WIDE:
+                executeWide(pc);
+                break;
+            case Opcode.LCMP: case Opcode.DCMPL: case Opcode.DCMPG:
+                pop(4);
+                push(null);
+                break;
+            case Opcode.FCMPL: case Opcode.FCMPG:
+                pop(2);
+                push(null);
+                break;
+            case Opcode.IFEQ: case Opcode.IFNE: case Opcode.IFLT: case Opcode.IFGE: case Opcode.IFGT:
+            case Opcode.IFLE: case Opcode.IFNULL: case Opcode.IFNONNULL:
+                pop(1);
+                branch(pc + (short) u16(pc + 1));
+                break;
+            case Opcode.IF_ICMPEQ: case Opcode.IF_ICMPNE: case Opcode.IF_ICMPLT: case Opcode.IF_ICMPGE:
+            case Opcode.IF_ICMPGT: case Opcode.IF_ICMPLE: case Opcode.IF_ACMPEQ: case Opcode.IF_ACMPNE:
+                pop(2);
+                branch(pc + (short) u16(pc + 1));
+                break;
+            case Opcode.GOTO:
+                branch(pc + (short) u16(pc + 1));
+                reachable = false;
+                break;
+            case Opcode.GOTO_W:
+                branch(pc + s32(pc + 1));
+                reachable = false;
+                break;
+            case Opcode.JSR:
+            case Opcode.JSR_W:
+                push(null);                             // the return address, seen by the subroutine
+                branch(pc + (op == Opcode.JSR ? (short) u16(pc + 1) : s32(pc + 1)));
+                pop(1);
+                break;
+            case Opcode.RET:
+                reachable = false;
+                break;
+            case Opcode.TABLESWITCH: {
+                pop(1);
+                int base = (pc & ~3) + 4;
+                branch(pc + s32(base));
+                int low = s32(base + 4), high = s32(base + 8);
+                for (int i = 0; i <= high - low; i++) {
+                    branch(pc + s32(base + 12 + 4 * i));
+                }
+                reachable = false;
+                break;
+            }
+            case Opcode.LOOKUPSWITCH: {
+                pop(1);
+                int base = (pc & ~3) + 4;
+                branch(pc + s32(base));
+                int pairs = s32(base + 4);
+                for (int i = 0; i < pairs; i++) {
+                    branch(pc + s32(base + 12 + 8 * i));
+                }
+                reachable = false;
+                break;
+            }
+            case Opcode.IRETURN: case Opcode.LRETURN: case Opcode.FRETURN: case Opcode.DRETURN:
+            case Opcode.ARETURN: case Opcode.RETURN: case Opcode.ATHROW:
+                depth = 0;
+                reachable = false;
+                break;
+            case Opcode.GETSTATIC:
+                readField(u16(pc + 1), 0);
+                break;
+            case Opcode.PUTSTATIC:
+                pop(Descriptor.dataSize(cp.getFieldrefType(u16(pc + 1))));
+                break;
+            case Opcode.GETFIELD:
+                readField(u16(pc + 1), 1);
+                break;
+            case Opcode.PUTFIELD:
+                pop(Descriptor.dataSize(cp.getFieldrefType(u16(pc + 1))) + 1);
+                break;
+            case Opcode.INVOKEVIRTUAL: case Opcode.INVOKESPECIAL: case Opcode.INVOKEINTERFACE:
+                invoke(op, u16(pc + 1), 1);
+                break;
+            case Opcode.INVOKESTATIC:
+                invoke(op, u16(pc + 1), 0);
+                break;
+            case Opcode.INVOKEDYNAMIC:
+                invokeDynamic(u16(pc + 1));
+                break;
+            case Opcode.NEW: {
+                String type = className(u16(pc + 1));
+                if (type.equals(STRING_BUILDER) || type.equals(STRING_BUFFER)) {
+                    appenders = true;
+                    push(new Appender());
+                } else {
+                    push(null);
+                }
+                break;
+            }
+            case Opcode.NEWARRAY: case Opcode.ANEWARRAY: case Opcode.ARRAYLENGTH: case Opcode.INSTANCEOF:
+                pop(1);
+                push(null);
+                break;
+            case Opcode.CHECKCAST:
+                break;                                  // same value, narrower type
+            case Opcode.MONITORENTER: case Opcode.MONITOREXIT:
+                pop(1);
+                break;
+            case Opcode.MULTIANEWARRAY:
+                pop(code[pc + 3] & 0xff);
+                push(null);
+                break;
+            default:
+                if (op >= Opcode.ILOAD_0 && op <= Opcode.ALOAD_3) {
+                    int kind = (op - Opcode.ILOAD_0) / 4;       // I, L, F, D, A
+                    if (kind == 1 || kind == 3) {
+                        push2();
+                    } else {
+                        push(local((op - Opcode.ILOAD_0) % 4));
+                    }
+                } else if (op >= Opcode.ISTORE_0 && op <= Opcode.ASTORE_3) {
+                    int kind = (op - Opcode.ISTORE_0) / 4;
+                    int slot = (op - Opcode.ISTORE_0) % 4;
+                    if (kind == 1 || kind == 3) {
+                        pop(2);
+                        store(slot, null, 2);
+                    } else {
+                        store(slot, pop(), 1);
+                    }
+                } else if (op >= Opcode.IADD && op <= Opcode.LXOR) {
+                    arithmetic(op);
+                } else if (op >= Opcode.I2L && op <= Opcode.I2S) {
+                    conversion(op);
+                }
+        }
+    }
+
+    private void executeWide(int pc) {
+        int op = code[pc + 1] & 0xff;
+        int slot = u16(pc + 2);
+        switch (op) {
+            case Opcode.ILOAD: case Opcode.FLOAD: case Opcode.ALOAD:
+                push(local(slot));
+                break;
+            case Opcode.LLOAD: case Opcode.DLOAD:
+                push2();
+                break;
+            case Opcode.ISTORE: case Opcode.FSTORE: case Opcode.ASTORE:
+                store(slot, pop(), 1);
+                break;
+            case Opcode.LSTORE: case Opcode.DSTORE:
+                pop(2);
+                store(slot, null, 2);
+                break;
+            case Opcode.IINC:
+                store(slot, null, 1);
+                break;
+            default:
+                reachable = false;                      // WIDE RET
+        }
+    }
+
+    /** IADD .. LXOR: the I/L/F/D forms alternate, shifts take an int count. */
+    private void arithmetic(int op) {
+        boolean wide;
+        int popped;
+        if (op <= Opcode.DREM) {                        // ADD, SUB, MUL, DIV, REM
+            wide = (op - Opcode.IADD) % 4 == 1 || (op - Opcode.IADD) % 4 == 3;
+            popped = wide ? 4 : 2;
+        } else if (op <= Opcode.DNEG) {
+            wide = op == Opcode.LNEG || op == Opcode.DNEG;
+            popped = wide ? 2 : 1;
+        } else if (op <= Opcode.LUSHR) {                // ISHL, LSHL, ISHR, LSHR, IUSHR, LUSHR
+            wide = (op - Opcode.ISHL) % 2 == 1;
+            popped = wide ? 3 : 2;
+        } else {                                        // IAND, LAND, IOR, LOR, IXOR, LXOR
+            wide = (op - Opcode.IAND) % 2 == 1;
+            popped = wide ? 4 : 2;
+        }
+        pop(popped);
+        if (wide) push2(); else push(null);
+    }
+
+    private void conversion(int op) {
+        switch (op) {
+            case Opcode.I2L: case Opcode.I2D: case Opcode.F2L: case Opcode.F2D:
+                pop(1);
+                push2();
+                break;
+            case Opcode.L2I: case Opcode.L2F: case Opcode.D2I: case Opcode.D2F:
+                pop(2);
+                push(null);
+                break;
+            case Opcode.L2D: case Opcode.D2L:
+                break;
+            default:                                    // I2F, F2I, I2B, I2C, I2S
+                pop(1);
+                push(null);
+        }
+    }
+
+    private void readField(int index, int receiver) {
+        String type = cp.getFieldrefType(index);
+        Object value = pendingResult;
+        if (value == null && resolver != null && isReference(type, 0)) {
+            member(index);
+            value = resolver.field(refOwner[index], refName[index], type);
+        }
+        pop(receiver);
+        if (Descriptor.dataSize(type) == 2) push2(); else push(value);
+    }
+
+    private void invoke(int op, int index, int receiver) {
+        String descriptor = cp.getTag(index) == ConstPool.CONST_InterfaceMethodref
+                ? cp.getInterfaceMethodrefType(index) : cp.getMethodrefType(index);
+        int slots = parameterSlots(descriptor);
+        Object target = receiver == 0 ? null : peek(slots);
+        Object result = pendingResult;
+        if (target instanceof Appender) {
+            member(index);
+            result = onAppender((Appender) target, refOwner[index], refName[index], descriptor);
+        } else {
+            if (appenders) {
+                for (int i = 0; i < slots; i++) {       // a builder passed on may be changed by the callee
+                    if (peek(i) instanceof Appender) ((Appender) peek(i)).parts = null;
+                }
+            }
+            if (result == null && resolver != null && isReference(descriptor, descriptor.indexOf(')') + 1)) {
+                member(index);
+                result = resolver.call(op, refOwner[index], refName[index], descriptor, this);
+            }
+        }
+        pop(slots + receiver);
+        int size = returnSlots(descriptor);
+        if (size == 2) push2(); else if (size == 1) push(result);
+    }
+
+    /** StringBuilder / StringBuffer calls: the constructor, append and toString are followed. */
+    private Object onAppender(Appender builder, String owner, String name, String descriptor) {
+        if (!owner.equals(STRING_BUILDER) && !owner.equals(STRING_BUFFER)) {
+            builder.parts = null;
+            return null;
+        }
+        boolean oneParameter = descriptor.charAt(1) != ')' && nextType(descriptor, 1) == descriptor.indexOf(')');
+        switch (name) {
+            case "<init>":
+                if (oneParameter && descriptor.charAt(1) == 'L') {
+                    builder.append(text(peek(0), descriptor, 1));
+                } else if (!descriptor.equals("()V") && !descriptor.equals("(I)V")) {
+                    builder.parts = null;
+                }
+                return null;
+            case "append":
+                if (oneParameter) {
+                    builder.append(text(peek(0), descriptor, 1));
+                } else {
+                    builder.parts = null;
+                }
+                return builder;
+            case "toString":
+                return builder.value();
+            case "length":
+                return null;
+            default:
+                builder.parts = null;
+                return null;
+        }
+    }
+
+    /** {@code invokedynamic makeConcatWithConstants}: \1 in the recipe is an argument, \2 a bootstrap constant. */
+    private void invokeDynamic(int index) {
+        int nameAndType = cp.getInvokeDynamicNameAndType(index);
+        String descriptor = cp.getUtf8Info(cp.getNameAndTypeDescriptor(nameAndType));
+        Object result = pendingResult;
+        if (result == null && bootstrapMethods != null
+                && cp.getUtf8Info(cp.getNameAndTypeName(nameAndType)).equals("makeConcatWithConstants")) {
+            result = concatenate(bootstrapMethods.getMethods()[cp.getInvokeDynamicBootstrap(index)], descriptor);
+        }
+        pop(parameterSlots(descriptor));
+        int size = returnSlots(descriptor);
+        if (size == 2) push2(); else if (size == 1) push(result);
+    }
+
+    private Object concatenate(BootstrapMethodsAttribute.BootstrapMethod bootstrap, String descriptor) {
+        if (bootstrap.arguments.length == 0 || cp.getTag(bootstrap.arguments[0]) != ConstPool.CONST_String) return null;
+        String recipe = cp.getStringInfo(bootstrap.arguments[0]);
+        Object[] args = arguments(descriptor);
+        List<Object> parts = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int arg = 0, constant = 1;
+        int type = 1;                                   // position of the next parameter type in the descriptor
+        for (int i = 0; i < recipe.length(); i++) {
+            char c = recipe.charAt(i);
+            if (c == '\u0001') {
+                if (arg == args.length) return null;
+                Object part = text(args[arg++], descriptor, type);
+                type = nextType(descriptor, type);
+                if (part == null) return null;
+                if (part instanceof String) {
+                    literal.append((String) part);
+                } else {
+                    if (literal.length() > 0) parts.add(literal.toString());
+                    literal.setLength(0);
+                    parts.add(part);
+                }
+            } else if (c == '\u0002') {
+                if (constant >= bootstrap.arguments.length) return null;
+                int cpIndex = bootstrap.arguments[constant++];
+                int tag = cp.getTag(cpIndex);
+                if (tag == ConstPool.CONST_String) literal.append(cp.getStringInfo(cpIndex));
+                else if (tag == ConstPool.CONST_Integer) literal.append(cp.getIntegerInfo(cpIndex));
+                else return null;
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0 || parts.isEmpty()) parts.add(literal.toString());
+        return concat(parts);
+    }
+
+    /**
+     * Text a value passed as the parameter whose type starts at {@code at} in {@code descriptor}
+     * adds to a string: int constants are formatted, strings and resolved values kept; null if unknown.
+     */
+    private static Object text(Object value, String descriptor, int at) {
+        if (value == null || value instanceof Appender) return null;
+        switch (descriptor.charAt(at)) {
+            case 'I': case 'S': case 'B':
+                return value instanceof Integer ? value.toString() : null;
+            case 'C':
+                return value instanceof Integer ? String.valueOf((char) (int) (Integer) value) : null;
+            case 'Z':
+                return value instanceof Integer ? String.valueOf((Integer) value != 0) : null;
+            case 'L':
+                if (descriptor.startsWith("Ljava/lang/String;", at) || descriptor.startsWith("Ljava/lang/CharSequence;", at)
+                        || descriptor.startsWith("Ljava/lang/Object;", at)) {
+                    return value instanceof Integer ? null : value;
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    /** Position in a method descriptor of the parameter type after the one at {@code i}. */
+    private static int nextType(String descriptor, int i) {
+        while (descriptor.charAt(i) == '[') i++;
+        return descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+    }
+
+    /** A single String if all parts are strings, else a {@link Concat}. */
+    private static Object concat(List<Object> parts) {
+        if (parts.isEmpty()) return "";
+        if (parts.size() == 1 && parts.get(0) instanceof String) return parts.get(0);
+        return new Concat(parts.toArray());
+    }
+
+    private static boolean isReference(String descriptor, int at) {
+        char c = descriptor.charAt(at);
+        return c == 'L' || c == '[';
+    }
+
+    /** Decodes the owner and name of the field or method ref at {@code index}, once per class. */
+    private void member(int index) {
+        ensureNames();
+        if (refOwner[index] != null) return;
+        int tag = cp.getTag(index);
+        if (tag == ConstPool.CONST_Fieldref) {
+            refName[index] = cp.getFieldrefName(index);
+            refOwner[index] = cp.getFieldrefClassName(index);
+        } else if (tag == ConstPool.CONST_InterfaceMethodref) {
+            refName[index] = cp.getInterfaceMethodrefName(index);
+            refOwner[index] = cp.getInterfaceMethodrefClassName(index);
+        } else {
+            refName[index] = cp.getMethodrefName(index);
+            refOwner[index] = cp.getMethodrefClassName(index);
+        }
+    }
+
+    private String className(int index) {
+        ensureNames();
+        if (refOwner[index] == null) refOwner[index] = cp.getClassInfo(index);
+        return refOwner[index];
+    }
+
+    private void ensureNames() {
+        if (namesOf != cp) {
+            namesOf = cp;
+            refOwner = new String[cp.getSize()];
+            refName = new String[cp.getSize()];
+        }
+    }
+
+    private void pushConstant(int index) {
+        switch (cp.getTag(index)) {
+            case ConstPool.CONST_Integer:
+                push(cp.getIntegerInfo(index));
+                break;
+            case ConstPool.CONST_String:
+                push(cp.getStringInfo(index));
+                break;
+            default:
+                push(null);
+        }
+    }
+
+    /** DUP (1, 0), DUP_X1 (1, 1), DUP_X2 (1, 2), DUP2 (2, 0), DUP2_X1 (2, 1), DUP2_X2 (2, 2). */
+    private void duplicate(int count, int under) {
+        if (depth < count + under) {
+            for (int i = 0; i < count; i++) push(null);
+            return;
+        }
+        ensureCapacity(depth + count);
+        int from = depth - count - under;
+        System.arraycopy(stack, from, stack, from + count, count + under);
+        System.arraycopy(stack, depth, stack, from, count);
+        depth += count;
+    }
+
+    /** Remembers the stack for a forward branch target; backward targets have been passed already. */
+    private void branch(int target) {
+        if (target <= pendingPc) return;
+        Object[] saved = branchTargets.get(target);
+        if (saved == null) {
+            branchTargets.put(target, Arrays.copyOf(stack, depth));
+        } else if (saved.length == depth) {
+            for (int i = 0; i < depth; i++) {
+                if (saved[i] != null && !saved[i].equals(stack[i])) saved[i] = null;
+            }
+        }
+    }
+
+    /** Paths meeting: values that differ become unknown; on a depth mismatch the fall-through wins. */
+    private void merge(Object[] saved, int from, int to) {
+        if (saved.length != to - from) return;
+        for (int i = from; i < to; i++) {
+            if (stack[i] != null && !stack[i].equals(saved[i])) stack[i] = null;
+        }
+    }
+
+    private void push(Object value) {
+        ensureCapacity(depth + 1);
+        stack[depth++] = value;
+    }
+
+    private void push2() {
+        push(null);
+        push(null);
+    }
+
+    private Object pop() {
+        if (depth == 0) return null;
+        Object value = stack[--depth];
+        stack[depth] = null;
+        return value;
+    }
+
+    private void pop(int slots) {
+        for (int i = 0; i < slots; i++) pop();
+    }
+
+    private Object local(int slot) {
+        return slot < locals.length ? locals[slot] : null;
+    }
+
+    private void store(int slot, Object value, int size) {
+        if (slot + size > locals.length) locals = Arrays.copyOf(locals, slot + size);
+        locals[slot] = value;
+        if (size == 2) locals[slot + 1] = null;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > stack.length) stack = Arrays.copyOf(stack, Math.max(size, stack.length * 2));
+    }
+
+    private int u16(int i) {
+        return ((code[i] & 0xff) << 8) | (code[i + 1] & 0xff);
+    }
+
+    private int s32(int i) {
+        return (code[i] << 24) | ((code[i + 1] & 0xff) << 16) | ((code[i + 2] & 0xff) << 8) | (code[i + 3] & 0xff);
+    }
+}
@@ -0,0 +1,84 @@
+package org.madladlabs.classz.engine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue depths and wait times for one {@link ScanPipeline} run.
+ *
+ * A deep analysis queue and a reader that spends its time blocked mean the
+ * analysis workers are the bottleneck; a shallow queue and a writer waiting on
+ * results mean reading the input is.
+ */
+public class PipelineStats {
+
+    // Reader-thread fields are published to the caller by the end-of-input hand-off.
+    private long classesRead;
+    private long readerBlockedNanos;
+    private long analysisSamples;
+    private long analysisDepthSum;
+    private int analysisDepthMax;
+
+    // Written by the calling (writer) thread only.
+    private long writerWaitNanos;
+    private long resultSamples;
+    private long resultDepthSum;
+    private int resultDepthMax;
+
+    void sampleAnalysisQueue(int depth) {
+        analysisSamples++;
+        analysisDepthSum += depth;
+        analysisDepthMax = Math.max(analysisDepthMax, depth);
+    }
+
+    void readerBlocked(long nanos) {
+        readerBlockedNanos += nanos;
+        classesRead++;
+    }
+
+    void sampleResultQueue(int depth) {
+        resultSamples++;
+        resultDepthSum += depth;
+        resultDepthMax = Math.max(resultDepthMax, depth);
+    }
+
+    void writerWaited(long nanos) {
+        writerWaitNanos += nanos;
+    }
+
+    public long getClassesRead() {
+        return classesRead;
+    }
+
+    public int getMaxAnalysisQueueDepth() {
+        return analysisDepthMax;
+    }
+
+    public double getAvgAnalysisQueueDepth() {
+        return analysisSamples == 0 ? 0 : (double) analysisDepthSum / analysisSamples;
+    }
+
+    public int getMaxResultQueueDepth() {
+        return resultDepthMax;
+    }
+
+    public double getAvgResultQueueDepth() {
+        return resultSamples == 0 ? 0 : (double) resultDepthSum / resultSamples;
+    }
+
+    public long getReaderBlockedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readerBlockedNanos);
+    }
+
+    public long getWriterWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(writerWaitNanos);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("classes read=%d, analysis queue avg/max=%.1f/%d, result queue avg/max=%.1f/%d, "
+                        + "reader blocked=%dms, writer waited=%dms",
+                classesRead, getAvgAnalysisQueueDepth(), analysisDepthMax,
+                getAvgResultQueueDepth(), resultDepthMax,
+                getReaderBlockedMillis(), getWriterWaitMillis());
+    }
+}
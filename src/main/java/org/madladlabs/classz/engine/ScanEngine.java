@@ -2,51 +2,633 @@ package org.madladlabs.classz.engine;
 
 import javassist.ClassPool;
 import javassist.CtClass;
+import javassist.bytecode.AccessFlag;
+import javassist.bytecode.ClassFile;
+import org.madladlabs.classz.ClassEntryHandler;
+import org.madladlabs.classz.ClassExtractor;
+import org.madladlabs.classz.cache.ArchiveFingerprintStore;
+import org.madladlabs.classz.cache.FindingCache;
+import org.madladlabs.classz.index.ConstantFlowIndex;
+import org.madladlabs.classz.index.TypeHierarchy;
+import org.madladlabs.classz.metrics.ScanMetrics;
+import org.madladlabs.classz.metrics.TimingHistogram;
+import org.madladlabs.classz.model.Finding;
+import org.madladlabs.classz.model.StringDictionary;
 import org.madladlabs.classz.reporting.IFindingWriter;
+import org.madladlabs.classz.spi.IBytecodeVisitor;
 import org.madladlabs.classz.spi.IExtractor;
+import org.madladlabs.classz.spi.ScanContext;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class ScanEngine {
 
+    /** Classes read ahead per worker before the reader waits for the oldest result. */
+    private static final int IN_FLIGHT_PER_THREAD = 64;
+
+    // Pre-pass prefilter: only classes declaring a final String field, or a method returning a String or a
+    // statement, have anything for the ConstantFlowIndex to summarise
+    private static final byte[] STRING = "Ljava/lang/String;".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RETURNS_STRING = ")Ljava/lang/String;".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RETURNS_PREPARED_STATEMENT = ")Ljava/sql/PreparedStatement;".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RETURNS_CALLABLE_STATEMENT = ")Ljava/sql/CallableStatement;".getBytes(StandardCharsets.UTF_8);
+
     private final IFindingWriter writer;
     private final List<IExtractor> extractors = new ArrayList<>();
+    private final List<ServiceLoader.Provider<IBytecodeVisitor>> visitorProviders = new ArrayList<>();
+    // Parallel to extractors / visitorProviders; null means "run on every class"
+    private final List<ClassPrefilter> extractorFilters = new ArrayList<>();
+    private final List<ClassPrefilter> visitorFilters = new ArrayList<>();
+    private final List<Set<String>> extractorTypes = new ArrayList<>();
+    private final List<Set<String>> visitorTypes = new ArrayList<>();
+    // The filters of the current scan: the ones above, widened to subtypes once a pre-pass has run
+    private volatile List<ClassPrefilter> scanExtractorFilters = extractorFilters;
+    private volatile List<ClassPrefilter> scanVisitorFilters = visitorFilters;
+    private final TreeSet<String> extractorVersions = new TreeSet<>();
+
+    // Javassist pools and bytecode visitors are not thread-safe, so every scanning thread
+    // gets its own. They are replaced at the start of each scan, and a scanned class is
+    // detached as soon as all extractors have seen it, so a pool only ever caches the JDK
+    // types it resolves.
+    private volatile ThreadLocal<WorkerState> workerStates = newWorkerStates();
+
+    private int threads = 1;
+    private PipelineStats pipelineStats;
+    private FindingCache cache;
+    private ArchiveFingerprintStore fingerprintStore;
+    private boolean visitorTiming;
+    private long classBudgetNanos;                  // 0: no budget
+    private int slowClassLimit = ScanMetrics.DEFAULT_SLOW_CLASSES;
+    private boolean prePass;
+
+    // What the pre-pass learned about the current scan's input; handed to each new worker's visitors
+    private volatile ScanContext context = ScanContext.EMPTY;
+
+    // Counters and stage timings of the current (or last) scan
+    private volatile ScanMetrics metrics = new ScanMetrics();
+
+    // Findings of one scan share their strings; replaced along with the worker states
+    private volatile StringDictionary strings = new StringDictionary();
 
     public ScanEngine(IFindingWriter writer) {
         this.writer = writer;
     }
 
     public void loadExtractors() {
-        ServiceLoader.load(IExtractor.class).forEach(extractors::add);
+        for (IExtractor extractor : ServiceLoader.load(IExtractor.class)) {
+            extractors.add(extractor);
+            extractorFilters.add(ClassPrefilter.of(extractor.referencedTypes()));
+            extractorTypes.add(extractor.referencedTypes());
+            extractorVersions.add(extractor.name() + "@" + extractor.version());
+        }
+        ServiceLoader.load(IBytecodeVisitor.class).stream().forEach(provider -> {
+            IBytecodeVisitor visitor = provider.get();
+            visitorProviders.add(provider);
+            visitorFilters.add(ClassPrefilter.of(visitor.referencedTypes()));
+            visitorTypes.add(visitor.referencedTypes());
+            extractorVersions.add(visitor.name() + "@" + visitor.version());
+        });
+    }
+
+    /**
+     * Names and versions of the loaded extractors. A {@link FindingCache} is only
+     * valid for the fingerprint it was written with.
+     */
+    public String getExtractorFingerprint() {
+        return String.join(",", extractorVersions);
+    }
+
+    /**
+     * Replays findings from {@code cache} for classes whose bytes it has seen, and
+     * records the findings of every other class analysed. Null disables caching.
+     */
+    public void setCache(FindingCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Lets {@link #scanArchive} skip nested archives recorded in {@code store} and
+     * replay their findings, and records every nested archive it does scan. Null
+     * disables fingerprinting.
+     */
+    public void setFingerprintStore(ArchiveFingerprintStore store) {
+        this.fingerprintStore = store;
+    }
+
+    /**
+     * Times each bytecode visitor separately, instead of only the walk they share.
+     * Adds two clock reads per visitor event, so it is off by default.
+     */
+    public void setVisitorTiming(boolean visitorTiming) {
+        this.visitorTiming = visitorTiming;
+    }
+
+    /**
+     * Time each extractor may spend on one class; 0 (the default) means no limit.
+     *
+     * The shared bytecode walk counts as one extractor run and is stopped once it goes
+     * over, keeping whatever the visitors found up to then. An {@link IExtractor} cannot
+     * be interrupted, so one that goes over is only recorded. Either way the class is
+     * listed in {@link ScanMetrics#getRecordedOverruns()} and not added to the cache.
+     */
+    public void setClassTimeBudget(long millis) {
+        setClassTimeBudget(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /** {@link #setClassTimeBudget(long)} in any unit. */
+    public void setClassTimeBudget(long budget, TimeUnit unit) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("budget must be >= 0, was " + budget);
+        }
+        this.classBudgetNanos = unit.toNanos(budget);
+    }
+
+    /** How many of the slowest classes each scan's {@link ScanMetrics} keeps. */
+    public void setSlowClassLimit(int slowClassLimit) {
+        if (slowClassLimit < 0) {
+            throw new IllegalArgumentException("slowClassLimit must be >= 0, was " + slowClassLimit);
+        }
+        this.slowClassLimit = slowClassLimit;
+    }
+
+    /**
+     * Reads the input twice: first to collect, in parallel, the superclass and interfaces
+     * of every class ({@link TypeHierarchy}) and the SQL every class keeps in String fields
+     * and returns from helper methods ({@link ConstantFlowIndex}), then to analyse it with
+     * both in each visitor's {@link ScanContext}. The prefilters then also accept classes
+     * that only reference subtypes of an extractor's {@code referencedTypes()}. Off by default.
+     *
+     * A class's findings then depend on the rest of the input, so neither the finding
+     * cache nor the archive fingerprint store is used while it is on.
+     */
+    public void setPrePass(boolean prePass) {
+        this.prePass = prePass;
+    }
+
+    /**
+     * Number of worker threads used to analyse classes. With more than one thread,
+     * findings are still handed to the writer from the calling thread and in the
+     * same order as a single-threaded scan.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be >= 1, was " + threads);
+        }
+        this.threads = threads;
     }
 
     public void scanDirectory(Path root) throws IOException {
-        try (Stream<Path> files = Files.walk(root)) {
-            files.filter(p -> p.toString().endsWith(".class"))
-                    .forEach(this::scanClassFile);
+        resetScanState();
+        try {
+            List<Path> classFiles;
+            try (Stream<Path> files = Files.walk(root)) {
+                classFiles = files.filter(p -> p.toString().endsWith(".class"))
+                        .sorted()                   // stable order from run to run
+                        .collect(Collectors.toList());
+            }
+            if (prePass) {
+                runPrePass(feed -> {
+                    for (Path classFile : classFiles) {
+                        try (InputStream in = Files.newInputStream(classFile)) {
+                            feed.onClass(classFile.toString(), in);
+                        } catch (IOException e) {
+                            // reported when the class is scanned
+                        }
+                    }
+                });
+            }
+            scanClassFiles(classFiles);
+        } finally {
+            metrics.finish();
+        }
+    }
+
+    private void scanClassFiles(List<Path> classFiles) throws IOException {
+        if (threads == 1) {
+            classFiles.forEach(this::scanClassFile);
+        } else {
+            runPipeline(result -> write(result, writer, null), feed -> {
+                for (Path classFile : classFiles) {
+                    metrics.entryVisited();
+                    try (InputStream in = Files.newInputStream(classFile)) {
+                        feed.onClass(classFile.toString(), in);
+                    } catch (IOException e) {
+                        System.err.println("Failed to read class file: " + classFile);
+                        e.printStackTrace();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Scans an archive without unpacking it: class bytes are fed from the archive
+     * entries straight into the extractors, so no staging directory is needed.
+     * With more than one thread, reading the archive and analysing its classes
+     * overlap (see {@link ScanPipeline}).
+     */
+    public void scanArchive(File archive) throws IOException {
+        resetScanState();
+        try {
+            if (prePass) {
+                runPrePass(feed -> ClassExtractor.streamFromFile(archive, feed::onClass));
+            }
+            streamArchive(archive);
+        } finally {
+            metrics.finish();
+        }
+    }
+
+    private void streamArchive(File archive) throws IOException {
+        ScanMetrics scanMetrics = metrics;
+        String prefix = archive.getName() + "!/";
+        ArchiveRecorder recorder = fingerprintStore == null || prePass ? null : new ArchiveRecorder(writer, fingerprintStore, strings);
+        IFindingWriter out = recorder == null ? writer : recorder;
+        if (threads == 1) {
+            ScanPipeline.Feed direct = new ScanPipeline.Feed() {
+                @Override
+                public void onClass(String entryName, InputStream in) throws IOException {
+                    write(analyzeClass(entryName, in.readAllBytes()), out, recorder);
+                }
+
+                @Override
+                public void onWriter(Runnable action) {
+                    action.run();
+                }
+            };
+            ClassExtractor.streamFromFile(archive, archiveHandler(prefix, direct, recorder), scanMetrics);
+        } else {
+            runPipeline(result -> write(result, out, recorder), feed -> ClassExtractor.streamFromFile(archive,
+                    archiveHandler(prefix, feed, recorder), scanMetrics));
+        }
+    }
+
+    /**
+     * Feeds the classes of an archive to {@code feed}. With a recorder, nested archives
+     * whose fingerprint is already in the store are skipped and their findings
+     * replayed; the others are recorded as they complete.
+     */
+    private ClassEntryHandler archiveHandler(String prefix, ScanPipeline.Feed feed, ArchiveRecorder recorder) {
+        if (recorder == null) {
+            return (entryName, in) -> feed.onClass(prefix + entryName, in);
+        }
+        return new ClassEntryHandler() {
+            @Override
+            public void onClass(String entryName, InputStream in) throws IOException {
+                feed.onClass(prefix + entryName, in);
+            }
+
+            @Override
+            public boolean enterArchive(String entryName, String fingerprint) throws IOException {
+                List<Finding> known = fingerprintStore.lookup(fingerprint);
+                if (known != null) {
+                    feed.onWriter(() -> recorder.replay(known));
+                    return false;
+                }
+                feed.onWriter(() -> recorder.begin(fingerprint));
+                return true;
+            }
+
+            @Override
+            public void exitArchive(String entryName, boolean complete) throws IOException {
+                feed.onWriter(() -> recorder.end(complete));
+            }
+        };
+    }
+
+    /** Classes the last scan analysed, including the ones the prefilter rejected. */
+    public long getClassesScanned() {
+        return metrics.getClassesScanned();
+    }
+
+    /** Classes of the last scan that referenced nothing any extractor looks for and were never parsed. */
+    public long getClassesRejected() {
+        return metrics.getClassesRejected();
+    }
+
+    /** Classes of the last scan that passed the prefilter and were parsed for the extractors. */
+    public long getClassesParsed() {
+        return metrics.getClassesParsed();
+    }
+
+    /** Counters and per-stage / per-extractor timings of the last scan. */
+    public ScanMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** Distinct strings the findings of the last scan share. */
+    public int getDictionarySize() {
+        return strings.size();
+    }
+
+    /** Queue statistics of the last multi-threaded scan, or null if none has run. */
+    public PipelineStats getPipelineStats() {
+        return pipelineStats;
+    }
+
+    private void runPipeline(Consumer<ClassResult> results, ScanPipeline.Source source) throws IOException {
+        ScanPipeline pipeline = new ScanPipeline(threads, threads * IN_FLIGHT_PER_THREAD, this::analyzeClass);
+        pipelineStats = pipeline.run(source, results);
+    }
+
+    /**
+     * Writes the findings of a class. One that was not analysed in full keeps every
+     * nested archive it sits in from being recorded.
+     */
+    private static void write(ClassResult result, IFindingWriter out, ArchiveRecorder recorder) {
+        result.findings.forEach(out::accept);
+        if (!result.complete && recorder != null) {
+            recorder.incomplete();
         }
     }
 
     private void scanClassFile(Path classFile) {
-        try (InputStream in = Files.newInputStream(classFile)) {
-            CtClass ctClass = ClassPool.getDefault().makeClass(in);
-            for (IExtractor extractor : extractors) {
-                try {
-                    extractor.process(ctClass, writer);
-                } catch (Exception e) {
-                    System.err.println("Extractor " + extractor.name() + " failed on " + ctClass.getName());
-                    e.printStackTrace();
+        metrics.entryVisited();
+        try {
+            scanClass(classFile.toString(), Files.readAllBytes(classFile));
+        } catch (IOException e) {
+            System.err.println("Failed to read class file: " + classFile);
+            e.printStackTrace();
+        }
+    }
+
+    private void scanClass(String source, byte[] classBytes) {
+        analyzeClass(source, classBytes).findings.forEach(writer::accept);
+    }
+
+    private void resetScanState() {
+        metrics = new ScanMetrics(slowClassLimit);    // before the worker states, which time into it
+        workerStates = newWorkerStates();
+        strings = new StringDictionary();
+        context = ScanContext.EMPTY;
+        scanExtractorFilters = extractorFilters;
+        scanVisitorFilters = visitorFilters;
+    }
+
+    /** What one pre-pass thread collects. */
+    private static final class PrePassBuilders {
+        final TypeHierarchy.Builder types = new TypeHierarchy.Builder();
+        final ConstantFlowIndex.Builder constants = new ConstantFlowIndex.Builder();
+    }
+
+    /**
+     * Collects the hierarchy and SQL summaries of every class {@code source} produces, one
+     * set of builders per thread, makes them the scan's context and widens the prefilters
+     * with the subtypes found. Only the time spent on each class is recorded: the classes
+     * are counted when they are scanned.
+     */
+    private void runPrePass(ScanPipeline.Source source) throws IOException {
+        ScanMetrics scanMetrics = metrics;
+        List<PrePassBuilders> builders = Collections.synchronizedList(new ArrayList<>());
+        ThreadLocal<PrePassBuilders> threadBuilders = ThreadLocal.withInitial(() -> {
+            PrePassBuilders b = new PrePassBuilders();
+            builders.add(b);
+            return b;
+        });
+        BiFunction<String, byte[], ClassResult> indexer = (entryName, classBytes) -> {
+            indexClass(threadBuilders.get(), classBytes, scanMetrics);
+            return ClassResult.EMPTY;
+        };
+        if (threads == 1) {
+            source.produce(new ScanPipeline.Feed() {
+                @Override
+                public void onClass(String entryName, InputStream in) throws IOException {
+                    indexer.apply(entryName, in.readAllBytes());
+                }
+
+                @Override
+                public void onWriter(Runnable action) {
+                    action.run();
                 }
+            });
+        } else {
+            new ScanPipeline(threads, threads * IN_FLIGHT_PER_THREAD, indexer).run(source, r -> { });
+        }
+        List<TypeHierarchy.Builder> types = new ArrayList<>();
+        List<ConstantFlowIndex.Builder> constants = new ArrayList<>();
+        for (PrePassBuilders b : builders) {
+            types.add(b.types);
+            constants.add(b.constants);
+        }
+        TypeHierarchy hierarchy = TypeHierarchy.build(types);
+        context = new ScanContext(ConstantFlowIndex.build(constants), hierarchy);
+        scanExtractorFilters = widen(extractorTypes, hierarchy);
+        scanVisitorFilters = widen(visitorTypes, hierarchy);
+    }
+
+    private static void indexClass(PrePassBuilders builders, byte[] classBytes, ScanMetrics scanMetrics) {
+        long start = System.nanoTime();
+        try {
+            ConstantPoolIndex index = ConstantPoolIndex.parse(classBytes);
+            builders.types.add(index.thisClass(), index.superclass(), index.interfaces());
+            if (index.declaresField(AccessFlag.FINAL, STRING) || index.declaresMethodEndingWith(RETURNS_STRING)
+                    || index.declaresMethodEndingWith(RETURNS_PREPARED_STATEMENT)
+                    || index.declaresMethodEndingWith(RETURNS_CALLABLE_STATEMENT)) {
+                builders.constants.add(new ClassFile(new DataInputStream(new ByteArrayInputStream(classBytes))));
+            } else {
+                scanMetrics.classPrePassRejected();
             }
         } catch (Exception e) {
-            System.err.println("Failed to process class file: " + classFile);
+            // a class that cannot be read is reported when it is scanned
+        } finally {
+            scanMetrics.stage(ScanMetrics.PRE_PASS).record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Prefilters for {@code referencedTypes} that also match the subtypes {@code hierarchy}
+     * knows of; a {@code /SimpleName} stands for every type named that way.
+     */
+    private static List<ClassPrefilter> widen(List<Set<String>> referencedTypes, TypeHierarchy hierarchy) {
+        List<ClassPrefilter> filters = new ArrayList<>();
+        for (Set<String> names : referencedTypes) {
+            Set<String> widened = new HashSet<>(names);
+            for (String name : names) {
+                String type = name.replace('/', '.');
+                List<String> ancestors = type.startsWith(".") ? hierarchy.namesEndingWith(type) : List.of(type);
+                for (String ancestor : ancestors) {
+                    widened.addAll(hierarchy.subtypesOf(ancestor));
+                }
+            }
+            filters.add(ClassPrefilter.of(widened));
+        }
+        return filters;
+    }
+
+    private static boolean accepts(ClassPrefilter filter, ConstantPoolIndex index) {
+        return filter == null || filter.matches(index);
+    }
+
+    private ThreadLocal<WorkerState> newWorkerStates() {
+        return ThreadLocal.withInitial(WorkerState::new);
+    }
+
+    /** Per-thread analysis state: a class pool and one instance of every bytecode visitor. */
+    private class WorkerState {
+        final ClassPool pool = new ClassPool(true);
+        final List<IBytecodeVisitor> visitors = new ArrayList<>();
+        final TimingHistogram[] extractorTimers = new TimingHistogram[extractors.size()];
+        // Scratch space for the extractors / visitors selected for the current class
+        final boolean[] runExtractor = new boolean[extractors.size()];
+        final List<IBytecodeVisitor> selectedVisitors = new ArrayList<>();
+        final MessageDigest sha256;
+
+        WorkerState() {
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);   // required on every JVM
+            }
+            ScanMetrics scanMetrics = metrics;
+            for (int i = 0; i < extractors.size(); i++) {
+                extractorTimers[i] = scanMetrics.extractor(extractors.get(i).name());
+            }
+            ScanContext scanContext = context;
+            visitorProviders.forEach(provider -> {
+                IBytecodeVisitor visitor = provider.get();
+                visitor.init(scanContext);
+                visitors.add(visitorTiming ? new TimedVisitor(visitor, scanMetrics.extractor(visitor.name())) : visitor);
+            });
+        }
+    }
+
+    /**
+     * Runs every extractor over one class and returns what they found. Safe to call
+     * from several threads at once: each thread parses with its own ClassPool and
+     * findings are collected locally instead of going to the shared writer.
+     *
+     * The constant pool is indexed from the raw bytes first, and only the extractors
+     * whose {@code referencedTypes()} the class mentions are run. If there are none, the
+     * class is never handed to Javassist. A class that passes is looked up in the
+     * finding cache, if there is one, by the SHA-256 of its bytes. Bytecode visitors
+     * share a single walk over the class's methods. Every finding's strings are
+     * interned in the scan's {@link StringDictionary}, cached ones too. Each stage is timed into the
+     * scan's {@link ScanMetrics}, and each extractor run is held to the class time
+     * budget, if there is one; a class that goes over is reported as incomplete.
+     */
+    private ClassResult analyzeClass(String source, byte[] classBytes) {
+        List<Finding> findings = new ArrayList<>();
+        boolean complete = true;
+        StringDictionary dictionary = strings;
+        IFindingWriter collect = f -> findings.add(dictionary.intern(f));
+        ScanMetrics scanMetrics = metrics;
+        long classStart = System.nanoTime();
+        try {
+            WorkerState state = workerStates.get();
+            scanMetrics.classScanned();
+            long start = classStart;
+            ConstantPoolIndex index = ConstantPoolIndex.parse(classBytes);
+            scanMetrics.stage(ScanMetrics.INDEX).record(System.nanoTime() - start);
+
+            List<ClassPrefilter> extractorPrefilters = scanExtractorFilters;
+            List<ClassPrefilter> visitorPrefilters = scanVisitorFilters;
+            boolean selected = false;
+            for (int i = 0; i < extractors.size(); i++) {
+                state.runExtractor[i] = accepts(extractorPrefilters.get(i), index);
+                selected |= state.runExtractor[i];
+            }
+            state.selectedVisitors.clear();
+            for (int i = 0; i < state.visitors.size(); i++) {
+                if (accepts(visitorPrefilters.get(i), index)) {
+                    state.selectedVisitors.add(state.visitors.get(i));
+                }
+            }
+            if (!selected && state.selectedVisitors.isEmpty()) {
+                scanMetrics.classRejected();
+                return new ClassResult(findings, true);                // nothing here any extractor could match
+            }
+
+            byte[] digest = null;
+            if (cache != null && !prePass) {
+                digest = state.sha256.digest(classBytes);
+                List<Finding> cached = cache.get(digest);
+                if (cached != null) {
+                    scanMetrics.classCached();
+                    cached.forEach(collect::accept);
+                    return new ClassResult(findings, true);
+                }
+            }
+
+            start = System.nanoTime();
+            CtClass ctClass = state.pool.makeClass(new ByteArrayInputStream(classBytes));
+            scanMetrics.stage(ScanMetrics.PARSE).record(System.nanoTime() - start);
+            scanMetrics.classParsed();
+            try {
+                for (int i = 0; i < extractors.size(); i++) {
+                    if (!state.runExtractor[i]) continue;
+                    IExtractor extractor = extractors.get(i);
+                    start = System.nanoTime();
+                    try {
+                        extractor.process(ctClass, collect);
+                    } catch (Exception e) {
+                        System.err.println("Extractor " + extractor.name() + " failed on " + ctClass.getName());
+                        e.printStackTrace();
+                    }
+                    long elapsed = System.nanoTime() - start;
+                    state.extractorTimers[i].record(elapsed);
+                    if (classBudgetNanos > 0 && elapsed > classBudgetNanos) {
+                        overBudget(scanMetrics, source, extractor.name(), elapsed, false);
+                        complete = false;
+                    }
+                }
+                if (!state.selectedVisitors.isEmpty()) {
+                    start = System.nanoTime();
+                    if (classBudgetNanos > 0) {
+                        if (!BytecodeWalker.walk(ctClass.getClassFile(), state.selectedVisitors, collect,
+                                start + classBudgetNanos)) {
+                            overBudget(scanMetrics, source, visitorNames(state.selectedVisitors),
+                                    System.nanoTime() - start, true);
+                            complete = false;
+                        }
+                    } else {
+                        BytecodeWalker.walk(ctClass.getClassFile(), state.selectedVisitors, collect);
+                    }
+                    scanMetrics.stage(ScanMetrics.WALK).record(System.nanoTime() - start);
+                }
+            } finally {
+                ctClass.detach();               // release it from the pool – nothing needs it any more
+            }
+            if (digest != null && complete) {
+                cache.put(digest, findings);
+            }
+        } catch (Exception e) {
+            scanMetrics.classFailed();
+            System.err.println("Failed to process class file: " + source);
             e.printStackTrace();
+        } finally {
+            scanMetrics.classTimed(source, System.nanoTime() - classStart);
         }
+        return new ClassResult(findings, complete);
+    }
+
+    private static void overBudget(ScanMetrics scanMetrics, String source, String extractor,
+                                   long nanos, boolean aborted) {
+        scanMetrics.budgetExceeded(source, extractor, nanos, aborted);
+        System.err.println("Extractor " + extractor + " took " + TimeUnit.NANOSECONDS.toMillis(nanos)
+                + "ms on " + source + (aborted ? ", over the time budget – stopped" : ", over the time budget"));
+    }
+
+    private static String visitorNames(List<IBytecodeVisitor> visitors) {
+        return visitors.stream().map(IBytecodeVisitor::name).collect(Collectors.joining("+"));
     }
 }
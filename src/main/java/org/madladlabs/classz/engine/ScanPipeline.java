@@ -0,0 +1,141 @@
+package org.madladlabs.classz.engine;
+
+import org.madladlabs.classz.ClassEntryHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Staged scan: a reader thread pulls class bytes out of the input (archive
+ * decompression, file reads) while a fixed pool of workers runs the extractors.
+ *
+ * <pre>
+ *   reader ──► analysis queue ──► N workers ──► ordered results ──► caller thread ──► writer
+ * </pre>
+ *
+ * Every class read is represented by a {@link Future} in a bounded FIFO. The reader
+ * blocks once {@code capacity} classes are waiting, which bounds the bytes held in
+ * memory, and the calling thread drains the FIFO in read order, so results reach
+ * the consumer in the same order as in a single-threaded scan.
+ */
+class ScanPipeline {
+
+    /** Produces class entries; called once on the reader thread. */
+    interface Source {
+        void produce(Feed feed) throws IOException;
+    }
+
+    /** What a {@link Source} feeds: class entries, plus actions ordered among their findings. */
+    interface Feed extends ClassEntryHandler {
+        /** Runs {@code action} on the writer thread once everything fed before it has been written. */
+        void onWriter(Runnable action) throws IOException;
+    }
+
+    /** Queued like a class result, but run by the draining thread instead of a worker. */
+    private static final class WriterAction extends FutureTask<ClassResult> {
+        WriterAction(Runnable action) {
+            super(action, ClassResult.EMPTY);
+        }
+    }
+
+    private static final Future<ClassResult> END_OF_INPUT = CompletableFuture.completedFuture(ClassResult.EMPTY);
+
+    private final int workers;
+    private final int capacity;
+    private final BiFunction<String, byte[], ClassResult> analyzer;
+
+    ScanPipeline(int workers, int capacity, BiFunction<String, byte[], ClassResult> analyzer) {
+        this.workers = workers;
+        this.capacity = capacity;
+        this.analyzer = analyzer;
+    }
+
+    PipelineStats run(Source source, Consumer<ClassResult> results) throws IOException {
+        AtomicInteger workerId = new AtomicInteger();
+        ThreadPoolExecutor analysis = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),          // effectively bounded by 'pending' below
+                r -> daemon(r, "int-hunter-analyze-" + workerId.incrementAndGet()));
+        BlockingQueue<Future<ClassResult>> pending = new ArrayBlockingQueue<>(capacity);
+        AtomicReference<Throwable> readerFailure = new AtomicReference<>();
+        PipelineStats stats = new PipelineStats();
+
+        Thread reader = daemon(() -> {
+            try {
+                source.produce(new Feed() {
+                    @Override
+                    public void onClass(String entryName, InputStream in) throws IOException {
+                        byte[] classBytes = in.readAllBytes();
+                        Future<ClassResult> result = analysis.submit(() -> analyzer.apply(entryName, classBytes));
+                        stats.sampleAnalysisQueue(analysis.getQueue().size());
+                        long start = System.nanoTime();
+                        enqueue(pending, result);
+                        stats.readerBlocked(System.nanoTime() - start);
+                    }
+
+                    @Override
+                    public void onWriter(Runnable action) throws IOException {
+                        enqueue(pending, new WriterAction(action));
+                    }
+                });
+            } catch (Throwable t) {
+                readerFailure.set(t);
+            } finally {
+                try {
+                    pending.put(END_OF_INPUT);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "int-hunter-reader");
+
+        reader.start();
+        try {
+            while (true) {
+                stats.sampleResultQueue(pending.size());
+                Future<ClassResult> next = pending.take();
+                if (next == END_OF_INPUT) break;
+                if (next instanceof WriterAction) {
+                    ((WriterAction) next).run();
+                }
+
+                long start = System.nanoTime();
+                ClassResult result = next.get();
+                stats.writerWaited(System.nanoTime() - start);
+                results.accept(result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Scan interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Scan worker failed", e.getCause());
+        } finally {
+            reader.interrupt();
+            analysis.shutdownNow();
+        }
+
+        Throwable failure = readerFailure.get();
+        if (failure instanceof IOException) throw (IOException) failure;
+        if (failure != null) throw new IOException("Reader failed", failure);
+        return stats;
+    }
+
+    private static void enqueue(BlockingQueue<Future<ClassResult>> pending,
+                                Future<ClassResult> item) throws IOException {
+        try {
+            pending.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Reader interrupted", e);
+        }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -14,6 +14,9 @@ import org.madladlabs.classz.spi.IExtractor;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+
+import java.util.Set;
+
 /**
  * Detects primitive {@code int} and boxed {@code java.lang.Integer} fields on
  * JPA entity classes, supporting both Java EE (javax.persistence.*) and
@@ -35,6 +38,11 @@ public class HibernateIntFieldExtractor implements IExtractor {
             "javax.persistence.Column",   "jakarta.persistence.Column"
     };
 
+    // Only entities can have findings; the annotation type is all we need in the pool
+    private static final Set<String> REFERENCED_TYPES = Set.of(
+            "javax/persistence/Entity",   "jakarta/persistence/Entity"
+    );
+
     /* ─────────────────────────────────────────────────────────────── */
 
     @Override
@@ -42,6 +50,11 @@ public class HibernateIntFieldExtractor implements IExtractor {
         return "HibernateIntField";
     }
 
+    @Override
+    public Set<String> referencedTypes() {
+        return REFERENCED_TYPES;
+    }
+
     @Override
     public void process(CtClass ctClass, IFindingWriter writer) throws Exception {
         if (!isAnnotatedWith(ctClass, ENTITY_ANN)) return;   // not an entity
@@ -2,36 +2,76 @@ package org.madladlabs.classz.extractors;
 
 
 import javassist.CtClass;
-import javassist.CtMethod;
 import javassist.bytecode.*;
+import org.madladlabs.classz.engine.BytecodeWalker;
+import org.madladlabs.classz.index.TypeHierarchy;
 import org.madladlabs.classz.model.Finding;
 import org.madladlabs.classz.reporting.IFindingWriter;
+import org.madladlabs.classz.spi.IBytecodeVisitor;
 import org.madladlabs.classz.spi.IExtractor;
-
-import java.util.Locale;
+import org.madladlabs.classz.spi.ScanContext;
+import org.madladlabs.classz.sql.SqlClassifier;
+import org.madladlabs.classz.sql.SqlParameterParser;
+import org.madladlabs.classz.sql.SqlParameters;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
  * Detects integer values passed to Spring's JdbcTemplate / NamedParameterJdbcTemplate update(...) methods.
  *
- * Strategy (single pass over the byte-code):
+ * Strategy (single pass over the byte-code, driven by the engine's {@link BytecodeWalker} events):
  *   1. Remember SQL-looking string constants (for nicer reporting).
- *   2. Record the bytecode offset of the most-recent Integer.valueOf(int) boxing call.
+ *   2. Record the bytecode offset of every Integer.valueOf(int) boxing call, and the args
+ *      array element it is stored into (the constant pushed right after a DUP).
  *   3. When we hit an INVOKE* of *.update(...):
- *        – If that boxing call is "nearby" (<= BOXING_DISTANCE bytes back), we emit a Finding.
+ *        – Every boxing call that is "nearby" (<= BOXING_DISTANCE bytes back) becomes a
+ *          Finding, with paramIndex = element + 1 and the table and column that '?' binds.
+ *          Boxed values that are not array elements (e.g. put into a parameter map) give a
+ *          single Finding without a parameter.
+ *
+ * Which calls are template calls: with the engine's pre-pass, any type the scan's
+ * {@link TypeHierarchy} shows to be a JdbcTemplate / NamedParameterJdbcTemplate or to
+ * implement JdbcOperations / NamedParameterJdbcOperations, so subclasses and proxies count
+ * whatever their name. Without it, or for a type the input does not define, any type whose
+ * name ends with "JdbcTemplate", and the two operations interfaces themselves.
  */
-public class JdbcTemplateIntExtractor implements IExtractor {
+public class JdbcTemplateIntExtractor implements IExtractor, IBytecodeVisitor {
 
     private static final Logger logger = LogManager.getLogger(JdbcTemplateIntExtractor.class);
 
-    private static final int CONSTANT_String = 8;
     private static final int BOXING_DISTANCE = 200; // bytes between Integer.valueOf and update call
 
     private static final String JDBC_TEMPLATE =
             "org.springframework.jdbc.core.JdbcTemplate";
     private static final String NAMED_TEMPLATE =
             "org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate";
+    private static final String JDBC_OPERATIONS =
+            "org.springframework.jdbc.core.JdbcOperations";
+    private static final String NAMED_OPERATIONS =
+            "org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations";
+
+    private static final Set<String> REFERENCED_TYPES = Set.of("/JdbcTemplate", "/NamedParameterJdbcTemplate",
+            "/JdbcOperations", "/NamedParameterJdbcOperations");
+
+    /* per-class / per-method state – one instance is only ever used by one thread */
+    private IFindingWriter writer;
+    private TypeHierarchy hierarchy = TypeHierarchy.EMPTY;
+    private String className;
+    private final SqlClassifier sql = new SqlClassifier();
+    private final SqlParameterParser parameters = new SqlParameterParser();
+    private MethodInfo method;
+    private String recentSql;    // last SQL literal encountered
+    private int    recentSqlIndex;   // its constant-pool index
+    private int    instructionCount; // instructions seen in the method
+    private int    dupAt;            // instructionCount at the last DUP
+    private int    element;          // args array element being filled; -1 if none
+    private int[]  boxPcs = new int[8];      // bytecode index of each Integer.valueOf(int) …
+    private int[]  boxElements = new int[8]; // … and the element it is stored into
+    private int    boxCount;
 
     @Override
     public String name() {
@@ -40,143 +80,147 @@ public class JdbcTemplateIntExtractor implements IExtractor {
 
     @Override
     public void process(CtClass ctClass, IFindingWriter writer) throws Exception {
+        BytecodeWalker.walk(ctClass.getClassFile(), List.of(this), writer);
+    }
 
+    /**
+     * Classes without a JdbcTemplate / NamedParameterJdbcTemplate / JdbcOperations /
+     * NamedParameterJdbcOperations reference are skipped by the engine before they are parsed.
+     */
+    @Override
+    public Set<String> referencedTypes() {
+        return REFERENCED_TYPES;
+    }
 
-        /* >>> EARLY EXIT <<< */
+    @Override
+    public String version() {
+        return "6";         // 2: SqlClassifier – comments skipped before the keyword, quotes respected;
+                            // 3: one finding per boxed int, with paramIndex, table and column;
+                            // 4: template types from the pre-pass type hierarchy;
+                            // 5: DAOs typed against JdbcOperations / NamedParameterJdbcOperations;
+                            // 6: types outside the input matched by name
+    }
 
-        if (earlyReturnIfNotSpring(ctClass)) {
-            logger.info("Skipping " + ctClass.getName() +
-                    " – no Spring JdbcTemplate or NamedParameterJdbcTemplate references found.");
-            return;            // nothing Springy here – skip expensive work
-        }
+    @Override
+    public void init(ScanContext context) {
+        this.hierarchy = context.getHierarchy();
+    }
 
+    @Override
+    public boolean visitClass(ClassFile classFile, IFindingWriter writer) {
+        this.writer = writer;
+        this.className = classFile.getName();
+        sql.reset(classFile.getConstPool().getSize());
+        return true;
+    }
 
-        for (CtMethod method : ctClass.getDeclaredMethods()) {
-            MethodInfo mi = method.getMethodInfo();
-            CodeAttribute ca = mi.getCodeAttribute();
-            if (ca == null) continue;
-
-            ConstPool cp   = mi.getConstPool();
-            CodeIterator it = ca.iterator();
-            LineNumberAttribute lines =
-                    (LineNumberAttribute) ca.getAttribute(LineNumberAttribute.tag);
-
-            String recentSql = null;     // last SQL literal encountered
-            int    lastBox   = -1;       // bytecode index of last Integer.valueOf(int)
-
-            while (it.hasNext()) {
-                int idx = it.next();
-                int op  = it.byteAt(idx);
-
-                /* --- Phase 1: capture SQL literals ---------------------------------------- */
-                if (op == Opcode.LDC || op == Opcode.LDC_W) {
-                    int cpIdx = (op == Opcode.LDC)
-                            ? it.byteAt(idx + 1)
-                            : it.u16bitAt(idx + 1);
-                    if (cp.getTag(cpIdx) == CONSTANT_String) {
-                        String s = cp.getStringInfo(cpIdx);
-                        if (looksLikeSql(s)) recentSql = s;
-                    }
-                }
+    @Override
+    public void visitMethod(MethodInfo method) {
+        this.method = method;
+        recentSql = null;
+        instructionCount = 0;
+        dupAt     = -2;
+        element   = -1;
+        boxCount  = 0;
+    }
 
-                /* --- Phase 2: detect Integer boxing --------------------------------------- */
-                if (op == Opcode.INVOKESTATIC) {
-                    int cpIdx  = it.u16bitAt(idx + 1);
-                    String cls = cp.getMethodrefClassName(cpIdx);
-                    String m   = cp.getMethodrefName(cpIdx);
-                    String sig = cp.getMethodrefType(cpIdx);
-
-                    if ("java.lang.Integer".equals(cls)
-                            && "valueOf".equals(m)
-                            && "(I)Ljava/lang/Integer;".equals(sig)) {
-                        lastBox = idx;          // remember where boxing happened
-                    }
-                }
+    @Override
+    public void visitInstruction(int pc, int opcode) {
+        instructionCount++;
+        if (opcode == Opcode.DUP) {
+            dupAt = instructionCount;
+        } else if (opcode == Opcode.AASTORE) {
+            element = -1;
+        }
+    }
 
-                /* --- Phase 3: look for *.update(...) ------------------------------------- */
-                if (op == Opcode.INVOKEVIRTUAL || op == Opcode.INVOKEINTERFACE) {
-                    int cpIdx;
-                    String cls;
-                    String m;
-
-                    if (op == Opcode.INVOKEVIRTUAL) {
-                        cpIdx = it.u16bitAt(idx + 1);
-                        cls   = cp.getMethodrefClassName(cpIdx);
-                        m     = cp.getMethodrefName(cpIdx);
-                    } else {
-                        cpIdx = it.u16bitAt(idx + 1);
-                        cls   = cp.getInterfaceMethodrefClassName(cpIdx);
-                        m     = cp.getInterfaceMethodrefName(cpIdx);
-                    }
-
-                    if ("update".equals(m) &&
-                            (JDBC_TEMPLATE.equals(cls)
-                                    || NAMED_TEMPLATE.equals(cls)
-                                    || cls.endsWith("JdbcTemplate"))) {
-
-                        boolean intSeen = lastBox != -1
-                                && (idx - lastBox) <= BOXING_DISTANCE;
-
-                        if (intSeen) {
-                            int line = (lines != null) ? lines.toLineNumber(idx) : -1;
-                            writer.accept(new Finding(
-                                    "JdbcTemplateInt",
-                                    ctClass.getName(),
-                                    method.getName(),
-                                    line,
-                                    recentSql != null ? cleanSql(recentSql) : null,
-                                    null, null, null, null
-                            ));
-                        }
-
-                        /* reset trackers for the next update call in the same method */
-                        recentSql = null;
-                        lastBox   = -1;
-                    }
-                }
-            }
+    @Override
+    public void visitIntConstant(int pc, int value) {
+        if (instructionCount == dupAt + 1) {
+            element = value;    // DUP, <index>, <value>, AASTORE
         }
     }
 
-    /** @return true if the extractor should stop processing this class */
-    /**
-     * Returns true when the class does *not* reference JdbcTemplate / NamedParameterJdbcTemplate
-     * and we can safely skip byte-code analysis.
-     */
-    private boolean earlyReturnIfNotSpring(CtClass ctClass) {
-        ConstPool cp = ctClass.getClassFile().getConstPool();
-
-        for (int i = 1; i < cp.getSize(); i++) {
-            if (cp.getTag(i) == ConstPool.CONST_Class) {
-                // Constant-pool stores the internal form; make sure it’s dot-notation before comparing.
-                String internal = cp.getClassInfo(i);          // e.g. "org.springframework.jdbc.core.JdbcTemplate"
-                String dotName  = internal.replace('/', '.');  // just in case slash form appears
-
-                if (JDBC_TEMPLATE.equals(dotName) ||
-                        NAMED_TEMPLATE.equals(dotName) ||
-                        dotName.endsWith(".JdbcTemplate") ||
-                        dotName.endsWith(".NamedParameterJdbcTemplate")) {
-                    return false;              // relevant Spring reference found → KEEP processing
+    /* --- Phase 1: capture SQL literals ---------------------------------------- */
+    @Override
+    public void visitLdc(int pc, int cpIndex, String value) {
+        if (looksLikeSql(cpIndex, value)) {
+            recentSql = value;
+            recentSqlIndex = cpIndex;
+        }
+    }
+
+    @Override
+    public void visitInvoke(int pc, int opcode, String cls, String m, String sig) {
+
+        /* --- Phase 2: detect Integer boxing --------------------------------------- */
+        if (opcode == Opcode.INVOKESTATIC) {
+            if ("java.lang.Integer".equals(cls)
+                    && "valueOf".equals(m)
+                    && "(I)Ljava/lang/Integer;".equals(sig)) {
+                if (boxCount == boxPcs.length) {
+                    boxPcs = Arrays.copyOf(boxPcs, boxCount * 2);
+                    boxElements = Arrays.copyOf(boxElements, boxCount * 2);
                 }
+                boxPcs[boxCount] = pc;  // remember where boxing happened
+                boxElements[boxCount++] = element;
             }
+            return;
         }
-        return true;                           // no match → skip this class
-    }
 
+        /* --- Phase 3: look for *.update(...) ------------------------------------- */
+        if (opcode != Opcode.INVOKEVIRTUAL && opcode != Opcode.INVOKEINTERFACE) return;
+
+        if ("update".equals(m) && isJdbcTemplate(cls)) {
+
+            String statement = recentSql != null ? sql.cleanedOf(recentSqlIndex, recentSql) : null;
+            SqlParameters bound = statement != null ? parameters.parameters(statement) : null;
+            boolean elementSeen = false, unplacedSeen = false;
+            for (int i = 0; i < boxCount; i++) {
+                if (pc - boxPcs[i] > BOXING_DISTANCE) continue;
+                int paramIndex = boxElements[i] + 1;
+                if (paramIndex > 0) {
+                    elementSeen = true;
+                    report(pc, statement, paramIndex, bound);
+                } else {
+                    unplacedSeen = true;
+                }
+            }
+            if (unplacedSeen && !elementSeen) {
+                report(pc, statement, 0, bound);
+            }
 
+            /* reset trackers for the next update call in the same method */
+            recentSql = null;
+            boxCount  = 0;
+        }
+    }
 
     /* --------------------------------------------------------------------- */
-    private boolean looksLikeSql(String s) {
-        if (s == null || s.length() < 6) return false;
-        String l = s.trim().toLowerCase(Locale.ROOT);
-        return l.startsWith("select") || l.startsWith("insert")
-                || l.startsWith("update") || l.startsWith("delete")
-                || l.startsWith("merge")  || l.startsWith("call");
+    /** paramIndex 0: the boxed value's position is unknown */
+    private void report(int pc, String statement, int paramIndex, SqlParameters bound) {
+        writer.accept(new Finding(
+                "JdbcTemplateInt",
+                className,
+                method.getName(),
+                method.getLineNumber(pc),
+                statement,
+                paramIndex > 0 ? paramIndex : null,
+                bound != null ? bound.getTable() : null,
+                bound != null ? bound.getColumn(paramIndex) : null,
+                null
+        ));
+    }
+
+    private boolean isJdbcTemplate(String cls) {
+        if (!hierarchy.contains(cls)) {         // no pre-pass, or a type from outside the input
+            return cls.endsWith("JdbcTemplate") || JDBC_OPERATIONS.equals(cls) || NAMED_OPERATIONS.equals(cls);
+        }
+        return hierarchy.isSubtypeOf(cls, JDBC_TEMPLATE) || hierarchy.isSubtypeOf(cls, NAMED_TEMPLATE)
+                || hierarchy.isSubtypeOf(cls, JDBC_OPERATIONS) || hierarchy.isSubtypeOf(cls, NAMED_OPERATIONS);
     }
 
-    private String cleanSql(String sql) {
-        return sql.replaceAll("(?s)/\\*.*?\\*/", "")       // block comments
-                .replaceAll("--.*?(\\r?\\n|$)", "")      // line comments
-                .trim();
+    private boolean looksLikeSql(int cpIndex, String s) {
+        return s != null && s.length() >= 6 && sql.kindOf(cpIndex, s) != SqlClassifier.Kind.NONE;
     }
 }
@@ -1,45 +1,103 @@
 package org.madladlabs.classz.extractors;
 
 import javassist.CtClass;
-import javassist.CtMethod;
 import javassist.bytecode.*;
+import org.madladlabs.classz.engine.BytecodeWalker;
+import org.madladlabs.classz.engine.OperandStackTracker;
+import org.madladlabs.classz.index.ConstantFlowIndex;
+import org.madladlabs.classz.index.TypeHierarchy;
 import org.madladlabs.classz.model.Finding;
 import org.madladlabs.classz.reporting.IFindingWriter;
+import org.madladlabs.classz.spi.IBytecodeVisitor;
 import org.madladlabs.classz.spi.IExtractor;
+import org.madladlabs.classz.spi.ScanContext;
+import org.madladlabs.classz.sql.SqlClassifier;
+import org.madladlabs.classz.sql.SqlParameterParser;
+import org.madladlabs.classz.sql.SqlParameters;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import java.util.*;
 
 /**
- * Extractor that detects the use of PreparedStatement setter methods (like setInt, setString, etc.)
- * in Java bytecode. This is useful for identifying parameterized queries which are generally
- * safer against SQL injection attacks.
+ * Extractor that detects integers bound to modifying SQL through PreparedStatement setters
+ * ({@code setInt}, or {@code setObject} with a boxed int) in Java bytecode, so every int
+ * written to or compared in an INSERT / UPDATE / DELETE can be reviewed.
  *
  * <h2>How it works:</h2>
  * <ol>
  *   <li>Scans bytecode for SQL string literals (INSERT, UPDATE, DELETE, SELECT, etc.)</li>
  *   <li>Tracks when these SQL strings are passed to Connection.prepareStatement()</li>
  *   <li>Monitors subsequent method calls to find setter invocations on the PreparedStatement</li>
- *   <li>Reports findings when setter methods are detected for modifying SQL statements</li>
+ *   <li>Reports findings when int-typed setters are detected for modifying SQL statements</li>
  * </ol>
  *
  * <h2>Bytecode Analysis Strategy:</h2>
- * <p>The extractor performs a two-phase scan:</p>
+ * <p>The extractor is an {@link IBytecodeVisitor}: the engine walks each method once and
+ * the extractor reacts to the instruction events, keeping an {@link OperandStackTracker}
+ * in step with them:</p>
  * <ul>
- *   <li><b>Phase 1:</b> Detect SQL strings and prepareStatement calls</li>
- *   <li><b>Phase 2:</b> Track PreparedStatement usage and setter method invocations</li>
+ *   <li><b>Phase 1:</b> Detect SQL strings and prepareStatement calls; the statement the call
+ *       returns is pushed on the tracked stack, carrying its SQL</li>
+ *   <li><b>Phase 2:</b> The tracker follows it through locals, DUPs and branches, so several
+ *       statements can be live at once</li>
+ *   <li><b>Phase 3:</b> At each setter, read the receiver, the parameter index and the value
+ *       off the tracked stack; the setter's descriptor says whether the value is an int.
+ *       Report it with the table and column that placeholder binds, from
+ *       {@link SqlParameterParser}</li>
  * </ul>
+ * <p>All of this happens in one linear pass over each method. When the engine runs its
+ * pre-pass, SQL that reaches the method from elsewhere – a final String field, a helper
+ * returning the SQL, a helper returning the prepared statement – is looked up in the
+ * scan's {@link ConstantFlowIndex} as the tracker meets the field read or call, and
+ * connections and statements are recognised by the scan's {@link TypeHierarchy} instead
+ * of by name, so wrappers and pool proxies count and look-alikes do not; types from
+ * outside the input, such as a container's driver classes, still go by name.</p>
  *
  * @author madladlabs
  */
-public class PreparedStmtExtractor implements IExtractor {
+public class PreparedStmtExtractor implements IExtractor, IBytecodeVisitor {
 
     private static final Logger logger = LogManager.getLogger(PreparedStmtExtractor.class);
-    /**
-     * Constant pool tag for String constants in Java bytecode
-     */
-    private static final int CONSTANT_String = 8;
 
+    private static final Set<String> REFERENCED_TYPES = Set.of("/PreparedStatement", "/CallableStatement");
+
+    /** Descriptors of the setters whose value can be an int: setInt(int, int) and setObject(int, Object) */
+    private static final String SET_INT = "(II)V";
+    private static final String SET_OBJECT = "(ILjava/lang/Object;)V";
+
+    private static final String CONNECTION = "java.sql.Connection";
+    private static final String PREPARED_STATEMENT = "java.sql.PreparedStatement";
+    private static final String CALLABLE_STATEMENT = "java.sql.CallableStatement";
+
+    private static final String STRING = "Ljava/lang/String;";
+    private static final String RETURNS_STRING = ")Ljava/lang/String;";
+
+    /** Tracked value of an Integer.valueOf(int) result */
+    private static final Object BOXED_INT = new Object();
+
+    /** Tracked value of a PreparedStatement; sql is null unless it is a modifying statement */
+    private static final class Statement {
+        final String sql;
+
+        Statement(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    /* ── per-class state ── */
+    private IFindingWriter writer;
+    private String className;
+    private final SqlClassifier sql = new SqlClassifier();
+    private final SqlParameterParser parameters = new SqlParameterParser();
+    private final OperandStackTracker stack = new OperandStackTracker();
+    private TypeHierarchy hierarchy = TypeHierarchy.EMPTY;
+
+    /* ── per-method state ── */
+    private MethodInfo method;
+    /** The most recently seen SQL string, for SQL that is not a constant by the time it is prepared */
+    private String recentSqlLiteral;
+    /** Constant-pool index of {@link #recentSqlLiteral} */
+    private int recentSqlIndex;
 
 
     @Override
@@ -76,12 +134,18 @@ public class PreparedStmtExtractor implements IExtractor {
      *
      * <p>The detection algorithm:</p>
      * <ol>
-     *   <li>When we see LDC with a SQL string, we remember it</li>
-     *   <li>When we see INVOKEINTERFACE/INVOKEVIRTUAL calling prepareStatement, we know
-     *       the SQL is being prepared</li>
-     *   <li>We track which local variable stores the PreparedStatement (via ASTORE)</li>
-     *   <li>We scan forward for INVOKEVIRTUAL calls to setInt, setString, etc.</li>
-     *   <li>When found, we create a Finding to report this usage</li>
+     *   <li>When we see LDC with a SQL string, we remember it; the tracked stack holds it
+     *       too, until it is passed on</li>
+     *   <li>When we see INVOKEINTERFACE/INVOKEVIRTUAL calling prepareStatement, its SQL
+     *       argument (or the last SQL literal, if the argument was built at run time) is
+     *       attached to the statement the call pushes</li>
+     *   <li>ASTORE and ALOAD move the statement through local variables, so
+     *       {@code stmt.setInt(..)} is matched to {@code stmt}'s SQL even when other
+     *       statements are open, and a setter chained straight onto prepareStatement
+     *       finds the statement still on the stack</li>
+     *   <li>At a setter the receiver sits below its arguments; ICONST_1 above it is the
+     *       parameter index and the descriptor {@code (II)V} says an int is bound</li>
+     *   <li>Every int-typed setter on a modifying statement becomes a Finding</li>
      * </ol>
      *
      * @param ctClass The Java class to analyze
@@ -90,265 +154,189 @@ public class PreparedStmtExtractor implements IExtractor {
      */
     @Override
     public void process(CtClass ctClass, IFindingWriter writer) throws Exception {
-        logger.info("Processing class: " + ctClass.getName());
+        BytecodeWalker.walk(ctClass.getClassFile(), List.of(this), writer);
+    }
 
-        if (earlyReturnIfNoJDBCPrepOrCallable(ctClass)) {
-            logger.info("Skipping " + ctClass.getName() +
-                    " – no Prepared Statement or CallableStatement references found.");
-            return;            // nothing Springy here – skip expensive work
-        }
+    /**
+     * Only classes that reference a PreparedStatement or CallableStatement are worth
+     * walking; the engine checks this against the raw constant pool before parsing.
+     */
+    @Override
+    public Set<String> referencedTypes() {
+        return REFERENCED_TYPES;
+    }
 
-        for (CtMethod method : ctClass.getDeclaredMethods()) {
-            logger.info("  Method: " + method.getName());
+    @Override
+    public String version() {
+        return "8";         // 2: one finding per setter, attributed by local variable; 3: SqlClassifier;
+                            // 4: paramIndex, table and column; 5: operand stack tracking, int setters only;
+                            // 6: concatenated SQL, and SQL from fields and helpers via the pre-pass index;
+                            // 7: connection and statement types from the pre-pass type hierarchy;
+                            // 8: types outside the input matched by name
+    }
 
-            MethodInfo methodInfo = method.getMethodInfo();
-            CodeAttribute codeAttr = methodInfo.getCodeAttribute();
-            if (codeAttr == null) {
-                logger.info("    Skipped: No CodeAttribute.");
-                continue;
+    /**
+     * With a pre-pass index, String fields and calls the tracker cannot see into are
+     * looked up in it: a helper returning SQL yields the SQL, a helper returning a
+     * prepared statement yields the statement.
+     */
+    @Override
+    public void init(ScanContext context) {
+        hierarchy = context.getHierarchy();
+        ConstantFlowIndex constants = context.getConstants();
+        if (constants.size() == 0) return;
+        stack.setResolver(new OperandStackTracker.Resolver() {
+            @Override
+            public Object field(String owner, String name, String descriptor) {
+                return descriptor.equals(STRING) ? constants.fieldValue(owner, name) : null;
             }
 
-            ConstPool constPool = methodInfo.getConstPool();
-            CodeIterator ci = codeAttr.iterator();
-            LineNumberAttribute lineAttr = (LineNumberAttribute) codeAttr.getAttribute(LineNumberAttribute.tag);
-
-            // Track the most recently seen SQL string
-            String recentSqlLiteral = null;
-
-            // Track which local variable holds the PreparedStatement
-            int preparedStmtVarIndex = -1;
-
-            while (ci.hasNext()) {
-                int index = ci.next();
-                int opcode = ci.byteAt(index);
-
-                // Phase 1: Detect SQL string constants
-                if (opcode == Opcode.LDC || opcode == Opcode.LDC_W) {
-                    int cpIndex = (opcode == Opcode.LDC) ? ci.byteAt(index + 1) : ci.u16bitAt(index + 1);
-                    if (constPool.getTag(cpIndex) == CONSTANT_String) {
-                        String str = constPool.getStringInfo(cpIndex);
-                        if (isSqlString(str)) {
-                            recentSqlLiteral = str;
-                            logger.info("    Found SQL string: " + str);
-                        }
-                    }
-                }
-
-                // Phase 2: Detect Connection.prepareStatement call
-                if ((opcode == Opcode.INVOKEVIRTUAL || opcode == Opcode.INVOKEINTERFACE) && recentSqlLiteral != null) {
-                    int cpIndex = ci.u16bitAt(index + 1);
-
-                    String className = "";
-                    String methodName = "";
-
-                    // Extract class and method names based on invocation type
-                    if (opcode == Opcode.INVOKEVIRTUAL) {
-                        className = constPool.getMethodrefClassName(cpIndex);
-                        methodName = constPool.getMethodrefName(cpIndex);
-                    } else if (opcode == Opcode.INVOKEINTERFACE) {
-                        className = constPool.getInterfaceMethodrefClassName(cpIndex);
-                        methodName = constPool.getInterfaceMethodrefName(cpIndex);
-                    }
-
-                    logger.info("    Checking method call: " + className + "." + methodName);
-
-                    // Check if this is a prepareStatement call
-                    if (methodName.equals("prepareStatement") &&
-                            (className.equals("java.sql.Connection") || className.endsWith("Connection"))) {
-
-                        String currentSql = recentSqlLiteral;
-                        logger.info("    Matched prepareStatement with SQL: " + currentSql);
-
-                        // Track where the PreparedStatement is stored
-                        if (ci.hasNext()) {
-                            int nextIndex = ci.lookAhead();
-                            if (ci.byteAt(nextIndex) == Opcode.ASTORE) {
-                                preparedStmtVarIndex = ci.byteAt(nextIndex + 1);
-                                logger.info("    PreparedStatement stored in local var: " + preparedStmtVarIndex);
-                            } else if (ci.byteAt(nextIndex) >= Opcode.ASTORE_0 &&
-                                    ci.byteAt(nextIndex) <= Opcode.ASTORE_3) {
-                                preparedStmtVarIndex = ci.byteAt(nextIndex) - Opcode.ASTORE_0;
-                                logger.info("    PreparedStatement stored in local var: " + preparedStmtVarIndex);
-                            }
-                        }
-
-                        // Scan forward to find setter method calls
-                        scanForSetterMethods(codeAttr, constPool, index + 3, currentSql,
-                                preparedStmtVarIndex, lineAttr, ctClass, method, writer);
-
-                        // Reset for next potential prepareStatement
-                        recentSqlLiteral = null;
-                        preparedStmtVarIndex = -1;
-                    }
+            @Override
+            public Object call(int opcode, String owner, String name, String descriptor, OperandStackTracker stack) {
+                int id = constants.method(owner, name, descriptor);
+                if (id < 0) return null;
+                Object[] args = constants.needsArguments(id) ? stack.arguments(descriptor) : null;
+                if (descriptor.endsWith(RETURNS_STRING)) {
+                    return constants.returnedString(id, args);
                 }
+                String prepared = constants.preparedSql(id, args);
+                return prepared != null ? statement(prepared, -1) : null;
             }
-        }
+        });
     }
 
-    /**
-     * Scans bytecode starting from a given position to find setter method invocations
-     * on a PreparedStatement object.
-     *
-     * @param codeAttr The code attribute containing the bytecode
-     * @param constPool The constant pool for resolving method references
-     * @param startPos The position to start scanning from
-     * @param sql The SQL statement being prepared
-     * @param preparedStmtVar The local variable index holding the PreparedStatement
-     * @param lineAttr Line number attribute for source line mapping
-     * @param ctClass The class being analyzed
-     * @param method The method being analyzed
-     * @param writer The findings writer
-     */
-    private void scanForSetterMethods(CodeAttribute codeAttr, ConstPool constPool, int startPos,
-                                      String sql, int preparedStmtVar, LineNumberAttribute lineAttr,
-                                      CtClass ctClass, CtMethod method, IFindingWriter writer) {
-        CodeIterator follow = codeAttr.iterator();
-        follow.move(startPos);
-        boolean foundSetter = false;
-
-        while (follow.hasNext()) {
-            try {
-                int lookaheadIndex = follow.next();
-                int op = follow.byteAt(lookaheadIndex);
-
-                // Check for method invocations
-                if ((op == Opcode.INVOKEVIRTUAL || op == Opcode.INVOKEINTERFACE)) {
-                    int cp = follow.u16bitAt(lookaheadIndex + 1);
-                    String cname = "";
-                    String mname = "";
+    @Override
+    public boolean visitClass(ClassFile classFile, IFindingWriter writer) {
+        logger.debug("Processing class: {}", classFile.getName());
+        this.writer = writer;
+        this.className = classFile.getName();
+        sql.reset(classFile.getConstPool().getSize());
+        stack.setClassFile(classFile);
+        return true;
+    }
 
-                    if (op == Opcode.INVOKEVIRTUAL) {
-                        cname = constPool.getMethodrefClassName(cp);
-                        mname = constPool.getMethodrefName(cp);
-                    } else {
-                        cname = constPool.getInterfaceMethodrefClassName(cp);
-                        mname = constPool.getInterfaceMethodrefName(cp);
-                    }
+    @Override
+    public void visitMethod(MethodInfo method) {
+        logger.trace("  Method: {}", method.getName());
+        this.method = method;
+        recentSqlLiteral = null;
+        stack.reset(method);
+    }
 
-                    logger.info("      Checking method: " + cname + "." + mname);
+    @Override
+    public void visitInstruction(int pc, int opcode) {
+        stack.next(pc, opcode);
+    }
 
-                    // Check if this is a setter method on PreparedStatement
-                    if (isPreparedStatementSetter(cname, mname)) {
-                        if (isModifyingStatement(sql)) {
-                            int lineNumber = (lineAttr != null) ? lineAttr.toLineNumber(lookaheadIndex) : -1;
-                            logger.info("      Found setter: " + cname + "." + mname + " at line " + lineNumber);
-                            writer.accept(new Finding(
-                                    "PreparedStatement",
-                                    ctClass.getName(),
-                                    method.getName(),
-                                    lineNumber,
-                                    trimSql(sql),
-                                    null, null, null, null
-                            ));
-                            foundSetter = true;
-                            break;
-                        }
-                    }
-                }
+    /** Phase 1: Detect SQL string constants */
+    @Override
+    public void visitLdc(int pc, int cpIndex, String value) {
+        if (isSqlString(cpIndex, value)) {
+            recentSqlLiteral = value;
+            recentSqlIndex = cpIndex;
+            logger.trace("    Found SQL string: {}", value);
+        }
+    }
 
-                // Stop scanning at method exit points
-                if (isReturnOpcode(op)) {
-                    break;
+    /** Phases 1 and 3: Detect Connection.prepareStatement calls and the int setters on their statements */
+    @Override
+    public void visitInvoke(int pc, int opcode, String owner, String name, String descriptor) {
+        if (opcode == Opcode.INVOKESTATIC) {
+            if (name.equals("valueOf") && owner.equals("java.lang.Integer") && descriptor.equals("(I)Ljava/lang/Integer;")) {
+                stack.setResult(BOXED_INT);
+            }
+            return;
+        }
+        if (opcode != Opcode.INVOKEVIRTUAL && opcode != Opcode.INVOKEINTERFACE) return;
+
+        if (isStatementSetter(owner, name)) {
+            String javaType = intType(descriptor);
+            Object receiver = stack.peek(OperandStackTracker.parameterSlots(descriptor));
+            if (javaType != null && receiver instanceof Statement && ((Statement) receiver).sql != null) {
+                String statement = ((Statement) receiver).sql;
+                Object index = stack.peek(1);
+                Integer paramIndex = index instanceof Integer ? (Integer) index : null;
+                int lineNumber = method.getLineNumber(pc);
+                if (logger.isDebugEnabled()) {  // guarded: the line number would be boxed
+                    logger.debug("      Found setter: {}.{}({}) at line {}", owner, name, paramIndex, lineNumber);
                 }
-            } catch (Exception e) {
-                // Handle any bytecode reading errors
-                break;
+                SqlParameters bound = parameters.parameters(statement);
+                writer.accept(new Finding(
+                        "PreparedStatement",
+                        className,
+                        method.getName(),
+                        lineNumber,
+                        statement,
+                        paramIndex,
+                        bound.getTable(),
+                        paramIndex != null ? bound.getColumn(paramIndex) : null,
+                        javaType
+                ));
             }
+            return;
         }
 
-        if (!foundSetter) {
-            logger.info("    No matching setter found after prepareStatement.");
+        // Check if this is a prepareStatement call
+        if (name.equals("prepareStatement") && descriptor.startsWith("(Ljava/lang/String;") &&
+                isConnection(owner)) {
+            Object argument = stack.peek(OperandStackTracker.parameterSlots(descriptor) - 1);
+            String literal = argument instanceof String ? (String) argument : recentSqlLiteral;
+            int cpIndex = literal == recentSqlLiteral ? recentSqlIndex : -1;
+            logger.trace("    Matched prepareStatement with SQL: {}", literal);
+            stack.setResult(statement(literal, cpIndex));
+            // Reset for next potential prepareStatement
+            recentSqlLiteral = null;
         }
     }
 
-    /**
-     * Checks if a given class and method name combination represents a PreparedStatement
-     * setter method.
-     *
-     * @param className The fully qualified class name (using dots)
-     * @param methodName The method name
-     * @return true if this is a setter method we're interested in
-     */
-    private boolean isPreparedStatementSetter(String className, String methodName) {
-        return (className.equals("java.sql.PreparedStatement") ||
-                className.equals("java.sql.CallableStatement")) &&
-                (methodName.equals("setInt") || methodName.equals("setLong") ||
-                        methodName.equals("setString") || methodName.equals("setDouble") ||
-                        methodName.equals("setFloat") || methodName.equals("setBoolean") ||
-                        methodName.equals("setDate") || methodName.equals("setTimestamp") ||
-                        methodName.equals("setBigDecimal") || methodName.equals("setBytes") ||
-                        methodName.equals("setObject"));
+    /** Tracked statement prepared on {@code literal}; cpIndex is -1 if the SQL is not a constant of this class. */
+    private Statement statement(String literal, int cpIndex) {
+        return new Statement(literal != null && sql.kindOf(cpIndex, literal).isModifying()
+                ? sql.cleanedOf(cpIndex, literal) : null);
     }
 
-    /**
-     * Checks if an opcode represents a return instruction.
-     *
-     * @param opcode The bytecode opcode
-     * @return true if this is a return instruction
-     */
-    private boolean isReturnOpcode(int opcode) {
-        return opcode == Opcode.RETURN || opcode == Opcode.ARETURN ||
-                opcode == Opcode.IRETURN || opcode == Opcode.LRETURN ||
-                opcode == Opcode.FRETURN || opcode == Opcode.DRETURN;
+    /** A type the hierarchy does not define (e.g. a driver class outside the input) is matched by name. */
+    private boolean isStatementSetter(String className, String methodName) {
+        if (!methodName.startsWith("set")) return false;
+        if (className.equals(PREPARED_STATEMENT) || className.equals(CALLABLE_STATEMENT)) return true;
+        return hierarchy.contains(className) && (hierarchy.isSubtypeOf(className, PREPARED_STATEMENT)
+                || hierarchy.isSubtypeOf(className, CALLABLE_STATEMENT));
     }
 
     /**
-     * Determines if a string is likely to be a SQL statement based on common SQL keywords.
-     *
-     * @param str The string to check
-     * @return true if the string appears to be SQL
+     * Without a type hierarchy, or for a type it does not define (e.g. a container's
+     * {@code oracle.jdbc.OracleConnection}), any type whose name ends with "Connection".
      */
-    private boolean isSqlString(String str) {
-        if (str == null || str.length() < 10) return false;
-        String lower = str.toLowerCase().trim();
-        return lower.startsWith("select") || lower.startsWith("insert") ||
-                lower.startsWith("update") || lower.startsWith("delete") ||
-                lower.startsWith("merge") || lower.startsWith("call");
+    private boolean isConnection(String className) {
+        if (!hierarchy.contains(className)) {
+            return className.endsWith("Connection");
+        }
+        return hierarchy.isSubtypeOf(className, CONNECTION);
     }
 
     /**
-     * Checks if a SQL statement is a data-modifying statement (INSERT, UPDATE, DELETE).
-     *
-     * @param sql The SQL statement
-     * @return true if this is a modifying statement
+     * Java type of the int a setter binds – "int" for setInt, "java.lang.Integer" for
+     * setObject with a boxed int – or null if it binds something else.
      */
-    private boolean isModifyingStatement(String sql) {
-        String trimmed = trimSql(sql).toLowerCase(Locale.ROOT);
-        return trimmed.startsWith("insert") || trimmed.startsWith("update") || trimmed.startsWith("delete");
+    private String intType(String descriptor) {
+        if (descriptor.equals(SET_INT)) {
+            return "int";
+        }
+        if (descriptor.equals(SET_OBJECT) && stack.peek(0) == BOXED_INT) {
+            return "java.lang.Integer";
+        }
+        return null;
     }
 
     /**
-     * Removes comments and trims whitespace from a SQL statement.
+     * Determines if a string constant is likely to be a SQL statement based on its
+     * leading keyword. Classified once per constant-pool index.
      *
-     * @param sql The SQL statement to clean
-     * @return The cleaned SQL statement
+     * @param cpIndex The constant-pool index of the string
+     * @param str The string to check
+     * @return true if the string appears to be SQL
      */
-    private String trimSql(String sql) {
-        return sql.replaceAll("(?s)/\\*.*?\\*/", "")  // Remove block comments
-                .replaceAll("--.*?(\r?\n|$)", "")     // Remove line comments
-                .trim();
-    }
-    private static final String JDBC_PREPARED = "java.sql.PreparedStatement";
-
-    private static final String JDBC_CALLATBLE =
-            "java.sql.CallableStatement";
-    private boolean earlyReturnIfNoJDBCPrepOrCallable(CtClass ctClass) {
-        ConstPool cp = ctClass.getClassFile().getConstPool();
-
-        for (int i = 1; i < cp.getSize(); i++) {
-            if (cp.getTag(i) == ConstPool.CONST_Class) {
-                // Constant-pool stores the internal form; make sure it’s dot-notation before comparing.
-                String internal = cp.getClassInfo(i);          // e.g. "org.springframework.jdbc.core.JdbcTemplate"
-                String dotName  = internal.replace('/', '.');  // just in case slash form appears
-
-                if (JDBC_PREPARED.equals(dotName) ||
-                        JDBC_CALLATBLE.equals(dotName) ||
-                        dotName.endsWith(".PreparedStatement") ||
-                        dotName.endsWith(".CallableStatement")) {
-                    return false;              // relevant Spring reference found → KEEP processing
-                }
-            }
-        }
-        return true;                           // no match → skip this class
+    private boolean isSqlString(int cpIndex, String str) {
+        return str != null && str.length() >= 10 && sql.kindOf(cpIndex, str) != SqlClassifier.Kind.NONE;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,423 @@
+package org.madladlabs.classz.index;
+
+import javassist.bytecode.AccessFlag;
+import javassist.bytecode.BadBytecode;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.CodeAttribute;
+import javassist.bytecode.CodeIterator;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.ConstantAttribute;
+import javassist.bytecode.FieldInfo;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.Opcode;
+import org.madladlabs.classz.engine.OperandStackTracker;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Scan-wide index of the SQL text that flows through fields and helper methods, so a
+ * statement prepared in one method can be traced to SQL defined somewhere else:
+ * <pre>
+ *   static final String TABLE = schema() + ".orders";
+ *   static String update()                                     { return "UPDATE " + TABLE + " SET qty = ? WHERE id = ?"; }
+ *   static PreparedStatement prepare(Connection c, String sql) { return c.prepareStatement(sql); }
+ *   ...
+ *   prepare(conn, update()).setInt(2, id);
+ * </pre>
+ *
+ * Only what can carry SQL is summarised: final String fields (their constant value, or
+ * the value the static initialiser or constructors store), and methods returning a
+ * String, a PreparedStatement or a CallableStatement (the value they return, in terms
+ * of their parameters, other fields and other calls). Each summary is worked out by
+ * {@link OperandStackTracker}, so constants, {@code StringBuilder} chains and
+ * {@code invokedynamic} concatenation are followed. Summaries that are not the same on
+ * every path are dropped.
+ *
+ * Members get dense int ids from a {@link SymbolTable}, and the summaries refer to each
+ * other by id. Summaries that do not depend on their method's parameters are resolved
+ * once, when the index is built; the others are evaluated against the call's arguments
+ * when they are queried. Calls are matched on the owner named at the call site.
+ *
+ * Built in parallel with one {@link Builder} per thread; the built index is immutable
+ * and safe to share between scanning threads.
+ */
+public final class ConstantFlowIndex {
+
+    /** Nesting of helper calls followed when a summary is evaluated */
+    static final int MAX_DEPTH = 16;
+
+    public static final ConstantFlowIndex EMPTY = build(List.of());
+
+    private static final String STRING = "Ljava/lang/String;";
+    private static final String RETURNS_STRING = ")Ljava/lang/String;";
+    private static final String RETURNS_PREPARED_STATEMENT = ")Ljava/sql/PreparedStatement;";
+    private static final String RETURNS_CALLABLE_STATEMENT = ")Ljava/sql/CallableStatement;";
+
+    /** Summary of a member that has no single value */
+    private static final Object AMBIGUOUS = new Object();
+
+    private static final byte RESOLVING = 1, RESOLVED = 2;     // by id in state; 0: not resolved yet
+
+    /* ── symbolic values, as they appear in summaries ── */
+
+    /** The k-th parameter of the summarised method */
+    private static final class Param {
+        final int k;
+
+        Param(int k) {
+            this.k = k;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Param && ((Param) o).k == k;
+        }
+
+        @Override
+        public int hashCode() {
+            return k;
+        }
+    }
+
+    /** The value of a String field */
+    private static final class Ref {
+        final String key;
+        int id = -1;                    // set when the index is built
+
+        Ref(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Ref && ((Ref) o).key.equals(key);
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode();
+        }
+    }
+
+    /** The result of a call, with its arguments */
+    private static final class Call {
+        final String key;
+        final Object[] args;
+        int id = -1;
+
+        Call(String key, Object[] args) {
+            this.key = key;
+            this.args = args;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Call && ((Call) o).key.equals(key) && Arrays.equals(((Call) o).args, args);
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() * 31 + Arrays.hashCode(args);
+        }
+    }
+
+    /** A statement prepared on some SQL */
+    private static final class Prepared {
+        final Object sql;
+
+        Prepared(Object sql) {
+            this.sql = sql;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Prepared && Objects.equals(((Prepared) o).sql, sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(sql);
+        }
+    }
+
+    private final SymbolTable symbols;
+    private final Object[] summaries;           // by id
+    private final boolean[] needsArguments;     // by id: the summary refers to a parameter
+    private final Object[] resolved;            // by id: value of a summary without parameters
+    private final byte[] state;
+
+    private ConstantFlowIndex(SymbolTable symbols, Object[] summaries) {
+        this.symbols = symbols;
+        this.summaries = summaries;
+        int size = symbols.size();
+        needsArguments = new boolean[size];
+        resolved = new Object[size];
+        state = new byte[size];
+        for (int id = 0; id < size; id++) {
+            link(summaries[id]);
+            needsArguments[id] = refersToParameter(summaries[id]);
+        }
+        for (int id = 0; id < size; id++) {
+            if (!needsArguments[id]) resolve(id, 0);
+        }
+    }
+
+    /** Merges what the builders collected. Members summarised differently by two builders are dropped. */
+    public static ConstantFlowIndex build(Collection<Builder> builders) {
+        SymbolTable symbols = new SymbolTable();
+        Object[] summaries = new Object[64];
+        for (Builder builder : builders) {
+            for (Map.Entry<String, Object> entry : builder.summaries.entrySet()) {
+                int id = symbols.add(entry.getKey());
+                if (id == summaries.length) summaries = Arrays.copyOf(summaries, id * 2);
+                if (summaries[id] == null) {
+                    summaries[id] = entry.getValue();
+                } else if (!summaries[id].equals(entry.getValue())) {
+                    summaries[id] = AMBIGUOUS;         // e.g. the same class in two jars, changed
+                }
+            }
+        }
+        return new ConstantFlowIndex(symbols, summaries);
+    }
+
+    /** Number of members summarised. */
+    public int size() {
+        return symbols.size();
+    }
+
+    /** Value of the String field {@code owner.name} (owner in dot notation), or null if not known. */
+    public String fieldValue(String owner, String name) {
+        int id = symbols.find(owner, name, "");
+        return id >= 0 && resolved[id] instanceof String ? (String) resolved[id] : null;
+    }
+
+    /** Id of the summarised method {@code owner.name descriptor}, or -1. */
+    public int method(String owner, String name, String descriptor) {
+        return symbols.find(owner, name, descriptor);
+    }
+
+    /** True if what method {@code id} returns depends on its arguments. */
+    public boolean needsArguments(int id) {
+        return needsArguments[id];
+    }
+
+    /**
+     * String method {@code id} returns when called with {@code args} (by parameter
+     * position; may be null if {@link #needsArguments} is false), or null if not known.
+     */
+    public String returnedString(int id, Object[] args) {
+        Object value = value(id, args);
+        return value instanceof String ? (String) value : null;
+    }
+
+    /** SQL of the statement method {@code id} prepares and returns when called with {@code args}, or null. */
+    public String preparedSql(int id, Object[] args) {
+        Object value = value(id, args);
+        return value instanceof Prepared && ((Prepared) value).sql instanceof String
+                ? (String) ((Prepared) value).sql : null;
+    }
+
+    private Object value(int id, Object[] args) {
+        return needsArguments[id] ? evaluate(summaries[id], args, 0) : resolved[id];
+    }
+
+    /** Memoised value of a summary without parameters; null while it is being resolved (a cycle). */
+    private Object resolve(int id, int depth) {
+        if (state[id] == RESOLVED) return resolved[id];
+        if (state[id] == RESOLVING) return null;
+        state[id] = RESOLVING;
+        resolved[id] = evaluate(summaries[id], null, depth);
+        state[id] = RESOLVED;
+        return resolved[id];
+    }
+
+    /** A String, a Prepared with String SQL, an argument passed in, or null if not known. */
+    private Object evaluate(Object value, Object[] args, int depth) {
+        if (value instanceof String) {
+            return value;
+        }
+        if (value instanceof Param) {
+            int k = ((Param) value).k;
+            return args != null && k < args.length ? args[k] : null;
+        }
+        if (value instanceof Ref) {
+            int id = ((Ref) value).id;
+            return id >= 0 && !needsArguments[id] ? resolve(id, depth) : null;
+        }
+        if (value instanceof Call) {
+            Call call = (Call) value;
+            if (call.id < 0 || depth >= MAX_DEPTH) return null;
+            if (!needsArguments[call.id]) return resolve(call.id, depth + 1);
+            Object[] actual = new Object[call.args.length];
+            for (int i = 0; i < actual.length; i++) {
+                actual[i] = evaluate(call.args[i], args, depth);
+            }
+            return evaluate(summaries[call.id], actual, depth + 1);
+        }
+        if (value instanceof OperandStackTracker.Concat) {
+            OperandStackTracker.Concat concat = (OperandStackTracker.Concat) value;
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < concat.size(); i++) {
+                Object part = evaluate(concat.part(i), args, depth);
+                if (!(part instanceof String)) return null;
+                text.append((String) part);
+            }
+            return text.toString();
+        }
+        if (value instanceof Prepared) {
+            Object sql = evaluate(((Prepared) value).sql, args, depth);
+            return sql instanceof String ? new Prepared(sql) : null;
+        }
+        return null;
+    }
+
+    /** Sets the ids of the members a summary refers to. */
+    private void link(Object value) {
+        if (value instanceof Ref) {
+            ((Ref) value).id = symbols.find(((Ref) value).key);
+        } else if (value instanceof Call) {
+            Call call = (Call) value;
+            call.id = symbols.find(call.key);
+            for (Object arg : call.args) link(arg);
+        } else if (value instanceof OperandStackTracker.Concat) {
+            OperandStackTracker.Concat concat = (OperandStackTracker.Concat) value;
+            for (int i = 0; i < concat.size(); i++) link(concat.part(i));
+        } else if (value instanceof Prepared) {
+            link(((Prepared) value).sql);
+        }
+    }
+
+    private static boolean refersToParameter(Object value) {
+        if (value instanceof Param) {
+            return true;
+        }
+        if (value instanceof Call) {
+            for (Object arg : ((Call) value).args) {
+                if (refersToParameter(arg)) return true;
+            }
+        } else if (value instanceof OperandStackTracker.Concat) {
+            OperandStackTracker.Concat concat = (OperandStackTracker.Concat) value;
+            for (int i = 0; i < concat.size(); i++) {
+                if (refersToParameter(concat.part(i))) return true;
+            }
+        } else if (value instanceof Prepared) {
+            return refersToParameter(((Prepared) value).sql);
+        }
+        return false;
+    }
+
+    /**
+     * Summarises the classes one thread reads. Not thread-safe; give each thread its
+     * own and pass them all to {@link ConstantFlowIndex#build(Collection)}.
+     */
+    public static final class Builder {
+
+        private final Map<String, Object> summaries = new HashMap<>();
+        private final OperandStackTracker stack = new OperandStackTracker();
+        private final Set<String> finalStrings = new HashSet<>();   // of the current class
+
+        public Builder() {
+            stack.setResolver(new OperandStackTracker.Resolver() {
+                @Override
+                public Object field(String owner, String name, String descriptor) {
+                    return descriptor.equals(STRING) ? new Ref(owner + '.' + name) : null;
+                }
+
+                @Override
+                public Object call(int opcode, String owner, String name, String descriptor, OperandStackTracker stack) {
+                    // Built alongside the type hierarchy, so the owner cannot be checked: the descriptor has to do
+                    if (name.equals("prepareStatement") && descriptor.startsWith("(Ljava/lang/String;")
+                            && descriptor.endsWith(RETURNS_PREPARED_STATEMENT)) {
+                        Object sql = stack.arguments(descriptor)[0];
+                        return sql != null ? new Prepared(sql) : null;
+                    }
+                    if (owner.startsWith("java.") || !isSummarised(descriptor)) return null;
+                    return new Call(owner + '.' + name + descriptor, stack.arguments(descriptor));
+                }
+            });
+        }
+
+        /** Number of members summarised so far. */
+        public int size() {
+            return summaries.size();
+        }
+
+        public void add(ClassFile classFile) throws BadBytecode {
+            String className = classFile.getName();
+            finalStrings.clear();
+            for (FieldInfo field : classFile.getFields()) {
+                if ((field.getAccessFlags() & AccessFlag.FINAL) == 0 || !field.getDescriptor().equals(STRING)) continue;
+                finalStrings.add(field.getName());
+                ConstantAttribute constant = (ConstantAttribute) field.getAttribute(ConstantAttribute.tag);
+                if (constant != null) {
+                    record(className + '.' + field.getName(), field.getConstPool().getStringInfo(constant.getConstantValue()));
+                }
+            }
+            stack.setClassFile(classFile);
+            for (MethodInfo method : classFile.getMethods()) {
+                CodeAttribute code = method.getCodeAttribute();
+                if (code == null) continue;
+                boolean initialiser = method.isStaticInitializer() || method.isConstructor();
+                boolean summarised = !initialiser && isSummarised(method.getDescriptor());
+                if (summarised || (initialiser && !finalStrings.isEmpty())) {
+                    summarise(className, method, code, summarised);
+                }
+            }
+        }
+
+        private void summarise(String className, MethodInfo method, CodeAttribute code, boolean returns)
+                throws BadBytecode {
+            ConstPool cp = method.getConstPool();
+            String key = className + '.' + method.getName() + method.getDescriptor();
+            stack.reset(method);
+            int slot = (method.getAccessFlags() & AccessFlag.STATIC) != 0 ? 0 : 1;
+            int[] sizes = OperandStackTracker.parameterSizes(method.getDescriptor());
+            for (int k = 0; k < sizes.length; k++) {
+                stack.setLocal(slot, new Param(k));
+                slot += sizes[k];
+            }
+            boolean returned = false;
+            CodeIterator it = code.iterator();
+            while (it.hasNext()) {
+                int pc = it.next();
+                int op = it.byteAt(pc);
+                stack.next(pc, op);
+                if (op == Opcode.ARETURN && returns) {
+                    record(key, stack.peek(0));
+                    returned = true;
+                } else if ((op == Opcode.PUTSTATIC || op == Opcode.PUTFIELD) && !returns) {
+                    int index = it.u16bitAt(pc + 1);
+                    if (cp.getFieldrefClassName(index).equals(className)
+                            && finalStrings.contains(cp.getFieldrefName(index))) {
+                        Object value = stack.peek(0);
+                        record(className + '.' + cp.getFieldrefName(index), refersToParameter(value) ? null : value);
+                    }
+                }
+            }
+            if (returns && !returned) {
+                record(key, null);              // only throws
+            }
+        }
+
+        /** A member with more than one value, or an unknown one, is ambiguous. */
+        private void record(String key, Object value) {
+            if (value == null) {
+                summaries.put(key, AMBIGUOUS);
+            } else {
+                summaries.merge(key, value, (a, b) -> a.equals(b) ? a : AMBIGUOUS);
+            }
+        }
+
+        private static boolean isSummarised(String descriptor) {
+            return descriptor.endsWith(RETURNS_STRING) || descriptor.endsWith(RETURNS_PREPARED_STATEMENT)
+                    || descriptor.endsWith(RETURNS_CALLABLE_STATEMENT);
+        }
+    }
+}
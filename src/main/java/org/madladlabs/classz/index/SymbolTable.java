@@ -0,0 +1,96 @@
+package org.madladlabs.classz.index;
+
+import java.util.Arrays;
+
+/**
+ * Dense int ids for member keys ({@code owner.name} for fields, {@code owner.namedescriptor}
+ * for methods), in an open-addressing table: one {@code int[]} of slots and one array of
+ * keys, no entry objects. Lookups take the key in parts, so the scan path can ask for
+ * {@code owner}, {@code name} and {@code descriptor} without concatenating them.
+ *
+ * Not thread-safe while ids are being added; safe to share once it is no longer changed.
+ */
+final class SymbolTable {
+
+    private String[] keys = new String[64];     // by id
+    private int[] slots = new int[128];         // id + 1, 0 = empty; length is a power of two
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    String key(int id) {
+        return keys[id];
+    }
+
+    /** Id of {@code key}, added if new. */
+    int add(String key) {
+        int mask = slots.length - 1;
+        for (int i = spread(key.hashCode()) & mask; ; i = (i + 1) & mask) {
+            int id = slots[i] - 1;
+            if (id < 0) {
+                if (size == keys.length) keys = Arrays.copyOf(keys, size * 2);
+                keys[size] = key;
+                slots[i] = ++size;
+                if (size * 2 > slots.length) rehash();
+                return size - 1;
+            }
+            if (keys[id].equals(key)) return id;
+        }
+    }
+
+    /** Id of {@code key}, or -1. */
+    int find(String key) {
+        int mask = slots.length - 1;
+        for (int i = spread(key.hashCode()) & mask; ; i = (i + 1) & mask) {
+            int id = slots[i] - 1;
+            if (id < 0 || keys[id].equals(key)) return id;
+        }
+    }
+
+    /** Id of {@code owner + '.' + name + descriptor}, or -1. */
+    int find(String owner, String name, String descriptor) {
+        int h = 0;
+        h = hash(h, owner);
+        h = 31 * h + '.';
+        h = hash(h, name);
+        h = hash(h, descriptor);
+        int length = owner.length() + 1 + name.length() + descriptor.length();
+        int mask = slots.length - 1;
+        for (int i = spread(h) & mask; ; i = (i + 1) & mask) {
+            int id = slots[i] - 1;
+            if (id < 0) return -1;
+            String key = keys[id];
+            if (key.length() == length
+                    && key.startsWith(owner)
+                    && key.charAt(owner.length()) == '.'
+                    && key.startsWith(name, owner.length() + 1)
+                    && key.startsWith(descriptor, owner.length() + 1 + name.length())) {
+                return id;
+            }
+        }
+    }
+
+    /** Same polynomial as {@link String#hashCode()}, continued from {@code h}. */
+    private static int hash(int h, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int i = spread(keys[id].hashCode()) & mask;
+            while (slots[i] != 0) i = (i + 1) & mask;
+            slots[i] = id + 1;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.madladlabs.classz.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Scan-wide class hierarchy, from the superclass and interfaces of every class in the
+ * input, so an extractor can recognise a {@code JdbcTemplate} subclass or a
+ * {@code Connection} implementation whatever it is called.
+ *
+ * Every type named – defined in the input, or only extended or implemented by something
+ * that is – gets a dense int id from a {@link SymbolTable}; the edges are int arrays by
+ * id. {@link #isSubtypeOf} walks them once per (type, ancestor) pair and keeps the answer
+ * in a fixed-size direct-mapped table of packed longs, so repeated queries cost a hash
+ * lookup of each name and one array read. A type the input says nothing about is only
+ * a subtype of itself; callers that need more can check {@link #contains} first.
+ *
+ * Built in parallel with one {@link Builder} per thread; the built hierarchy is safe to
+ * share between scanning threads.
+ */
+public final class TypeHierarchy {
+
+    /** Longest superclass / interface chain followed; deeper (or cyclic) input is cut off */
+    static final int MAX_DEPTH = 64;
+
+    private static final int MIN_MEMO = 1 << 10, MAX_MEMO = 1 << 20;
+    private static final int[] NONE = new int[0];
+    private static final int[] UNDEFINED = new int[0];     // interfaces of a type only named as a supertype
+
+    public static final TypeHierarchy EMPTY = build(List.of());
+
+    private final SymbolTable names;
+    private final int defined;                  // types defined in the input
+    private final int[] superclass;             // by id; -1 if none or unknown
+    private final int[][] interfaces;           // by id
+    // (type + 1) << 32 | (ancestor + 1) << 1 | answer, at a slot picked by hashing the pair; 0 = empty
+    private final AtomicLongArray memo;
+
+    private TypeHierarchy(SymbolTable names, int defined, int[] superclass, int[][] interfaces) {
+        this.names = names;
+        this.defined = defined;
+        this.superclass = superclass;
+        this.interfaces = interfaces;
+        this.memo = new AtomicLongArray(Math.min(MAX_MEMO, Math.max(MIN_MEMO, Integer.highestOneBit(names.size()) * 4)));
+    }
+
+    /** Merges what the builders collected; for a class defined twice, the first definition wins. */
+    public static TypeHierarchy build(Collection<Builder> builders) {
+        SymbolTable names = new SymbolTable();
+        int[] superclass = new int[64];
+        int[][] interfaces = new int[64][];         // null until the type is defined
+        int defined = 0;
+        for (Builder builder : builders) {
+            for (String[] type : builder.types) {
+                int id = names.add(type[0]);
+                int parent = type[1] != null ? names.add(type[1]) : -1;
+                int[] implemented = type.length == 2 ? NONE : new int[type.length - 2];
+                for (int i = 0; i < implemented.length; i++) {
+                    implemented[i] = names.add(type[i + 2]);
+                }
+                if (names.size() > superclass.length) {
+                    int length = Math.max(names.size(), superclass.length * 2);
+                    superclass = Arrays.copyOf(superclass, length);
+                    interfaces = Arrays.copyOf(interfaces, length);
+                }
+                if (interfaces[id] != null) continue;
+                defined++;
+                superclass[id] = parent;
+                interfaces[id] = implemented;
+            }
+        }
+        int size = names.size();
+        superclass = Arrays.copyOf(superclass, size);
+        interfaces = Arrays.copyOf(interfaces, size);
+        for (int id = 0; id < size; id++) {
+            if (interfaces[id] == null) {                // only named as a supertype: no known parents
+                superclass[id] = -1;
+                interfaces[id] = UNDEFINED;
+            }
+        }
+        return new TypeHierarchy(names, defined, superclass, interfaces);
+    }
+
+    /** Number of types defined in the input; 0 if there was no pre-pass. */
+    public int size() {
+        return defined;
+    }
+
+    /** True if {@code type} (dot notation) is defined in the input, so its supertypes are known. */
+    public boolean contains(String type) {
+        int t = names.find(type);
+        return t >= 0 && interfaces[t] != UNDEFINED;
+    }
+
+    /**
+     * True if {@code type} is {@code ancestor} or extends or implements it, directly or
+     * not, as far as the input shows. Names in dot notation.
+     */
+    public boolean isSubtypeOf(String type, String ancestor) {
+        int t = names.find(type);
+        if (t < 0) return type.equals(ancestor);
+        int a = names.find(ancestor);
+        return a >= 0 && isSubtypeOf(t, a, 0);
+    }
+
+    /** Types defined in the input that extend or implement {@code ancestor}, directly or not. */
+    public List<String> subtypesOf(String ancestor) {
+        List<String> subtypes = new ArrayList<>();
+        int a = names.find(ancestor);
+        if (a < 0) return subtypes;
+        for (int id = 0; id < names.size(); id++) {
+            if (id != a && interfaces[id] != UNDEFINED && isSubtypeOf(id, a, 0)) {
+                subtypes.add(names.key(id));
+            }
+        }
+        return subtypes;
+    }
+
+    /** Types named in the input, defined there or not, whose name ends with {@code suffix}. */
+    public List<String> namesEndingWith(String suffix) {
+        List<String> matches = new ArrayList<>();
+        for (int id = 0; id < names.size(); id++) {
+            if (names.key(id).endsWith(suffix)) matches.add(names.key(id));
+        }
+        return matches;
+    }
+
+    private boolean isSubtypeOf(int type, int ancestor, int depth) {
+        if (type == ancestor) return true;
+        if (depth >= MAX_DEPTH) return false;
+        long key = ((long) (type + 1) << 32) | ((long) (ancestor + 1) << 1);
+        int slot = (int) mix(key) & (memo.length() - 1);
+        long entry = memo.get(slot);
+        if ((entry & ~1L) == key) return (entry & 1) != 0;
+
+        boolean answer = superclass[type] >= 0 && isSubtypeOf(superclass[type], ancestor, depth + 1);
+        for (int i = 0; !answer && i < interfaces[type].length; i++) {
+            answer = isSubtypeOf(interfaces[type][i], ancestor, depth + 1);
+        }
+        if (depth == 0 || answer) {
+            memo.set(slot, key | (answer ? 1 : 0));     // a miss cut off by MAX_DEPTH is only kept at the top
+        }
+        return answer;
+    }
+
+    private static long mix(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return key ^ (key >>> 29);
+    }
+
+    /**
+     * Collects the classes one thread reads. Not thread-safe; give each thread its own
+     * and pass them all to {@link TypeHierarchy#build(Collection)}.
+     */
+    public static final class Builder {
+
+        private final List<String[]> types = new ArrayList<>();
+
+        /**
+         * Adds a class or interface. Names in dot notation; {@code superclass} is null for
+         * {@code java.lang.Object}.
+         */
+        public void add(String name, String superclass, String[] interfaces) {
+            String[] type = new String[interfaces.length + 2];
+            type[0] = name;
+            type[1] = superclass;
+            System.arraycopy(interfaces, 0, type, 2, interfaces.length);
+            types.add(type);
+        }
+
+        /** Number of types added so far. */
+        public int size() {
+            return types.size();
+        }
+    }
+}
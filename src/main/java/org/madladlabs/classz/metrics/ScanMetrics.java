@@ -0,0 +1,377 @@
+package org.madladlabs.classz.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timings for one scan, from reading the archive down to each
+ * extractor, to tell whether a slow scan is spending its time unpacking, parsing
+ * classes or in a particular extractor.
+ *
+ * Stage timers are per class: the time to index its constant pool, to parse it,
+ * to walk its bytecode, to summarise it in the engine's pre-pass (if enabled) and
+ * to run each extractor on it. The slowest classes are
+ * kept, as are the extractor runs that went over the engine's per-class time
+ * budget. Thread-safe; the scan workers update one instance concurrently.
+ */
+public class ScanMetrics {
+
+    public static final int DEFAULT_SLOW_CLASSES = 10;
+    /** Budget overruns kept in detail; later ones are only counted. */
+    static final int MAX_RECORDED_OVERRUNS = 100;
+
+    public static final String INDEX = "constantPoolIndex";
+    public static final String PARSE = "classParse";
+    public static final String WALK = "bytecodeWalk";
+    public static final String PRE_PASS = "prePass";
+
+    // Archive reading
+    private final LongAdder entriesVisited = new LongAdder();
+    private final LongAdder nestedArchives = new LongAdder();
+    private final LongAdder bytesDecompressed = new LongAdder();
+    private final LongAdder inflateNanos = new LongAdder();
+
+    // Class analysis
+    private final LongAdder classesScanned = new LongAdder();
+    private final LongAdder classesRejected = new LongAdder();
+    private final LongAdder classesCached = new LongAdder();
+    private final LongAdder classesParsed = new LongAdder();
+    private final LongAdder classesFailed = new LongAdder();
+    private final LongAdder prePassRejected = new LongAdder();
+
+    private final Map<String, TimingHistogram> stages = new LinkedHashMap<>();
+    private final Map<String, TimingHistogram> extractors = new LinkedHashMap<>();
+
+    // Slowest classes: a min-heap of the top N, and the time a class has to beat to enter it
+    private final int slowClassLimit;
+    private final PriorityQueue<ClassTiming> slowest =
+            new PriorityQueue<>(Comparator.comparingLong(ClassTiming::getNanos));
+    private volatile long slowThreshold = -1;
+
+    private final LongAdder budgetOverruns = new LongAdder();
+    private final List<BudgetOverrun> overruns = new ArrayList<>();
+
+    private final long startNanos = System.nanoTime();
+    private volatile long wallNanos = -1;
+
+    public ScanMetrics() {
+        this(DEFAULT_SLOW_CLASSES);
+    }
+
+    /** @param slowClassLimit how many of the slowest classes to keep; 0 keeps none */
+    public ScanMetrics(int slowClassLimit) {
+        if (slowClassLimit < 0) {
+            throw new IllegalArgumentException("slowClassLimit must be >= 0, was " + slowClassLimit);
+        }
+        this.slowClassLimit = slowClassLimit;
+        stages.put(INDEX, new TimingHistogram());
+        stages.put(PARSE, new TimingHistogram());
+        stages.put(WALK, new TimingHistogram());
+        stages.put(PRE_PASS, new TimingHistogram());
+    }
+
+    public void entryVisited() {
+        entriesVisited.increment();
+    }
+
+    public void nestedArchiveOpened() {
+        nestedArchives.increment();
+    }
+
+    /** {@code bytes} of entry data read, decompressing as needed, in {@code nanos}. */
+    public void decompressed(long bytes, long nanos) {
+        bytesDecompressed.add(bytes);
+        inflateNanos.add(nanos);
+    }
+
+    public void classScanned() {
+        classesScanned.increment();
+    }
+
+    /** Class rejected by the constant-pool prefilter without being parsed. */
+    public void classRejected() {
+        classesRejected.increment();
+    }
+
+    /** Class whose findings came from the finding cache. */
+    public void classCached() {
+        classesCached.increment();
+    }
+
+    public void classParsed() {
+        classesParsed.increment();
+    }
+
+    public void classFailed() {
+        classesFailed.increment();
+    }
+
+    /** Class the pre-pass did not parse: it declares nothing the constant-flow index summarises. */
+    public void classPrePassRejected() {
+        prePassRejected.increment();
+    }
+
+    /** Timer of one of the {@link #INDEX}, {@link #PARSE}, {@link #WALK} and {@link #PRE_PASS} stages. */
+    public TimingHistogram stage(String name) {
+        TimingHistogram timer = stages.get(name);
+        if (timer == null) {
+            throw new IllegalArgumentException("Unknown stage: " + name);
+        }
+        return timer;
+    }
+
+    /** Timer of the extractor or visitor with this {@code name()}, created on first use. */
+    public synchronized TimingHistogram extractor(String name) {
+        return extractors.computeIfAbsent(name, n -> new TimingHistogram());
+    }
+
+    /** Total analysis time of one class, kept if it is among the slowest seen. */
+    public void classTimed(String source, long nanos) {
+        if (slowClassLimit == 0 || nanos <= slowThreshold) return;
+        synchronized (slowest) {
+            slowest.add(new ClassTiming(source, nanos));
+            if (slowest.size() > slowClassLimit) {
+                slowest.poll();
+            }
+            if (slowest.size() == slowClassLimit) {
+                slowThreshold = slowest.peek().getNanos();
+            }
+        }
+    }
+
+    /**
+     * An extractor (or the shared bytecode walk) took longer than the per-class
+     * budget; {@code aborted} if it was stopped rather than left to finish.
+     */
+    public void budgetExceeded(String source, String extractor, long nanos, boolean aborted) {
+        budgetOverruns.increment();
+        synchronized (overruns) {
+            if (overruns.size() < MAX_RECORDED_OVERRUNS) {
+                overruns.add(new BudgetOverrun(source, extractor, nanos, aborted));
+            }
+        }
+    }
+
+    /** Stops the wall clock; called by the engine when the scan ends. */
+    public void finish() {
+        wallNanos = System.nanoTime() - startNanos;
+    }
+
+    public long getEntriesVisited() {
+        return entriesVisited.sum();
+    }
+
+    public long getNestedArchives() {
+        return nestedArchives.sum();
+    }
+
+    public long getBytesDecompressed() {
+        return bytesDecompressed.sum();
+    }
+
+    public long getInflateMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(inflateNanos.sum());
+    }
+
+    public long getClassesScanned() {
+        return classesScanned.sum();
+    }
+
+    public long getClassesRejected() {
+        return classesRejected.sum();
+    }
+
+    public long getClassesCached() {
+        return classesCached.sum();
+    }
+
+    public long getClassesParsed() {
+        return classesParsed.sum();
+    }
+
+    public long getClassesFailed() {
+        return classesFailed.sum();
+    }
+
+    public long getClassesPrePassRejected() {
+        return prePassRejected.sum();
+    }
+
+    /** The slowest classes analysed, slowest first. */
+    public List<ClassTiming> getSlowestClasses() {
+        List<ClassTiming> list;
+        synchronized (slowest) {
+            list = new ArrayList<>(slowest);
+        }
+        list.sort(Comparator.comparingLong(ClassTiming::getNanos).reversed());
+        return list;
+    }
+
+    public long getBudgetOverruns() {
+        return budgetOverruns.sum();
+    }
+
+    /** The first {@value #MAX_RECORDED_OVERRUNS} budget overruns, in the order they happened. */
+    public List<BudgetOverrun> getRecordedOverruns() {
+        synchronized (overruns) {
+            return new ArrayList<>(overruns);
+        }
+    }
+
+    /** Wall-clock time of the scan, or of the scan so far if it has not finished. */
+    public long getWallMillis() {
+        long nanos = wallNanos;
+        return TimeUnit.NANOSECONDS.toMillis(nanos < 0 ? System.nanoTime() - startNanos : nanos);
+    }
+
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> archive = new LinkedHashMap<>();
+        archive.put("entriesVisited", getEntriesVisited());
+        archive.put("nestedArchives", getNestedArchives());
+        archive.put("bytesDecompressed", getBytesDecompressed());
+        archive.put("inflateMillis", getInflateMillis());
+
+        Map<String, Object> classes = new LinkedHashMap<>();
+        classes.put("scanned", getClassesScanned());
+        classes.put("rejectedByPrefilter", getClassesRejected());
+        classes.put("fromCache", getClassesCached());
+        classes.put("parsed", getClassesParsed());
+        classes.put("failed", getClassesFailed());
+        classes.put("rejectedByPrePass", getClassesPrePassRejected());
+
+        Map<String, Object> stageTimes = new LinkedHashMap<>();
+        stages.forEach((name, timer) -> stageTimes.put(name, timer.toMap()));
+        Map<String, Object> extractorTimes = new LinkedHashMap<>();
+        extractors.forEach((name, timer) -> extractorTimes.put(name, timer.toMap()));
+
+        List<Map<String, Object>> slowClasses = new ArrayList<>();
+        for (ClassTiming timing : getSlowestClasses()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("source", timing.getSource());
+            entry.put("micros", TimeUnit.NANOSECONDS.toMicros(timing.getNanos()));
+            slowClasses.add(entry);
+        }
+        List<Map<String, Object>> overrunList = new ArrayList<>();
+        for (BudgetOverrun overrun : getRecordedOverruns()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("source", overrun.getSource());
+            entry.put("extractor", overrun.getExtractor());
+            entry.put("micros", TimeUnit.NANOSECONDS.toMicros(overrun.getNanos()));
+            entry.put("aborted", overrun.isAborted());
+            overrunList.add(entry);
+        }
+        Map<String, Object> budget = new LinkedHashMap<>();
+        budget.put("overruns", getBudgetOverruns());
+        budget.put("recorded", overrunList);
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("wallMillis", getWallMillis());
+        map.put("archive", archive);
+        map.put("classes", classes);
+        map.put("stages", stageTimes);
+        map.put("extractors", extractorTimes);
+        map.put("slowestClasses", slowClasses);
+        map.put("timeBudget", budget);
+        return map;
+    }
+
+    /** Writes {@link #toMap()} to {@code file} as JSON. */
+    public void writeJson(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), toMap());
+    }
+
+    /** Multi-line summary for the console. */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("wall time: %dms%n", getWallMillis()));
+        sb.append(String.format("archive: %d entries, %d nested archives, %d bytes decompressed in %dms%n",
+                getEntriesVisited(), getNestedArchives(), getBytesDecompressed(), getInflateMillis()));
+        sb.append(String.format("classes: %d scanned, %d rejected by prefilter, %d from cache, %d parsed, %d failed%n",
+                getClassesScanned(), getClassesRejected(), getClassesCached(), getClassesParsed(), getClassesFailed()));
+        if (stage(PRE_PASS).getCount() > 0) {
+            sb.append(String.format("pre-pass: %d classes read, %d with nothing to summarise%n",
+                    stage(PRE_PASS).getCount(), getClassesPrePassRejected()));
+        }
+        stages.forEach((name, timer) -> sb.append(String.format("  %-26s %s%n", name, timer)));
+        extractors.forEach((name, timer) -> sb.append(String.format("  %-26s %s%n", name, timer)));
+        if (getBudgetOverruns() > 0) {
+            sb.append(String.format("over time budget: %d (%d aborted of the first %d)%n", getBudgetOverruns(),
+                    getRecordedOverruns().stream().filter(BudgetOverrun::isAborted).count(),
+                    getRecordedOverruns().size()));
+        }
+        List<ClassTiming> slowClasses = getSlowestClasses();
+        if (!slowClasses.isEmpty()) {
+            sb.append(String.format("slowest classes:%n"));
+            for (ClassTiming timing : slowClasses) {
+                sb.append(String.format("  %8dµs  %s%n", TimeUnit.NANOSECONDS.toMicros(timing.getNanos()),
+                        timing.getSource()));
+            }
+        }
+        return sb.toString().stripTrailing();
+    }
+
+    /** Analysis time of one class. */
+    public static final class ClassTiming {
+        private final String source;
+        private final long nanos;
+
+        ClassTiming(String source, long nanos) {
+            this.source = source;
+            this.nanos = nanos;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+    }
+
+    /** One extractor run on one class that went over the time budget. */
+    public static final class BudgetOverrun {
+        private final String source;
+        private final String extractor;
+        private final long nanos;
+        private final boolean aborted;
+
+        BudgetOverrun(String source, String extractor, long nanos, boolean aborted) {
+            this.source = source;
+            this.extractor = extractor;
+            this.nanos = nanos;
+            this.aborted = aborted;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public String getExtractor() {
+            return extractor;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public boolean isAborted() {
+            return aborted;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.madladlabs.classz.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary form of a {@link Finding}, for the files the scanner keeps between
+ * runs. Strings are length-prefixed UTF-8, with -1 for null.
+ */
+public final class FindingCodec {
+
+    private FindingCodec() {
+    }
+
+    public static void write(DataOutput out, Finding f) throws IOException {
+        writeString(out, f.getType());
+        writeString(out, f.getClassName());
+        writeString(out, f.getMethodName());
+        out.writeInt(f.getBytecodeLine());
+        writeString(out, f.getSqlSnippet());
+        out.writeBoolean(f.getParamIndex() != null);
+        if (f.getParamIndex() != null) out.writeInt(f.getParamIndex());
+        writeString(out, f.getTable());
+        writeString(out, f.getColumn());
+        writeString(out, f.getJavaType());
+    }
+
+    public static Finding read(DataInput in) throws IOException {
+        String type = readString(in);
+        String className = readString(in);
+        String methodName = readString(in);
+        int bytecodeLine = in.readInt();
+        String sqlSnippet = readString(in);
+        Integer paramIndex = in.readBoolean() ? in.readInt() : null;
+        String table = readString(in);
+        String column = readString(in);
+        String javaType = readString(in);
+        return new Finding(type, className, methodName, bytecodeLine, sqlSnippet, paramIndex, table, column, javaType);
+    }
+
+    // Length-prefixed UTF-8 rather than writeUTF, which is capped at 64K – SQL can be long
+    private static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,42 @@
+package org.madladlabs.classz.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns the strings of the findings produced during one scan, so the findings of
+ * a DAO share a single copy of its class name, SQL literals and so on instead of
+ * holding one each. Unlike {@link String#intern()}, everything is released with
+ * the dictionary when the scan is over.
+ *
+ * Thread-safe: scan workers intern concurrently.
+ */
+public class StringDictionary {
+
+    private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+
+    /** @return the dictionary's copy of {@code s}, adding it if it is new */
+    public String intern(String s) {
+        if (s == null) return null;
+        String existing = strings.putIfAbsent(s, s);
+        return existing == null ? s : existing;
+    }
+
+    /** @return {@code f} with every string field replaced by the dictionary's copy */
+    public Finding intern(Finding f) {
+        return new Finding(
+                intern(f.getType()),
+                intern(f.getClassName()),
+                intern(f.getMethodName()),
+                f.getBytecodeLine(),
+                intern(f.getSqlSnippet()),
+                f.getParamIndex(),
+                intern(f.getTable()),
+                intern(f.getColumn()),
+                intern(f.getJavaType()));
+    }
+
+    /** Number of distinct strings seen. */
+    public int size() {
+        return strings.size();
+    }
+}
@@ -0,0 +1,199 @@
+package org.madladlabs.classz.reporting;
+
+import org.madladlabs.classz.model.Finding;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.madladlabs.classz.reporting.BinaryFindingWriter.*;
+
+/**
+ * Reads a {@code .ihb} file written by {@link BinaryFindingWriter} through a
+ * memory-mapped view of it. Files larger than one mapping window are remapped as
+ * reading moves on, so size is not limited to 2GB.
+ *
+ * Findings share the decoded dictionary strings: every finding of a class refers
+ * to the same {@code className} instance. A file cut short by a crash reads up to
+ * its last complete record; {@link #isComplete()} tells whether the trailer was seen.
+ * A record that cannot have been written, such as a negative string length, is an
+ * {@link IOException}.
+ */
+public class BinaryFindingReader implements Closeable {
+
+    private static final long WINDOW = 256L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final List<String> dictionary = new ArrayList<>();
+    private MappedByteBuffer buffer;
+    private long bufferStart;
+    private long count;
+    private boolean complete;
+
+    public BinaryFindingReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        try {
+            map(0, 0);
+            if (!ensure(8) || buffer.getInt() != MAGIC) {
+                throw new IOException("Not an int-hunter binary findings file: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported binary findings format version " + version + ": " + file);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** @return the next finding, or null at the end of the file */
+    public Finding next() throws IOException {
+        while (!complete && ensure(1)) {
+            long recordStart = position();
+            byte tag = buffer.get();
+            switch (tag) {
+                case STRING: {
+                    if (!ensure(4)) return truncated();
+                    int length = buffer.getInt();
+                    if (length < 0) {
+                        throw new IOException("Bad string length " + length + " at offset " + recordStart);
+                    }
+                    if (length > size - position()) return truncated();    // runs past the end of the file
+                    if (!ensure(length)) return truncated();
+                    byte[] bytes = new byte[length];
+                    buffer.get(bytes);
+                    dictionary.add(new String(bytes, StandardCharsets.UTF_8));
+                    break;
+                }
+                case FINDING: {
+                    if (!ensure(37)) return truncated();
+                    String type = string(buffer.getInt());
+                    String className = string(buffer.getInt());
+                    String methodName = string(buffer.getInt());
+                    int bytecodeLine = buffer.getInt();
+                    String sqlSnippet = string(buffer.getInt());
+                    int paramIndex = buffer.getInt();
+                    boolean hasParamIndex = buffer.get() != 0;
+                    String table = string(buffer.getInt());
+                    String column = string(buffer.getInt());
+                    String javaType = string(buffer.getInt());
+                    count++;
+                    return new Finding(type, className, methodName, bytecodeLine, sqlSnippet,
+                            hasParamIndex ? paramIndex : null, table, column, javaType);
+                }
+                case END: {
+                    if (!ensure(8)) return truncated();
+                    long written = buffer.getLong();
+                    if (written != count) {
+                        throw new IOException("Trailer says " + written + " findings, read " + count);
+                    }
+                    complete = true;
+                    return null;
+                }
+                default:
+                    throw new IOException("Bad record tag " + tag + " at offset " + recordStart);
+            }
+        }
+        return null;
+    }
+
+    /** Passes every remaining finding to {@code writer}. */
+    public void forEachRemaining(IFindingWriter writer) throws IOException {
+        Finding f;
+        while ((f = next()) != null) {
+            writer.accept(f);
+        }
+    }
+
+    /** Findings read so far. */
+    public long getCount() {
+        return count;
+    }
+
+    /** True once the end-of-file trailer has been read, i.e. the writer was closed properly. */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Converts a {@code .ihb} file to any format {@link FindingSinks} supports. A file
+     * without its trailer is converted up to its last complete record, and the result
+     * says so.
+     */
+    public static Conversion convert(Path binaryFile, Path outputPath) throws IOException {
+        try (BinaryFindingReader reader = new BinaryFindingReader(binaryFile);
+             FindingSink sink = FindingSinks.forPath(outputPath)) {
+            reader.forEachRemaining(sink);
+            return new Conversion(reader.getCount(), reader.isComplete());
+        }
+    }
+
+    /** What {@link #convert} wrote, and whether the input was read to its trailer. */
+    public static final class Conversion {
+        private final long count;
+        private final boolean complete;
+
+        Conversion(long count, boolean complete) {
+            this.count = count;
+            this.complete = complete;
+        }
+
+        /** Findings converted. */
+        public long getCount() {
+            return count;
+        }
+
+        /** False if the input was cut short, e.g. by a scan that crashed: findings may be missing. */
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    private String string(int id) throws IOException {
+        if (id == NULL_ID) return null;
+        if (id < 0 || id >= dictionary.size()) {
+            throw new IOException("Undefined string id " + id);
+        }
+        return dictionary.get(id);
+    }
+
+    /** A partial trailing record is what an interrupted writer leaves behind: stop there. */
+    private Finding truncated() {
+        buffer = null;
+        return null;
+    }
+
+    private long position() {
+        return bufferStart + buffer.position();
+    }
+
+    /** Makes sure {@code n} more bytes are mapped; false if the file ends first. */
+    private boolean ensure(int n) throws IOException {
+        if (buffer == null) return false;
+        if (buffer.remaining() >= n) return true;
+        long position = position();
+        if (position + n > size) return false;
+        map(position, n);
+        return true;
+    }
+
+    private void map(long position, int minLength) throws IOException {
+        long length = Math.min(Math.max(WINDOW, minLength), size - position);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        bufferStart = position;
+    }
+}
@@ -0,0 +1,125 @@
+package org.madladlabs.classz.reporting;
+
+import org.madladlabs.classz.model.Finding;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes findings in the compact int-hunter binary format ({@code .ihb}), read back
+ * by {@link BinaryFindingReader}. The file is written strictly sequentially:
+ *
+ * <pre>
+ *   header   : int magic "IHB1", int format version
+ *   record*  : byte tag, then
+ *              STRING  (1) – int length, UTF-8 bytes; gets the next dictionary id (0, 1, …)
+ *              FINDING (2) – int type, int className, int methodName, int bytecodeLine,
+ *                            int sqlSnippet, int paramIndex, byte hasParamIndex,
+ *                            int table, int column, int javaType
+ *   trailer  : byte END (0), long finding count
+ * </pre>
+ *
+ * Every string field is dictionary-encoded: a string is written once, in a STRING
+ * record just before the first finding that uses it, and findings refer to it by
+ * id (-1 for null). Big-endian throughout, as {@link DataOutputStream} writes it.
+ */
+public class BinaryFindingWriter implements FindingSink {
+
+    static final int MAGIC = 0x49484231;                 // "IHB1"
+    static final int FORMAT_VERSION = 1;
+    static final byte END = 0;
+    static final byte STRING = 1;
+    static final byte FINDING = 2;
+    static final int NULL_ID = -1;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final int flushEvery;
+    private long count;
+
+    public BinaryFindingWriter(Path outputPath) throws IOException {
+        this(outputPath, CsvFindingWriter.DEFAULT_FLUSH_EVERY);
+    }
+
+    public BinaryFindingWriter(Path outputPath, int flushEvery) throws IOException {
+        if (flushEvery < 1) {
+            throw new IllegalArgumentException("flushEvery must be >= 1, was " + flushEvery);
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(outputPath), 64 * 1024));
+        this.flushEvery = flushEvery;
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+    }
+
+    @Override
+    public void accept(Finding f) {
+        try {
+            // Define any new strings first, so the finding record is never split by them
+            int type = id(f.getType());
+            int className = id(f.getClassName());
+            int methodName = id(f.getMethodName());
+            int sqlSnippet = id(f.getSqlSnippet());
+            int table = id(f.getTable());
+            int column = id(f.getColumn());
+            int javaType = id(f.getJavaType());
+
+            out.writeByte(FINDING);
+            out.writeInt(type);
+            out.writeInt(className);
+            out.writeInt(methodName);
+            out.writeInt(f.getBytecodeLine());
+            out.writeInt(sqlSnippet);
+            out.writeInt(f.getParamIndex() == null ? 0 : f.getParamIndex());
+            out.writeByte(f.getParamIndex() == null ? 0 : 1);
+            out.writeInt(table);
+            out.writeInt(column);
+            out.writeInt(javaType);
+            if (++count % flushEvery == 0) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write finding", e);
+        }
+    }
+
+    private int id(String s) throws IOException {
+        if (s == null) return NULL_ID;
+        Integer id = dictionary.get(s);
+        if (id != null) return id;
+
+        id = dictionary.size();
+        dictionary.put(s, id);
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(STRING);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        return id;
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    /** Distinct strings written so far. */
+    public int getDictionarySize() {
+        return dictionary.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.writeByte(END);
+            out.writeLong(count);
+        } finally {
+            out.close();
+        }
+    }
+}
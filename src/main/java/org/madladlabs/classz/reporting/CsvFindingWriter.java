@@ -0,0 +1,72 @@
+package org.madladlabs.classz.reporting;
+
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import org.madladlabs.classz.model.Finding;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes findings to a CSV file one row at a time, in the same layout as
+ * {@link ReportAggregator}. The file is flushed every {@code flushEvery} rows, so
+ * a scan that dies part-way still leaves the rows written so far.
+ */
+public class CsvFindingWriter implements FindingSink {
+
+    public static final int DEFAULT_FLUSH_EVERY = 1000;
+
+    private final BufferedWriter out;
+    private final SequenceWriter rows;
+    private final int flushEvery;
+    private long count;
+
+    public CsvFindingWriter(Path outputPath) throws IOException {
+        this(outputPath, DEFAULT_FLUSH_EVERY);
+    }
+
+    public CsvFindingWriter(Path outputPath, int flushEvery) throws IOException {
+        if (flushEvery < 1) {
+            throw new IllegalArgumentException("flushEvery must be >= 1, was " + flushEvery);
+        }
+        CsvMapper mapper = new CsvMapper();
+        CsvSchema schema = mapper.schemaFor(Finding.class).withHeader();
+        this.out = Files.newBufferedWriter(outputPath);
+        // Jackson flushes after every value by default; leave that to the periodic flush
+        this.rows = mapper.writer(schema)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .writeValues(out);
+        this.flushEvery = flushEvery;
+    }
+
+    @Override
+    public void accept(Finding finding) {
+        try {
+            rows.write(finding);
+            if (++count % flushEvery == 0) {
+                rows.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write finding", e);
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            rows.close();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.madladlabs.classz.reporting;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A finding writer that writes as it goes rather than holding the report in memory.
+ * Findings are only guaranteed to be complete on disk once the sink is closed.
+ *
+ * {@link #accept} cannot throw checked exceptions, so write failures surface as
+ * {@link java.io.UncheckedIOException}.
+ */
+public interface FindingSink extends IFindingWriter, Closeable {
+
+    /** Number of findings accepted so far. */
+    long getCount();
+
+    @Override
+    void close() throws IOException;
+}
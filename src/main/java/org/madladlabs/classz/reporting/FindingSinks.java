@@ -0,0 +1,37 @@
+package org.madladlabs.classz.reporting;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/** Picks the report writer for an output file by its extension. */
+public final class FindingSinks {
+
+    private FindingSinks() {
+    }
+
+    public static boolean isSupported(Path outputPath) {
+        String name = outputPath.getFileName().toString().toLowerCase();
+        return name.endsWith(".csv") || name.endsWith(".json") || name.endsWith(".jsonl") || name.endsWith(".ndjson")
+                || name.endsWith(".ihb");
+    }
+
+    /**
+     * @return a streaming writer for {@code outputPath}: CSV for {@code .csv}, a JSON
+     *         array for {@code .json}, JSON Lines for {@code .jsonl} and {@code .ndjson},
+     *         the binary format of {@link BinaryFindingWriter} for {@code .ihb}
+     * @throws IllegalArgumentException for any other extension
+     */
+    public static FindingSink forPath(Path outputPath) throws IOException {
+        String name = outputPath.getFileName().toString().toLowerCase();
+        if (name.endsWith(".csv")) {
+            return new CsvFindingWriter(outputPath);
+        } else if (name.endsWith(".json")) {
+            return new JsonFindingWriter(outputPath);
+        } else if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+            return new JsonLinesFindingWriter(outputPath);
+        } else if (name.endsWith(".ihb")) {
+            return new BinaryFindingWriter(outputPath);
+        }
+        throw new IllegalArgumentException("Unsupported report format: " + outputPath.getFileName());
+    }
+}
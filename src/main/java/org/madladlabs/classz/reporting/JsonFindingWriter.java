@@ -0,0 +1,66 @@
+package org.madladlabs.classz.reporting;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.madladlabs.classz.model.Finding;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes findings as a single JSON array, one element at a time, so the report is
+ * never built as a tree in memory. The array is only closed by {@link #close()};
+ * until then the file is flushed every {@code flushEvery} findings.
+ */
+public class JsonFindingWriter implements FindingSink {
+
+    private final JsonGenerator generator;
+    private final ObjectWriter findingWriter;
+    private final int flushEvery;
+    private long count;
+
+    public JsonFindingWriter(Path outputPath) throws IOException {
+        this(outputPath, CsvFindingWriter.DEFAULT_FLUSH_EVERY);
+    }
+
+    public JsonFindingWriter(Path outputPath, int flushEvery) throws IOException {
+        if (flushEvery < 1) {
+            throw new IllegalArgumentException("flushEvery must be >= 1, was " + flushEvery);
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        this.generator = mapper.getFactory().createGenerator(Files.newBufferedWriter(outputPath));
+        this.findingWriter = mapper.writerFor(Finding.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.flushEvery = flushEvery;
+        generator.writeStartArray();
+    }
+
+    @Override
+    public void accept(Finding finding) {
+        try {
+            findingWriter.writeValue(generator, finding);
+            if (++count % flushEvery == 0) {
+                generator.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write finding", e);
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            generator.writeEndArray();
+        } finally {
+            generator.close();                   // closes the underlying writer too
+        }
+    }
+}
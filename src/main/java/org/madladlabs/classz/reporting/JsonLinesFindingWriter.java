@@ -0,0 +1,63 @@
+package org.madladlabs.classz.reporting;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.madladlabs.classz.model.Finding;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes findings as JSON Lines (NDJSON): one object per line, each terminated by
+ * a newline. Memory use does not grow with the number of findings, and every line
+ * flushed is a complete record, so the file can be tailed while the scan runs.
+ */
+public class JsonLinesFindingWriter implements FindingSink {
+
+    private final JsonGenerator generator;
+    private final ObjectWriter findingWriter;
+    private final int flushEvery;
+    private long count;
+
+    public JsonLinesFindingWriter(Path outputPath) throws IOException {
+        this(outputPath, CsvFindingWriter.DEFAULT_FLUSH_EVERY);
+    }
+
+    public JsonLinesFindingWriter(Path outputPath, int flushEvery) throws IOException {
+        if (flushEvery < 1) {
+            throw new IllegalArgumentException("flushEvery must be >= 1, was " + flushEvery);
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        this.generator = mapper.getFactory().createGenerator(Files.newBufferedWriter(outputPath));
+        generator.setRootValueSeparator(null);   // we end every line ourselves
+        this.findingWriter = mapper.writerFor(Finding.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.flushEvery = flushEvery;
+    }
+
+    @Override
+    public void accept(Finding finding) {
+        try {
+            findingWriter.writeValue(generator, finding);
+            generator.writeRaw('\n');
+            if (++count % flushEvery == 0) {
+                generator.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write finding", e);
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
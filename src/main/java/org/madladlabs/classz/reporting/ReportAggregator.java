@@ -1,12 +1,8 @@
 package org.madladlabs.classz.reporting;
 
-import com.fasterxml.jackson.dataformat.csv.CsvMapper;
-import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import org.madladlabs.classz.model.Finding;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -30,10 +26,12 @@ public class ReportAggregator implements IFindingWriter {
     public boolean flush() throws IOException {
         findings.sort(Comparator.comparing(Finding::getClassName));
 
-        if (outputPath.toString().endsWith(".csv")) {
-            writeCsv();
+        if (FindingSinks.isSupported(outputPath)) {
+            try (FindingSink sink = FindingSinks.forPath(outputPath)) {
+                findings.forEach(sink::accept);
+            }
         } else {
-            System.err.println("Only CSV output supported in this version.");
+            System.err.println("Unsupported output format (use .csv, .json, .jsonl or .ihb): " + outputPath);
         }
         return !findings.isEmpty();
     }
@@ -42,13 +40,4 @@ public class ReportAggregator implements IFindingWriter {
     public List<Finding> getFindingsList() {
         return this.findings;
     }
-
-    private void writeCsv() throws IOException {
-        CsvMapper mapper = new CsvMapper();
-        CsvSchema schema = mapper.schemaFor(Finding.class).withHeader();
-
-        try (BufferedWriter writer = Files.newBufferedWriter(outputPath)) {
-            mapper.writer(schema).writeValue(writer, findings);
-        }
-    }
 }
@@ -0,0 +1,256 @@
+package org.madladlabs.classz.reporting;
+
+import org.madladlabs.classz.model.Finding;
+import org.madladlabs.classz.model.FindingCodec;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts findings with bounded memory before passing them to another sink.
+ *
+ * At most {@code maxInMemory} findings are buffered. When the buffer fills up it
+ * is sorted and spilled to a temporary run file; on {@link #close()} the runs and
+ * the remaining buffer are merged into the delegate, at most {@value #MERGE_FAN_IN}
+ * runs at a time: with more, neighbouring runs are first merged into longer ones, in
+ * as many passes as it takes. The sort is stable – findings
+ * that compare equal come out in the order they were accepted – so the result is
+ * the same as sorting everything in memory.
+ */
+public class SortingFindingWriter implements FindingSink {
+
+    /** The order {@link ReportAggregator} writes its report in. */
+    public static final Comparator<Finding> BY_CLASS_NAME = Comparator.comparing(Finding::getClassName);
+
+    /** Runs open at once during a merge, the in-memory tail included. */
+    static final int MERGE_FAN_IN = 64;
+
+    private final FindingSink delegate;
+    private final Comparator<Finding> order;
+    private final int maxInMemory;
+    private final Path spillDir;
+    private final List<Finding> buffer = new ArrayList<>();
+    private final List<Path> runs = new ArrayList<>();
+    private long count;
+
+    public SortingFindingWriter(FindingSink delegate, Comparator<Finding> order, int maxInMemory, Path spillDir) {
+        if (maxInMemory < 1) {
+            throw new IllegalArgumentException("maxInMemory must be >= 1, was " + maxInMemory);
+        }
+        this.delegate = delegate;
+        this.order = order;
+        this.maxInMemory = maxInMemory;
+        this.spillDir = spillDir;
+    }
+
+    @Override
+    public void accept(Finding finding) {
+        buffer.add(finding);
+        count++;
+        if (buffer.size() >= maxInMemory) {
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to spill sorted findings", e);
+            }
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    /** Number of runs spilled to disk so far. */
+    public int getSpilledRuns() {
+        return runs.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            buffer.sort(order);
+            if (runs.isEmpty()) {
+                buffer.forEach(delegate::accept);
+            } else {
+                merge();
+            }
+        } finally {
+            buffer.clear();
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+            runs.clear();
+            delegate.close();
+        }
+    }
+
+    private void spill() throws IOException {
+        buffer.sort(order);                      // List.sort is stable
+        try (DataOutputStream out = open(newRun())) {
+            out.writeInt(buffer.size());
+            for (Finding f : buffer) {
+                FindingCodec.write(out, f);
+            }
+        }
+        buffer.clear();
+    }
+
+    /** Creates a run file, listed in {@link #runs} so that {@link #close()} deletes it whatever happens. */
+    private Path newRun() throws IOException {
+        Path run = Files.createTempFile(spillDir, "int-hunter-run", ".bin");
+        runs.add(run);
+        return run;
+    }
+
+    private static DataOutputStream open(Path run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)));
+    }
+
+    /** Merges the spilled runs plus the in-memory tail into the delegate, the latest run last. */
+    private void merge() throws IOException {
+        while (runs.size() >= MERGE_FAN_IN) {
+            mergePass();
+        }
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (Path run : runs) {
+                readers.add(new FileRunReader(run, readers.size()));
+            }
+            readers.add(new MemoryRunReader(buffer, readers.size()));
+            merge(readers, delegate::accept);
+        } finally {
+            closeAll(readers);
+        }
+    }
+
+    /**
+     * Merges each group of {@value #MERGE_FAN_IN} neighbouring runs into one. The runs
+     * keep their order, so ties still go to the finding accepted first.
+     */
+    private void mergePass() throws IOException {
+        List<Path> pass = new ArrayList<>(runs);
+        List<Path> merged = new ArrayList<>();
+        for (int start = 0; start < pass.size(); start += MERGE_FAN_IN) {
+            List<Path> group = pass.subList(start, Math.min(start + MERGE_FAN_IN, pass.size()));
+            if (group.size() == 1) {
+                merged.add(group.get(0));
+                continue;
+            }
+            Path longer = newRun();
+            merged.add(longer);
+            List<RunReader> readers = new ArrayList<>();
+            try (DataOutputStream out = open(longer)) {
+                int total = 0;
+                for (Path run : group) {
+                    FileRunReader reader = new FileRunReader(run, readers.size());
+                    readers.add(reader);
+                    total += reader.remaining;
+                }
+                out.writeInt(total);
+                merge(readers, f -> FindingCodec.write(out, f));
+            } finally {
+                closeAll(readers);
+            }
+            for (Path run : group) {
+                Files.delete(run);
+                runs.remove(run);
+            }
+        }
+        runs.clear();
+        runs.addAll(merged);
+    }
+
+    /** K-way merge of {@code readers}, given in run order. */
+    private void merge(List<RunReader> readers, RunOutput out) throws IOException {
+        // Ties go to the earlier run, which keeps the merge stable
+        PriorityQueue<RunReader> heads = new PriorityQueue<>(
+                Comparator.<RunReader, Finding>comparing(r -> r.head, order).thenComparingInt(r -> r.index));
+        for (RunReader reader : readers) {
+            if (reader.advance()) heads.add(reader);
+        }
+        while (!heads.isEmpty()) {
+            RunReader reader = heads.poll();
+            out.write(reader.head);
+            if (reader.advance()) heads.add(reader);
+        }
+    }
+
+    private static void closeAll(List<RunReader> readers) throws IOException {
+        for (RunReader reader : readers) {
+            reader.close();
+        }
+    }
+
+    /** Where a merge writes to: the delegate, or a longer run. */
+    private interface RunOutput {
+        void write(Finding f) throws IOException;
+    }
+
+    private abstract static class RunReader implements Closeable {
+        final int index;
+        Finding head;
+
+        RunReader(int index) {
+            this.index = index;
+        }
+
+        /** Moves to the next finding; false once the run is exhausted. */
+        abstract boolean advance() throws IOException;
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static final class FileRunReader extends RunReader {
+        private final DataInputStream in;
+        private int remaining;
+
+        FileRunReader(Path run, int index) throws IOException {
+            super(index);
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)));
+            try {
+                this.remaining = in.readInt();
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            if (remaining == 0) return false;
+            remaining--;
+            head = FindingCodec.read(in);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class MemoryRunReader extends RunReader {
+        private final List<Finding> findings;
+        private int next;
+
+        MemoryRunReader(List<Finding> findings, int index) {
+            super(index);
+            this.findings = findings;
+        }
+
+        @Override
+        boolean advance() {
+            if (next == findings.size()) return false;
+            head = findings.get(next++);
+            return true;
+        }
+    }
+}
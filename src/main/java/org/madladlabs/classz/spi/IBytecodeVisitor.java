@@ -0,0 +1,88 @@
+package org.madladlabs.classz.spi;
+
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.MethodInfo;
+import org.madladlabs.classz.reporting.IFindingWriter;
+
+import java.util.Set;
+
+/**
+ * Event-driven alternative to {@link IExtractor} for extractors that inspect method
+ * bytecode. The engine decodes every method once and replays the instructions to all
+ * registered visitors, so adding a visitor does not add another pass over the code.
+ *
+ * Visitors are registered through {@code META-INF/services} like extractors. They are
+ * stateful, and the engine creates one instance per scanning thread, so an
+ * implementation needs a public no-arg constructor but does not need to be thread-safe.
+ *
+ * Class names passed to the callbacks use dot notation, as returned by Javassist's
+ * {@code ConstPool}.
+ */
+public interface IBytecodeVisitor {
+
+    String name();
+
+    /** Same contract as {@link IExtractor#referencedTypes()}. */
+    default Set<String> referencedTypes() {
+        return Set.of();
+    }
+
+    /** Same contract as {@link IExtractor#version()}. */
+    default String version() {
+        return "1";
+    }
+
+    /**
+     * Called once per scan, before this instance sees any class, with what the engine
+     * learned about the whole input. {@link ScanContext#EMPTY} unless the engine runs
+     * its pre-pass.
+     */
+    default void init(ScanContext context) {
+    }
+
+    /**
+     * Called before the methods of a class are walked.
+     *
+     * @return false to receive no further events for this class
+     */
+    default boolean visitClass(ClassFile classFile, IFindingWriter writer) {
+        return true;
+    }
+
+    /** Start of a method that has code. Constructors and static initialisers are not walked. */
+    default void visitMethod(MethodInfo method) {
+    }
+
+    /** Called for every instruction, before any of the more specific callbacks below. */
+    default void visitInstruction(int pc, int opcode) {
+    }
+
+    /** LDC / LDC_W of a String constant. */
+    default void visitLdc(int pc, int cpIndex, String value) {
+    }
+
+    /** ICONST_M1 to ICONST_5, BIPUSH, SIPUSH, or LDC / LDC_W of an Integer constant. */
+    default void visitIntConstant(int pc, int value) {
+    }
+
+    /** INVOKEVIRTUAL, INVOKESPECIAL, INVOKESTATIC or INVOKEINTERFACE. */
+    default void visitInvoke(int pc, int opcode, String owner, String name, String descriptor) {
+    }
+
+    /** GETFIELD, PUTFIELD, GETSTATIC or PUTSTATIC. */
+    default void visitFieldAccess(int pc, int opcode, String owner, String name, String descriptor) {
+    }
+
+    /**
+     * xLOAD / xSTORE of a local variable. Short forms such as {@code ASTORE_1} and
+     * {@code WIDE} forms are reported as the plain opcode ({@code ASTORE}) and slot.
+     */
+    default void visitLocalVariable(int pc, int opcode, int slot) {
+    }
+
+    default void visitMethodEnd() {
+    }
+
+    default void visitClassEnd() {
+    }
+}
@@ -3,7 +3,29 @@ package org.madladlabs.classz.spi;
 import javassist.CtClass;
 import org.madladlabs.classz.reporting.IFindingWriter;
 
+import java.util.Set;
+
 public interface IExtractor {
     String name();
     void process(CtClass ctClass, IFindingWriter writer) throws Exception;
+
+    /**
+     * Classes this extractor can only find something in if they reference one of these
+     * types. The engine checks them against the raw constant pool and skips the
+     * extractor – and, when no extractor is interested, the whole class – before any
+     * parsing. Internal names ({@code java/sql/Connection}); a leading {@code '/'}
+     * matches a simple name in any package ({@code /JdbcTemplate}). Empty means every class.
+     */
+    default Set<String> referencedTypes() {
+        return Set.of();
+    }
+
+    /**
+     * Identifies the behaviour of this extractor for the finding cache. Change it
+     * whenever the extractor could report something different for the same class;
+     * cached findings from other versions are then discarded.
+     */
+    default String version() {
+        return "1";
+    }
 }
@@ -0,0 +1,33 @@
+package org.madladlabs.classz.spi;
+
+import org.madladlabs.classz.index.ConstantFlowIndex;
+import org.madladlabs.classz.index.TypeHierarchy;
+
+/**
+ * What the engine learned about the whole input before analysing it class by class,
+ * handed to every bytecode visitor through {@link IBytecodeVisitor#init(ScanContext)}.
+ * Immutable and shared by all scanning threads.
+ */
+public final class ScanContext {
+
+    /** Context of a scan without a pre-pass: nothing is known beyond the class being walked. */
+    public static final ScanContext EMPTY = new ScanContext(ConstantFlowIndex.EMPTY, TypeHierarchy.EMPTY);
+
+    private final ConstantFlowIndex constants;
+    private final TypeHierarchy hierarchy;
+
+    public ScanContext(ConstantFlowIndex constants, TypeHierarchy hierarchy) {
+        this.constants = constants;
+        this.hierarchy = hierarchy;
+    }
+
+    /** SQL text carried by fields and helper methods across the input. */
+    public ConstantFlowIndex getConstants() {
+        return constants;
+    }
+
+    /** Superclasses and interfaces of the classes in the input; empty without a pre-pass. */
+    public TypeHierarchy getHierarchy() {
+        return hierarchy;
+    }
+}
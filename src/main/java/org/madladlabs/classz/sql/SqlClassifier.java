@@ -0,0 +1,158 @@
+package org.madladlabs.classz.sql;
+
+/**
+ * Recognises SQL in string constants and strips its comments, without regexes and
+ * without lowercase copies: keywords are matched in place, case-insensitively, and
+ * a literal with no comments and no surrounding whitespace is returned as is.
+ *
+ * The static methods are stateless. An instance adds a per-class cache keyed by
+ * constant-pool index, so a SQL constant used by several statements of a class is
+ * classified and cleaned once; {@link #reset(int)} it at the start of every class.
+ * Instances are not thread-safe – each bytecode visitor owns one.
+ */
+public final class SqlClassifier {
+
+    /** Statement kind, from the first keyword after any leading whitespace and comments. */
+    public enum Kind {
+        SELECT, INSERT, UPDATE, DELETE, MERGE, CALL, NONE;
+
+        /** INSERT, UPDATE or DELETE. */
+        public boolean isModifying() {
+            return this == INSERT || this == UPDATE || this == DELETE;
+        }
+    }
+
+    private static final Kind[] KEYWORD_KINDS = {Kind.SELECT, Kind.INSERT, Kind.UPDATE, Kind.DELETE, Kind.MERGE, Kind.CALL};
+
+    // Per-class cache, indexed by constant-pool index. An entry is valid only if its
+    // stamp equals the current generation, so reset() does not have to clear anything.
+    private Kind[] kinds = new Kind[0];
+    private String[] cleaned = new String[0];
+    private int[] stamps = new int[0];
+    private int generation;
+
+    /** Starts a new class whose constant pool has {@code constPoolSize} entries. */
+    public void reset(int constPoolSize) {
+        if (constPoolSize > stamps.length) {
+            int size = Math.max(constPoolSize, stamps.length * 2);
+            kinds = new Kind[size];
+            cleaned = new String[size];
+            stamps = new int[size];
+            generation = 0;
+        }
+        generation++;
+    }
+
+    /** {@link #classify(String)} of the string constant at {@code cpIndex}; negative indexes are not cached. */
+    public Kind kindOf(int cpIndex, String value) {
+        if (!cached(cpIndex)) return classify(value);
+        Kind kind = kinds[cpIndex];
+        if (kind == null) {
+            kind = classify(value);
+            kinds[cpIndex] = kind;
+        }
+        return kind;
+    }
+
+    /** {@link #stripComments(String)} of the string constant at {@code cpIndex}; negative indexes are not cached. */
+    public String cleanedOf(int cpIndex, String value) {
+        if (!cached(cpIndex)) return stripComments(value);
+        String sql = cleaned[cpIndex];
+        if (sql == null) {
+            sql = stripComments(value);
+            cleaned[cpIndex] = sql;
+        }
+        return sql;
+    }
+
+    private boolean cached(int cpIndex) {
+        if (cpIndex < 0 || cpIndex >= stamps.length) return false;
+        if (stamps[cpIndex] != generation) {
+            stamps[cpIndex] = generation;
+            kinds[cpIndex] = null;
+            cleaned[cpIndex] = null;
+        }
+        return true;
+    }
+
+    /**
+     * Kind of statement {@code sql} starts with. Leading whitespace and comments are
+     * skipped; the keyword is matched as a prefix, ignoring case.
+     */
+    public static Kind classify(String sql) {
+        if (sql == null) return Kind.NONE;
+        int start = skipWhitespaceAndComments(sql, 0);
+        for (Kind kind : KEYWORD_KINDS) {
+            String keyword = kind.name();
+            if (sql.regionMatches(true, start, keyword, 0, keyword.length())) {
+                return kind;
+            }
+        }
+        return Kind.NONE;
+    }
+
+    /**
+     * Removes block and line comments, and the line break ending a line comment,
+     * then trims. Comment markers inside quoted literals are left alone. Returns
+     * {@code sql} itself when there is nothing to remove.
+     */
+    public static String stripComments(String sql) {
+        int n = sql.length();
+        StringBuilder out = null;
+        int copyFrom = 0;
+        int i = 0;
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                int close = sql.indexOf(c, i + 1);
+                i = close < 0 ? n : close + 1;
+                continue;
+            }
+            int end = commentEnd(sql, i);
+            if (end < 0) {
+                i++;
+                continue;
+            }
+            if (out == null) out = new StringBuilder(n);
+            out.append(sql, copyFrom, i);
+            copyFrom = end;
+            i = end;
+        }
+        if (out == null) return sql.trim();
+        out.append(sql, copyFrom, n);
+        return out.toString().trim();
+    }
+
+    private static int skipWhitespaceAndComments(String sql, int i) {
+        int n = sql.length();
+        while (i < n) {
+            if (sql.charAt(i) <= ' ') {
+                i++;
+                continue;
+            }
+            int end = commentEnd(sql, i);
+            if (end < 0) break;
+            i = end;
+        }
+        return i;
+    }
+
+    /**
+     * If a comment starts at {@code i}, the index just past it (past the line break
+     * for a line comment); otherwise -1. An unterminated block comment is not one.
+     */
+    private static int commentEnd(String sql, int i) {
+        if (i + 1 >= sql.length()) return -1;
+        char c = sql.charAt(i);
+        char next = sql.charAt(i + 1);
+        if (c == '/' && next == '*') {
+            int close = sql.indexOf("*/", i + 2);
+            return close < 0 ? -1 : close + 2;
+        }
+        if (c == '-' && next == '-') {
+            int newline = sql.indexOf('\n', i + 2);
+            return newline < 0 ? sql.length() : newline + 1;
+        }
+        return -1;
+    }
+}
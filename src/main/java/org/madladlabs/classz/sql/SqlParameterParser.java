@@ -0,0 +1,309 @@
+package org.madladlabs.classz.sql;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the {@code ?} placeholders of INSERT, UPDATE, DELETE and MERGE statements to
+ * the columns they bind, with one tokenising pass and no SQL grammar:
+ * <ul>
+ *   <li>{@code INSERT INTO t (a, b) VALUES (?, ?)} – by position in the column list</li>
+ *   <li>{@code UPDATE t SET a = ?, b = b + ?} – the column being assigned</li>
+ *   <li>{@code ... WHERE a = ? AND b IN (?, ?) AND c BETWEEN ? AND ?} – the column
+ *       compared, on either side of the operator</li>
+ * </ul>
+ * MERGE gets the same treatment for its {@code UPDATE SET} and {@code INSERT ... VALUES}
+ * branches and its conditions. Anything else – a placeholder inside a sub-select's
+ * projection, an INSERT without a column list – is left without a column.
+ *
+ * An instance keeps the last {@value #CACHE_SIZE} statements it parsed, so a SQL
+ * literal shared by many classes is parsed once per scanning thread. Instances
+ * are not thread-safe.
+ */
+public final class SqlParameterParser {
+
+    static final int CACHE_SIZE = 1024;
+
+    private static final int IDENT = 0, PARAM = 1, STRING = 2, NUMBER = 3, PUNCT = 4;
+
+    private final Map<String, SqlParameters> cache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SqlParameters> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /** {@link #parse(String)}, cached by SQL text. */
+    public SqlParameters parameters(String sql) {
+        SqlParameters parameters = cache.get(sql);
+        if (parameters == null) {
+            parameters = parse(sql);
+            cache.put(sql, parameters);
+        }
+        return parameters;
+    }
+
+    public static SqlParameters parse(String sql) {
+        if (sql == null) return SqlParameters.NONE;
+        List<Token> t = tokenize(SqlClassifier.stripComments(sql));
+        if (t.isEmpty() || t.get(0).type != IDENT) return SqlParameters.NONE;
+
+        // Target table
+        int i = 1;
+        String first = t.get(0).text;
+        if (first.equalsIgnoreCase("INSERT") || first.equalsIgnoreCase("MERGE")) {
+            if (is(t, i, "INTO")) i++;
+        } else if (first.equalsIgnoreCase("DELETE")) {
+            if (is(t, i, "FROM")) i++;
+        } else if (!first.equalsIgnoreCase("UPDATE")) {
+            return SqlParameters.NONE;
+        }
+        StringBuilder table = new StringBuilder();
+        i = qualifiedName(t, i, table);
+        if (table.length() == 0) return SqlParameters.NONE;
+
+        List<String> insertColumns = null;
+        if (first.equalsIgnoreCase("INSERT") && is(t, i, "(")) {
+            insertColumns = new ArrayList<>();
+            i = columnList(t, i, insertColumns);
+        }
+
+        // One pass over the rest, tracking whether we are in a SET list or a VALUES tuple
+        List<String> columns = new ArrayList<>();
+        int depth = 0;
+        boolean inSet = false, expectSetColumn = false;
+        int setDepth = 0;
+        String setColumn = null;
+        boolean inValues = false;
+        int valuesDepth = 0, item = 0;
+
+        for (; i < t.size(); i++) {
+            Token tok = t.get(i);
+            if (tok.type == PUNCT) {
+                switch (tok.text) {
+                    case "(":
+                        if (inValues && depth == valuesDepth) item = 0;
+                        depth++;
+                        break;
+                    case ")":
+                        depth--;
+                        break;
+                    case ",":
+                        if (inSet && depth == setDepth) {
+                            expectSetColumn = true;
+                            setColumn = null;
+                        } else if (inValues && depth == valuesDepth + 1) {
+                            item++;
+                        }
+                        break;
+                    case "=":
+                        if (inSet && depth == setDepth && expectSetColumn) expectSetColumn = false;
+                        break;
+                    default:
+                }
+                continue;
+            }
+            if (tok.type == PARAM) {
+                String column = null;
+                if (inSet && !expectSetColumn) {
+                    column = setColumn;
+                } else if (inValues && depth > valuesDepth && insertColumns != null && item < insertColumns.size()) {
+                    column = insertColumns.get(item);
+                }
+                if (column == null) {
+                    column = comparedColumn(t, i);
+                }
+                columns.add(column);
+                continue;
+            }
+            if (tok.type != IDENT) continue;
+
+            if (tok.is("SET")) {
+                inSet = true;
+                inValues = false;
+                setDepth = depth;
+                expectSetColumn = true;
+                setColumn = null;
+            } else if (tok.is("VALUES")) {
+                inValues = true;
+                inSet = false;
+                valuesDepth = depth;
+            } else if (tok.is("INSERT") && is(t, i + 1, "(")) {          // MERGE ... WHEN NOT MATCHED THEN INSERT (..)
+                insertColumns = new ArrayList<>();
+                i = columnList(t, i + 1, insertColumns) - 1;
+            } else if (tok.is("WHERE") || tok.is("FROM") || tok.is("WHEN") || tok.is("RETURNING") || tok.is("ON")) {
+                if (inSet && depth <= setDepth) inSet = false;
+                if (inValues && depth <= valuesDepth) inValues = false;
+            } else if (inSet && expectSetColumn && depth == setDepth) {
+                setColumn = tok.text;                                      // last part of a qualified name wins
+            }
+        }
+        return new SqlParameters(table.toString(), columns.toArray(new String[0]));
+    }
+
+    /**
+     * Column a placeholder is compared with: {@code col op ?}, {@code col [NOT] IN (.., ?)},
+     * {@code col BETWEEN ? AND ?}, {@code col op f(?)} or {@code ? op col}.
+     */
+    private static String comparedColumn(List<Token> t, int param) {
+        int j = param - 1;
+        while (j >= 0 && (t.get(j).type == PARAM || t.get(j).type == STRING || t.get(j).type == NUMBER
+                || t.get(j).text.equals(","))) {
+            j--;
+        }
+        if (j >= 0 && t.get(j).text.equals("(")) {
+            j--;                                                           // IN ( / function call (
+            if (j >= 0 && t.get(j).type == IDENT && !t.get(j).is("IN")) j--;
+        } else if (j >= 0 && t.get(j).is("AND")) {
+            int k = j - 1;
+            while (k >= 0 && (t.get(k).type == PARAM || t.get(k).type == STRING || t.get(k).type == NUMBER)) k--;
+            if (k >= 0 && t.get(k).is("BETWEEN")) j = k;
+        }
+        if (j >= 1 && isOperator(t.get(j))) {
+            int k = j - 1;
+            if (t.get(k).is("NOT") && k >= 1) k--;
+            if (t.get(k).type == IDENT && !isKeyword(t.get(k))) return t.get(k).text;
+        }
+
+        // ? op col
+        int k = param + 1;
+        if (k + 1 < t.size() && isOperator(t.get(k)) && t.get(k + 1).type == IDENT && !isKeyword(t.get(k + 1))) {
+            k++;
+            while (k + 2 < t.size() && t.get(k + 1).text.equals(".") && t.get(k + 2).type == IDENT) k += 2;
+            return t.get(k).text;
+        }
+        return null;
+    }
+
+    private static boolean isOperator(Token tok) {
+        if (tok.type == PUNCT) {
+            switch (tok.text) {
+                case "=": case "<>": case "!=": case "<": case ">": case "<=": case ">=":
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        return tok.is("LIKE") || tok.is("IN") || tok.is("BETWEEN");
+    }
+
+    private static boolean isKeyword(Token tok) {
+        return tok.is("AND") || tok.is("OR") || tok.is("NOT") || tok.is("WHERE") || tok.is("SET")
+                || tok.is("ON") || tok.is("WHEN") || tok.is("THEN") || tok.is("SELECT");
+    }
+
+    /** Reads {@code a.b.c} at {@code i} into {@code out}; returns the index after it. */
+    private static int qualifiedName(List<Token> t, int i, StringBuilder out) {
+        if (i >= t.size() || t.get(i).type != IDENT) return i;
+        out.append(t.get(i++).text);
+        while (i + 1 < t.size() && t.get(i).text.equals(".") && t.get(i + 1).type == IDENT) {
+            out.append('.').append(t.get(i + 1).text);
+            i += 2;
+        }
+        return i;
+    }
+
+    /** Reads {@code (a, t.b, c)} at {@code i}, keeping the unqualified names; returns the index after it. */
+    private static int columnList(List<Token> t, int i, List<String> out) {
+        int depth = 0;
+        String last = null;
+        for (; i < t.size(); i++) {
+            Token tok = t.get(i);
+            if (tok.text.equals("(") && tok.type == PUNCT) {
+                depth++;
+            } else if (tok.text.equals(")") && tok.type == PUNCT) {
+                if (--depth == 0) {
+                    out.add(last);
+                    return i + 1;
+                }
+            } else if (tok.text.equals(",") && tok.type == PUNCT && depth == 1) {
+                out.add(last);
+                last = null;
+            } else if (tok.type == IDENT && depth == 1) {
+                last = tok.text;
+            }
+        }
+        return i;
+    }
+
+    private static boolean is(List<Token> t, int i, String text) {
+        return i < t.size() && t.get(i).text.equalsIgnoreCase(text);
+    }
+
+    private static List<Token> tokenize(String sql) {
+        List<Token> tokens = new ArrayList<>();
+        int n = sql.length();
+        int i = 0;
+        while (i < n) {
+            char c = sql.charAt(i);
+            if (c <= ' ') {
+                i++;
+            } else if (c == '\'') {
+                int j = i + 1;
+                while (j < n) {
+                    if (sql.charAt(j) == '\'') {
+                        if (j + 1 < n && sql.charAt(j + 1) == '\'') {
+                            j += 2;                                        // '' escape
+                            continue;
+                        }
+                        break;
+                    }
+                    j++;
+                }
+                tokens.add(new Token(STRING, ""));
+                i = j + 1;
+            } else if (c == '"' || c == '`' || c == '[') {
+                char close = c == '[' ? ']' : c;
+                int j = sql.indexOf(close, i + 1);
+                if (j < 0) j = n;
+                tokens.add(new Token(IDENT, sql.substring(i + 1, j)));
+                i = j + 1;
+            } else if (Character.isLetter(c) || c == '_' || c == '$' || c == '#') {
+                int j = i + 1;
+                while (j < n && (Character.isLetterOrDigit(sql.charAt(j)) || "_$#".indexOf(sql.charAt(j)) >= 0)) j++;
+                tokens.add(new Token(IDENT, sql.substring(i, j)));
+                i = j;
+            } else if (Character.isDigit(c)) {
+                int j = i + 1;
+                while (j < n && (Character.isLetterOrDigit(sql.charAt(j)) || sql.charAt(j) == '.')) j++;
+                tokens.add(new Token(NUMBER, ""));
+                i = j;
+            } else if (c == '?') {
+                tokens.add(new Token(PARAM, "?"));
+                i++;
+            } else if (c == ':' && i + 1 < n && Character.isLetter(sql.charAt(i + 1))) {
+                int j = i + 1;                                             // :named parameter – not a '?'
+                while (j < n && (Character.isLetterOrDigit(sql.charAt(j)) || sql.charAt(j) == '_')) j++;
+                tokens.add(new Token(NUMBER, ""));
+                i = j;
+            } else {
+                String op = i + 1 < n ? sql.substring(i, i + 2) : "";
+                if (op.equals("<=") || op.equals(">=") || op.equals("<>") || op.equals("!=")
+                        || op.equals("||") || op.equals("::")) {
+                    tokens.add(new Token(PUNCT, op));
+                    i += 2;
+                } else {
+                    tokens.add(new Token(PUNCT, String.valueOf(c)));
+                    i++;
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private static final class Token {
+        final int type;
+        final String text;
+
+        Token(int type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+
+        boolean is(String keyword) {
+            return type == IDENT && text.equalsIgnoreCase(keyword);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.madladlabs.classz.sql;
+
+import java.util.Arrays;
+
+/**
+ * What the {@code ?} placeholders of one SQL statement bind to: the statement's
+ * target table, and for each placeholder the column it is written to or compared
+ * with, where that could be worked out. Immutable.
+ */
+public final class SqlParameters {
+
+    static final SqlParameters NONE = new SqlParameters(null, new String[0]);
+
+    private final String table;
+    private final String[] columns;
+
+    SqlParameters(String table, String[] columns) {
+        this.table = table;
+        this.columns = columns;
+    }
+
+    /** Target table of the INSERT / UPDATE / DELETE / MERGE, as written (schema included); null if unknown. */
+    public String getTable() {
+        return table;
+    }
+
+    /** Number of {@code ?} placeholders. */
+    public int getParameterCount() {
+        return columns.length;
+    }
+
+    /**
+     * Column bound by the placeholder at the 1-based {@code paramIndex} (as passed to
+     * {@code setInt}), or null if the placeholder does not exist or is not a plain
+     * column value or comparison.
+     */
+    public String getColumn(int paramIndex) {
+        return paramIndex >= 1 && paramIndex <= columns.length ? columns[paramIndex - 1] : null;
+    }
+
+    @Override
+    public String toString() {
+        return "SqlParameters{table='" + table + "', columns=" + Arrays.toString(columns) + '}';
+    }
+}
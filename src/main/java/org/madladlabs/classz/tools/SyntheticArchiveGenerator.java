@@ -0,0 +1,379 @@
+package org.madladlabs.classz.tools;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtNewMethod;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.annotation.Annotation;
+import javassist.bytecode.annotation.StringMemberValue;
+import org.apache.commons.cli.*;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Builds large EAR/WAR/JAR/TAR files full of generated classes, for load and soak
+ * testing the scanner without real application binaries.
+ *
+ * Classes are packed {@code classesPerJar} at a time into leaf jars. With a nesting
+ * depth of 1 the leaf jars sit directly in the output archive; every extra level
+ * wraps {@code archivesPerLevel} of them in another archive, a war first and then
+ * jars (app.ear → module0.war → WEB-INF/lib/lib0.jar → ...). Depth 0 puts the
+ * classes straight into the output. Only one top-level nested archive is held in
+ * memory at a time.
+ *
+ * A given fraction of the classes follows each of the patterns the extractors look
+ * for – a PreparedStatement DAO, a JdbcTemplate DAO and a JPA entity – and the
+ * rest are plain classes. {@link Summary#expectedFindings()} says how many findings
+ * a scan of the result should report.
+ *
+ * Usage
+ * -----
+ *    java -cp int-hunter.jar org.madladlabs.classz.tools.SyntheticArchiveGenerator \
+ *         --out big.ear --classes 1000000 --depth 2 --jdbc 0.05 --jdbcTemplate 0.02 --jpa 0.02
+ */
+public class SyntheticArchiveGenerator {
+
+    /** Findings the built-in extractors report for each generated pattern. */
+    static final int FINDINGS_PER_JDBC_DAO = 1;       // one setInt bound into a DELETE
+    static final int FINDINGS_PER_TEMPLATE_DAO = 1;   // one boxed int passed to update()
+    static final int FINDINGS_PER_ENTITY = 3;         // three int/Integer fields
+
+    private int classes = 10_000;
+    private int depth = 1;
+    private int classesPerJar = 1000;
+    private int archivesPerLevel = 4;
+    private double jdbcDensity = 0.05;
+    private double templateDensity = 0.02;
+    private double jpaDensity = 0.02;
+    private boolean storeNested;
+    private long seed = 42;
+
+    private ClassPool pool;
+    private Random random;
+    private int nextClass;
+    private Summary summary;
+
+    public SyntheticArchiveGenerator classes(int classes) {
+        this.classes = classes;
+        return this;
+    }
+
+    public SyntheticArchiveGenerator depth(int depth) {
+        this.depth = depth;
+        return this;
+    }
+
+    public SyntheticArchiveGenerator classesPerJar(int classesPerJar) {
+        this.classesPerJar = classesPerJar;
+        return this;
+    }
+
+    public SyntheticArchiveGenerator archivesPerLevel(int archivesPerLevel) {
+        this.archivesPerLevel = archivesPerLevel;
+        return this;
+    }
+
+    /** Fractions (0..1) of classes that are PreparedStatement DAOs, JdbcTemplate DAOs and JPA entities. */
+    public SyntheticArchiveGenerator densities(double jdbc, double jdbcTemplate, double jpa) {
+        if (jdbc < 0 || jdbcTemplate < 0 || jpa < 0 || jdbc + jdbcTemplate + jpa > 1) {
+            throw new IllegalArgumentException("Densities must be >= 0 and add up to at most 1");
+        }
+        this.jdbcDensity = jdbc;
+        this.templateDensity = jdbcTemplate;
+        this.jpaDensity = jpa;
+        return this;
+    }
+
+    /** STORED instead of DEFLATED nested archives, as some build tools package them. */
+    public SyntheticArchiveGenerator storeNested(boolean storeNested) {
+        this.storeNested = storeNested;
+        return this;
+    }
+
+    public SyntheticArchiveGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /** What was generated, and what a scan of it should find. */
+    public static final class Summary {
+        private int classes;
+        private int jdbcDaos;
+        private int templateDaos;
+        private int entities;
+        private int archives;
+
+        public int getClasses() {
+            return classes;
+        }
+
+        public int getJdbcDaos() {
+            return jdbcDaos;
+        }
+
+        public int getTemplateDaos() {
+            return templateDaos;
+        }
+
+        public int getEntities() {
+            return entities;
+        }
+
+        /** Nested archives written, at any depth. */
+        public int getArchives() {
+            return archives;
+        }
+
+        public long expectedFindings() {
+            return (long) jdbcDaos * FINDINGS_PER_JDBC_DAO
+                    + (long) templateDaos * FINDINGS_PER_TEMPLATE_DAO
+                    + (long) entities * FINDINGS_PER_ENTITY;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d classes (%d JDBC DAOs, %d JdbcTemplate DAOs, %d entities) in %d nested archives, "
+                    + "%d expected findings", classes, jdbcDaos, templateDaos, entities, archives, expectedFindings());
+        }
+    }
+
+    /** Class-level callback for {@link #forEachClass}. */
+    @FunctionalInterface
+    public interface ClassSink {
+        void accept(String entryName, byte[] classBytes) throws IOException;
+    }
+
+    /**
+     * Writes the archive. The format follows the extension of {@code out}:
+     * {@code .tar} for a tar, anything else (ear, war, jar, zip) for a zip.
+     */
+    public Summary generate(File out) throws IOException {
+        if (classesPerJar < 1 || archivesPerLevel < 1 || depth < 0) {
+            throw new IllegalArgumentException("classesPerJar and archivesPerLevel must be >= 1, depth >= 0");
+        }
+        start();
+        String outerName = out.getName().toLowerCase();
+        try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(out.toPath()))) {
+            if (outerName.endsWith(".tar")) {
+                try (TarArchiveOutputStream tar = new TarArchiveOutputStream(file)) {
+                    tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+                    writeContent(outerName, depth, (name, bytes) -> {
+                        TarArchiveEntry entry = new TarArchiveEntry(name);
+                        entry.setSize(bytes.length);
+                        tar.putArchiveEntry(entry);
+                        tar.write(bytes);
+                        tar.closeArchiveEntry();
+                    });
+                }
+            } else {
+                try (ZipOutputStream zip = new ZipOutputStream(file)) {
+                    writeContent(outerName, depth, (name, bytes) -> putZipEntry(zip, name, bytes));
+                }
+            }
+        }
+        return summary;
+    }
+
+    /** Generates the classes only, without packing them into archives. */
+    public Summary forEachClass(ClassSink sink) throws IOException {
+        start();
+        while (nextClass < classes) {
+            writeClass(sink);
+        }
+        return summary;
+    }
+
+    private void start() {
+        pool = new ClassPool(true);
+        CtClass template = pool.makeClass("org.springframework.jdbc.core.JdbcTemplate");
+        try {
+            template.addMethod(CtNewMethod.make("public int update(String sql, Object[] args) { return 0; }", template));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to compile the JdbcTemplate stub", e);
+        }
+        random = new Random(seed);
+        nextClass = 0;
+        summary = new Summary();
+    }
+
+    /**
+     * Writes the content of one archive level, {@code levels} above the leaf jars,
+     * until every class has been placed (the outer archive) or the level is full.
+     */
+    private void writeContent(String archiveName, int levels, ClassSink sink) throws IOException {
+        if (levels == 0) {
+            int limit = depth == 0 ? Integer.MAX_VALUE : classesPerJar;
+            String prefix = archiveName.endsWith(".war") ? "WEB-INF/classes/" : "";
+            for (int i = 0; i < limit && nextClass < classes; i++) {
+                writeClass((name, bytes) -> sink.accept(prefix + name, bytes));
+            }
+            return;
+        }
+        boolean outer = levels == depth;
+        for (int i = 0; (outer || i < archivesPerLevel) && nextClass < classes; i++) {
+            String childName = childName(archiveName, levels, i);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (ZipOutputStream child = new ZipOutputStream(buffer)) {
+                writeContent(childName, levels - 1, (name, bytes) -> putZipEntry(child, name, bytes));
+            }
+            summary.archives++;
+            sink.accept(childName, buffer.toByteArray());
+        }
+    }
+
+    /** Entry name of the i-th archive nested one level below {@code parent}. */
+    private String childName(String parent, int levels, int i) {
+        String dir = parent.endsWith(".war") ? "WEB-INF/lib/" : "lib/";
+        boolean war = levels > 1 && levels == depth && !parent.endsWith(".war");
+        return war ? "module" + i + ".war" : dir + "lib" + summary.archives + ".jar";
+    }
+
+    private void putZipEntry(ZipOutputStream zip, String name, byte[] bytes) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        boolean nested = !name.endsWith(".class");
+        if (nested && storeNested) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(bytes.length);
+            entry.setCompressedSize(bytes.length);
+            entry.setCrc(crc.getValue());
+        }
+        zip.putNextEntry(entry);
+        zip.write(bytes);
+        zip.closeEntry();
+    }
+
+    private void writeClass(ClassSink sink) throws IOException {
+        int n = nextClass++;
+        String className = "com.example.synthetic.p" + (n / 1000) + ".Generated" + n;
+        CtClass cc = pool.makeClass(className);
+        try {
+            double pattern = random.nextDouble();
+            if (pattern < jdbcDensity) {
+                jdbcDao(cc, n);
+                summary.jdbcDaos++;
+            } else if (pattern < jdbcDensity + templateDensity) {
+                templateDao(cc, n);
+                summary.templateDaos++;
+            } else if (pattern < jdbcDensity + templateDensity + jpaDensity) {
+                entity(cc, n);
+                summary.entities++;
+            } else {
+                plain(cc, n);
+            }
+            summary.classes++;
+            sink.accept(className.replace('.', '/') + ".class", cc.toBytecode());
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to generate " + className, e);
+        } finally {
+            cc.detach();                         // keep the pool from growing with the class count
+        }
+    }
+
+    private void jdbcDao(CtClass cc, int n) throws Exception {
+        cc.addMethod(CtNewMethod.make(
+                "public void delete(java.sql.Connection conn, int id) throws java.sql.SQLException {"
+                        + "  java.sql.PreparedStatement ps = conn.prepareStatement(\"DELETE FROM account_" + n + " WHERE id = ?\");"
+                        + "  ps.setInt(1, id);"
+                        + "  ps.executeUpdate();"
+                        + "}", cc));
+        cc.addMethod(CtNewMethod.make(
+                "public int count(java.sql.Connection conn) throws java.sql.SQLException {"
+                        + "  java.sql.ResultSet rs = conn.prepareStatement(\"SELECT COUNT(*) FROM account_" + n + "\").executeQuery();"
+                        + "  return rs.next() ? rs.getInt(1) : 0;"
+                        + "}", cc));
+    }
+
+    private void templateDao(CtClass cc, int n) throws Exception {
+        cc.addMethod(CtNewMethod.make(
+                "public void bump(org.springframework.jdbc.core.JdbcTemplate jdbc, int id) {"
+                        + "  jdbc.update(\"UPDATE visits_" + n + " SET visits = visits + 1 WHERE id = ?\", new Object[]{ Integer.valueOf(id) });"
+                        + "}", cc));
+        cc.addMethod(CtNewMethod.make(
+                "public void rename(org.springframework.jdbc.core.JdbcTemplate jdbc, String name) {"
+                        + "  jdbc.update(\"UPDATE visits_" + n + " SET name = ?\", new Object[]{ name });"
+                        + "}", cc));
+    }
+
+    private void entity(CtClass cc, int n) throws Exception {
+        ClassFile cf = cc.getClassFile();
+        AnnotationsAttribute attr = new AnnotationsAttribute(cf.getConstPool(), AnnotationsAttribute.visibleTag);
+        attr.addAnnotation(new Annotation("javax.persistence.Entity", cf.getConstPool()));
+        Annotation table = new Annotation("javax.persistence.Table", cf.getConstPool());
+        table.addMemberValue("name", new StringMemberValue("entity_" + n, cf.getConstPool()));
+        attr.addAnnotation(table);
+        cf.addAttribute(attr);
+
+        cc.addField(new CtField(CtClass.intType, "id", cc));
+        cc.addField(new CtField(CtClass.intType, "version", cc));
+        cc.addField(new CtField(pool.get("java.lang.Integer"), "quantity", cc));
+        cc.addField(new CtField(pool.get("java.lang.String"), "name", cc));
+        cc.addField(CtField.make("public static final int MAX = 10;", cc));   // constants are not reported
+    }
+
+    private void plain(CtClass cc, int n) throws Exception {
+        cc.addField(new CtField(pool.get("java.lang.String"), "name", cc));
+        cc.addField(new CtField(CtClass.intType, "count", cc));
+        cc.addMethod(CtNewMethod.make("public String describe() { return name + \" #" + n + " x\" + count; }", cc));
+        cc.addMethod(CtNewMethod.make(
+                "public int sum(int[] values) { int s = 0; for (int i = 0; i < values.length; i++) s += values[i]; return s; }", cc));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options();
+        options.addOption(Option.builder().longOpt("out").hasArg().argName("file").required()
+                .desc("Archive to create: .ear, .war, .jar, .zip or .tar").build());
+        options.addOption(Option.builder().longOpt("classes").hasArg().argName("N")
+                .desc("Number of classes. Default: 10000").build());
+        options.addOption(Option.builder().longOpt("depth").hasArg().argName("N")
+                .desc("Nesting levels of archives inside the output. Default: 1").build());
+        options.addOption(Option.builder().longOpt("classesPerJar").hasArg().argName("N")
+                .desc("Classes per innermost jar. Default: 1000").build());
+        options.addOption(Option.builder().longOpt("archivesPerLevel").hasArg().argName("N")
+                .desc("Archives inside each nested archive. Default: 4").build());
+        options.addOption(Option.builder().longOpt("jdbc").hasArg().argName("fraction")
+                .desc("Fraction of PreparedStatement DAOs. Default: 0.05").build());
+        options.addOption(Option.builder().longOpt("jdbcTemplate").hasArg().argName("fraction")
+                .desc("Fraction of JdbcTemplate DAOs. Default: 0.02").build());
+        options.addOption(Option.builder().longOpt("jpa").hasArg().argName("fraction")
+                .desc("Fraction of JPA entities. Default: 0.02").build());
+        options.addOption(Option.builder().longOpt("storeNested")
+                .desc("Store nested archives uncompressed").build());
+        options.addOption(Option.builder().longOpt("seed").hasArg().argName("N")
+                .desc("Random seed, for reproducible archives. Default: 42").build());
+
+        CommandLine cmd;
+        try {
+            cmd = new DefaultParser().parse(options, args);
+        } catch (ParseException pe) {
+            new HelpFormatter().printHelp("synthetic-archive-generator", options, true);
+            System.exit(2);
+            return;
+        }
+
+        Summary summary = new SyntheticArchiveGenerator()
+                .classes(Integer.parseInt(cmd.getOptionValue("classes", "10000")))
+                .depth(Integer.parseInt(cmd.getOptionValue("depth", "1")))
+                .classesPerJar(Integer.parseInt(cmd.getOptionValue("classesPerJar", "1000")))
+                .archivesPerLevel(Integer.parseInt(cmd.getOptionValue("archivesPerLevel", "4")))
+                .densities(Double.parseDouble(cmd.getOptionValue("jdbc", "0.05")),
+                        Double.parseDouble(cmd.getOptionValue("jdbcTemplate", "0.02")),
+                        Double.parseDouble(cmd.getOptionValue("jpa", "0.02")))
+                .storeNested(cmd.hasOption("storeNested"))
+                .seed(Long.parseLong(cmd.getOptionValue("seed", "42")))
+                .generate(new File(cmd.getOptionValue("out")));
+        System.out.println("Generated " + cmd.getOptionValue("out") + ": " + summary);
+    }
+}
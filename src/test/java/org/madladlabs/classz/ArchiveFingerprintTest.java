@@ -0,0 +1,183 @@
+package org.madladlabs.classz;
+
+import javassist.ClassPool;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.madladlabs.classz.cache.ArchiveFingerprintStore;
+import org.madladlabs.classz.engine.ScanEngine;
+import org.madladlabs.classz.model.Finding;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArchiveFingerprintTest {
+
+    private static final File outputDir = new File("build/test-output-fingerprints");
+    private static final File ear = new File(outputDir, "app.ear");
+    private static final Path storeFile = outputDir.toPath().resolve("archives.bin");
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        if (outputDir.exists()) {
+            Files.walk(outputDir.toPath())
+                    .map(Path::toFile)
+                    .sorted((a, b) -> -a.compareTo(b))
+                    .forEach(File::delete);
+        }
+        outputDir.mkdirs();
+
+        ClassPool pool = SampleClasses.newPool();
+        byte[] daoJar = ClassExtractorTest.zip(ZipEntry.STORED,
+                "com/example/samples/JdbcDao.class", SampleClasses.jdbcDao(pool).toBytecode(),
+                "com/example/samples/SpringDao.class", SampleClasses.springDao(pool).toBytecode());
+        byte[] cleanJar = ClassExtractorTest.zip(ZipEntry.DEFLATED,
+                "com/example/Plain.class", pool.makeClass("com.example.Plain").toBytecode());
+        Files.write(ear.toPath(), ClassExtractorTest.zip(ZipEntry.STORED,
+                "lib/dao.jar", daoJar, "lib/clean.jar", cleanJar));
+    }
+
+    @Test
+    public void testRecordedNestedArchivesAreSkippedAndReplayed() throws Exception {
+        ArchiveFingerprintStore store = ArchiveFingerprintStore.load(storeFile, fingerprint());
+        TestWriter firstWriter = new TestWriter();
+        ScanEngine first = scan(firstWriter, store, 1);
+        List<String> scanned = strings(firstWriter);
+        assertEquals(2, scanned.size());
+        assertEquals(2, store.getRecorded(), "Both nested jars should be recorded, the clean one too");
+        assertEquals(0, store.getSkipped());
+        assertEquals(3, first.getClassesScanned());
+        store.save();
+
+        ArchiveFingerprintStore reloaded = ArchiveFingerprintStore.load(storeFile, fingerprint());
+        TestWriter secondWriter = new TestWriter();
+        ScanEngine second = scan(secondWriter, reloaded, 1);
+        assertEquals(scanned, strings(secondWriter));
+        assertEquals(2, reloaded.getSkipped());
+        assertEquals(0, second.getClassesScanned(), "No class of a known jar should be opened");
+
+        TestWriter pipelinedWriter = new TestWriter();
+        scan(pipelinedWriter, reloaded, 3);
+        assertEquals(scanned, strings(pipelinedWriter), "Pipelined scans replay the same findings");
+    }
+
+    @Test
+    public void testPipelinedScanRecordsNestedArchives() throws Exception {
+        ArchiveFingerprintStore store = ArchiveFingerprintStore.load(storeFile, fingerprint());
+        TestWriter pipelinedWriter = new TestWriter();
+        scan(pipelinedWriter, store, 3);
+        assertEquals(2, store.getRecorded());
+        store.save();
+
+        ArchiveFingerprintStore stale = ArchiveFingerprintStore.load(storeFile, fingerprint() + ",Other@2");
+        assertEquals(0, stale.size(), "A store written by other extractor versions must not be trusted");
+
+        ArchiveFingerprintStore reloaded = ArchiveFingerprintStore.load(storeFile, fingerprint());
+        TestWriter replayWriter = new TestWriter();
+        scan(replayWriter, reloaded, 1);
+        assertEquals(strings(pipelinedWriter), strings(replayWriter));
+        assertEquals(2, reloaded.getSkipped());
+    }
+
+    @Test
+    public void testNestedArchiveWithAnUnreadableEntryIsNotRecorded() throws Exception {
+        ClassPool pool = SampleClasses.newPool();
+        byte[] brokenJar = ClassExtractorTest.zip(ZipEntry.DEFLATED,
+                "com/example/samples/JdbcDao.class", SampleClasses.jdbcDao(pool).toBytecode(),
+                "com/example/Broken.class", pool.makeClass("com.example.Broken").toBytecode());
+        corrupt(brokenJar, "com/example/Broken.class");
+        byte[] cleanJar = ClassExtractorTest.zip(ZipEntry.DEFLATED,
+                "com/example/Plain.class", pool.makeClass("com.example.Plain").toBytecode());
+        Files.write(ear.toPath(), ClassExtractorTest.zip(ZipEntry.STORED,
+                "lib/broken.jar", brokenJar, "lib/clean.jar", cleanJar));
+
+        ArchiveFingerprintStore store = ArchiveFingerprintStore.load(storeFile, fingerprint());
+        TestWriter firstWriter = new TestWriter();
+        scan(firstWriter, store, 1);
+        assertEquals(1, strings(firstWriter).size(), "The readable class of the broken jar is still scanned");
+        assertEquals(1, store.getRecorded(), "Only the clean jar was read in full");
+        store.save();
+
+        ArchiveFingerprintStore reloaded = ArchiveFingerprintStore.load(storeFile, fingerprint());
+        TestWriter secondWriter = new TestWriter();
+        ScanEngine second = scan(secondWriter, reloaded, 1);
+        assertEquals(1, reloaded.getSkipped());
+        assertEquals(1, second.getClassesScanned(), "The broken jar is read again");
+        assertEquals(strings(firstWriter), strings(secondWriter));
+    }
+
+    @Test
+    public void testNestedArchiveWithAClassOverBudgetIsNotRecorded() throws Exception {
+        ClassPool pool = SampleClasses.newPool();
+        StringBuilder body = new StringBuilder("public void fill(java.sql.Connection conn, int id) throws java.sql.SQLException {"
+                + "  java.sql.PreparedStatement ps = conn.prepareStatement(\"UPDATE users SET name = ? WHERE id = ?\");");
+        for (int i = 0; i < 400; i++) {
+            body.append("  ps.setInt(2, id);");    // long enough for the walk to check its deadline
+        }
+        byte[] daoJar = ClassExtractorTest.zip(ZipEntry.STORED,
+                "com/example/samples/JdbcDao.class", SampleClasses.jdbcDao(pool).toBytecode(),
+                "com/example/samples/LongDao.class",
+                SampleClasses.jdbcDao(pool, "com.example.samples.LongDao", body.append("}").toString()).toBytecode());
+        byte[] cleanJar = ClassExtractorTest.zip(ZipEntry.DEFLATED,
+                "com/example/Plain.class", pool.makeClass("com.example.Plain").toBytecode());
+        Files.write(ear.toPath(), ClassExtractorTest.zip(ZipEntry.STORED,
+                "lib/dao.jar", daoJar, "lib/clean.jar", cleanJar));
+
+        ArchiveFingerprintStore store = ArchiveFingerprintStore.load(storeFile, fingerprint());
+        for (int threads : new int[]{1, 3}) {
+            ScanEngine engine = new ScanEngine(new TestWriter());
+            engine.loadExtractors();
+            engine.setThreads(threads);
+            engine.setClassTimeBudget(1, TimeUnit.NANOSECONDS);
+            engine.setFingerprintStore(store);
+            engine.scanArchive(ear);
+            assertEquals(1, engine.getMetrics().getBudgetOverruns(), "The walk over LongDao is stopped");
+        }
+        assertEquals(1, store.getRecorded(), "Only the clean jar was analysed in full");
+        store.save();
+
+        ArchiveFingerprintStore reloaded = ArchiveFingerprintStore.load(storeFile, fingerprint());
+        ScanEngine second = scan(new TestWriter(), reloaded, 1);
+        assertEquals(1, reloaded.getSkipped(), "The dao jar is not skipped");
+        assertEquals(2, second.getClassesScanned(), "The classes of the dao jar are analysed again");
+        assertEquals(1, reloaded.getRecorded(), "Without a budget the dao jar is recorded");
+    }
+
+    /** Overwrites the compressed data of a DEFLATED entry with an invalid block. */
+    private static void corrupt(byte[] jar, String entryName) throws Exception {
+        try (ZipFile zip = new ZipFile(new SeekableInMemoryByteChannel(jar))) {
+            ZipArchiveEntry entry = zip.getEntry(entryName);
+            int offset = (int) entry.getDataOffset();
+            Arrays.fill(jar, offset, offset + (int) entry.getCompressedSize(), (byte) 0xFF);
+        }
+    }
+
+    private static String fingerprint() {
+        ScanEngine engine = new ScanEngine(new TestWriter());
+        engine.loadExtractors();
+        return engine.getExtractorFingerprint();
+    }
+
+    private static ScanEngine scan(TestWriter writer, ArchiveFingerprintStore store, int threads) throws Exception {
+        ScanEngine engine = new ScanEngine(writer);
+        engine.loadExtractors();
+        engine.setThreads(threads);
+        engine.setFingerprintStore(store);
+        engine.scanArchive(ear);
+        return engine;
+    }
+
+    private static List<String> strings(TestWriter writer) {
+        return writer.getFindings().stream().map(Finding::toString).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,126 @@
+package org.madladlabs.classz;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.madladlabs.classz.model.Finding;
+import org.madladlabs.classz.reporting.BinaryFindingReader;
+import org.madladlabs.classz.reporting.BinaryFindingWriter;
+import org.madladlabs.classz.reporting.CsvFindingWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryFindingFormatTest {
+
+    private static final File outputDir = new File("build/test-output-binary");
+
+    @BeforeEach
+    public void cleanOutputDir() throws Exception {
+        if (outputDir.exists()) {
+            Files.walk(outputDir.toPath())
+                    .map(Path::toFile)
+                    .sorted((a, b) -> -a.compareTo(b))
+                    .forEach(File::delete);
+        }
+        outputDir.mkdirs();
+    }
+
+    @Test
+    public void testRoundTripSharesDictionaryStrings() throws Exception {
+        List<Finding> findings = StreamingSinkTest.randomFindings(5000);
+        Path ihb = write(findings, "findings.ihb");
+
+        TestWriter read = new TestWriter();
+        try (BinaryFindingReader reader = new BinaryFindingReader(ihb)) {
+            reader.forEachRemaining(read);
+            assertTrue(reader.isComplete());
+            assertEquals(5000, reader.getCount());
+        }
+        assertEquals(strings(findings), strings(read.getFindings()));
+
+        // Findings of the same class point at one decoded string
+        Finding first = read.getFindings().get(0);
+        Finding sameClass = read.getFindings().stream().skip(1)
+                .filter(f -> f.getClassName().equals(first.getClassName())).findFirst().orElseThrow();
+        assertSame(first.getClassName(), sameClass.getClassName());
+    }
+
+    @Test
+    public void testConvertsToCsvAndIsSmaller() throws Exception {
+        List<Finding> findings = StreamingSinkTest.randomFindings(2000);
+        Path ihb = write(findings, "findings.ihb");
+
+        Path direct = outputDir.toPath().resolve("direct.csv");
+        try (CsvFindingWriter csv = new CsvFindingWriter(direct)) {
+            findings.forEach(csv::accept);
+        }
+        Path converted = outputDir.toPath().resolve("converted.csv");
+        BinaryFindingReader.Conversion conversion = BinaryFindingReader.convert(ihb, converted);
+        assertEquals(2000, conversion.getCount());
+        assertTrue(conversion.isComplete());
+
+        assertEquals(Files.readAllLines(direct), Files.readAllLines(converted));
+        assertTrue(Files.size(ihb) < Files.size(direct), "Dictionary encoding should beat CSV on repeated strings");
+    }
+
+    @Test
+    public void testReadsUpToTheLastCompleteRecordOfATruncatedFile() throws Exception {
+        Path ihb = write(StreamingSinkTest.randomFindings(100), "findings.ihb");
+        byte[] bytes = Files.readAllBytes(ihb);
+        Path truncated = outputDir.toPath().resolve("truncated.ihb");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 20));  // trailer and part of the last finding
+
+        try (BinaryFindingReader reader = new BinaryFindingReader(truncated)) {
+            reader.forEachRemaining(f -> { });
+            assertEquals(99, reader.getCount());
+            assertFalse(reader.isComplete());
+        }
+        BinaryFindingReader.Conversion conversion =
+                BinaryFindingReader.convert(truncated, outputDir.toPath().resolve("truncated.csv"));
+        assertEquals(99, conversion.getCount());
+        assertFalse(conversion.isComplete(), "A missing trailer is reported");
+
+        Path notBinary = outputDir.toPath().resolve("not.ihb");
+        Files.writeString(notBinary, "type,className\n");
+        assertThrows(IOException.class, () -> new BinaryFindingReader(notBinary));
+    }
+
+    @Test
+    public void testRejectsCorruptStringLengths() throws Exception {
+        byte[] bytes = Files.readAllBytes(write(StreamingSinkTest.randomFindings(10), "findings.ihb"));
+        Path corrupt = outputDir.toPath().resolve("corrupt.ihb");
+
+        ByteBuffer.wrap(bytes).putInt(9, -5);           // length of the first STRING record, after the header and tag
+        Files.write(corrupt, bytes);
+        try (BinaryFindingReader reader = new BinaryFindingReader(corrupt)) {
+            assertThrows(IOException.class, reader::next);
+        }
+
+        ByteBuffer.wrap(bytes).putInt(9, Integer.MAX_VALUE);
+        Files.write(corrupt, bytes);
+        try (BinaryFindingReader reader = new BinaryFindingReader(corrupt)) {
+            assertNull(reader.next(), "A string running past the end of the file ends the read, like a truncated one");
+            assertFalse(reader.isComplete());
+        }
+    }
+
+    private static Path write(List<Finding> findings, String name) throws IOException {
+        Path ihb = outputDir.toPath().resolve(name);
+        try (BinaryFindingWriter writer = new BinaryFindingWriter(ihb)) {
+            findings.forEach(writer::accept);
+        }
+        return ihb;
+    }
+
+    private static List<String> strings(List<Finding> findings) {
+        return findings.stream().map(Finding::toString).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,225 @@
+package org.madladlabs.classz;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewMethod;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.CodeIterator;
+import javassist.bytecode.MethodInfo;
+import org.junit.jupiter.api.Test;
+import org.madladlabs.classz.engine.BytecodeWalker;
+import org.madladlabs.classz.engine.ScanEngine;
+import org.madladlabs.classz.extractors.JdbcTemplateIntExtractor;
+import org.madladlabs.classz.extractors.PreparedStmtExtractor;
+import org.madladlabs.classz.model.Finding;
+import org.madladlabs.classz.reporting.IFindingWriter;
+import org.madladlabs.classz.spi.IBytecodeVisitor;
+
+import java.io.File;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BytecodeWalkerTest {
+
+    @Test
+    void testVisitorsShareOneWalk() throws Exception {
+        ClassPool pool = SampleClasses.newPool();
+        ClassFile classFile = SampleClasses.jdbcDao(pool).getClassFile();
+
+        CountingVisitor first = new CountingVisitor();
+        CountingVisitor second = new CountingVisitor();
+        BytecodeWalker.walk(classFile, List.of(first, new FailingVisitor(), second), new TestWriter());
+
+        int expected = countInstructions(classFile);
+        assertEquals(expected, first.instructions);
+        assertEquals(expected, second.instructions, "A failing visitor must not stop the others");
+        assertEquals(2, first.methods);
+        assertTrue(first.invokes >= 6);
+    }
+
+    @Test
+    void testWalkStopsAtDeadline() throws Exception {
+        ClassPool pool = SampleClasses.newPool();
+        CtClass huge = pool.makeClass("com.example.samples.Huge");
+        StringBuilder body = new StringBuilder("public int sum(int a) { int s = 0;");
+        for (int i = 0; i < 2000; i++) {
+            body.append(" s += a;");
+        }
+        huge.addMethod(CtNewMethod.make(body.append(" return s; }").toString(), huge));
+        ClassFile classFile = huge.getClassFile();
+
+        CountingVisitor unlimited = new CountingVisitor();
+        assertTrue(BytecodeWalker.walk(classFile, List.of(unlimited), new TestWriter(), System.nanoTime() + 60_000_000_000L));
+        assertEquals(countInstructions(classFile), unlimited.instructions);
+        assertEquals(1, unlimited.classEnds);
+
+        CountingVisitor expired = new CountingVisitor();
+        assertFalse(BytecodeWalker.walk(classFile, List.of(expired), new TestWriter(), System.nanoTime() - 1));
+        assertTrue(expired.instructions < unlimited.instructions, "The walk must stop at the first clock check");
+        assertEquals(0, expired.classEnds, "An aborted walk sends no end events");
+    }
+
+    @Test
+    void testPreparedStatementVisitorFindsModifyingSql() throws Exception {
+        ClassPool pool = SampleClasses.newPool();
+        CtClass dao = SampleClasses.jdbcDao(pool);
+
+        TestWriter writer = new TestWriter();
+        new PreparedStmtExtractor().process(dao, writer);
+
+        List<Finding> findings = writer.getFindings();
+        assertEquals(1, findings.size(), "The setInt of the INSERT, not its setString nor the SELECT: " + findings);
+        Finding finding = findings.get(0);
+        assertEquals("save", finding.getMethodName());
+        assertEquals("INSERT INTO users (id, name) VALUES (?, ?)", finding.getSqlSnippet());
+        assertEquals("int", finding.getJavaType());
+        assertEquals(Integer.valueOf(1), finding.getParamIndex());
+        assertEquals("users", finding.getTable());
+        assertEquals("id", finding.getColumn());
+    }
+
+    @Test
+    void testSetterIndexAndTypeComeFromTheOperandStack() throws Exception {
+        ClassPool pool = SampleClasses.newPool();
+        CtClass dao = SampleClasses.jdbcDao(pool, "com.example.samples.Mixed",
+                "public void update(java.sql.Connection conn, long version, int qty, boolean bulk) throws java.sql.SQLException {"
+                        + "  java.sql.PreparedStatement ps = conn.prepareStatement(\"UPDATE stock SET version = ?, qty = ?, note = ? WHERE id = ?\");"
+                        + "  ps.setLong(1, version);"
+                        + "  ps.setInt(bulk ? 2 : 2, qty);"
+                        + "  ps.setString(3, \"n\");"
+                        + "  ps.setObject(4, Integer.valueOf(qty));"
+                        + "  ps.setObject(4, \"id\");"
+                        + "  conn.prepareStatement(\"DELETE FROM stock WHERE qty < ?\").setInt(1, qty);"
+                        + "}");
+
+        TestWriter writer = new TestWriter();
+        new PreparedStmtExtractor().process(dao, writer);
+
+        List<Finding> findings = writer.getFindings();
+        assertEquals(List.of("int", "java.lang.Integer", "int"),
+                findings.stream().map(Finding::getJavaType).collect(Collectors.toList()), findings.toString());
+        assertEquals(List.of(2, 4, 1), findings.stream().map(Finding::getParamIndex).collect(Collectors.toList()));
+        assertEquals(List.of("qty", "id", "qty"), findings.stream().map(Finding::getColumn).collect(Collectors.toList()));
+        assertEquals("DELETE FROM stock WHERE qty < ?", findings.get(2).getSqlSnippet());
+    }
+
+    @Test
+    void testSettersAreAttributedToTheirOwnStatement() throws Exception {
+        ClassPool pool = SampleClasses.newPool();
+        CtClass dao = SampleClasses.jdbcDao(pool, "com.example.samples.Interleaved",
+                "public void move(java.sql.Connection conn, int from, int to) throws java.sql.SQLException {"
+                        + "  java.sql.PreparedStatement debit = conn.prepareStatement(\"UPDATE account SET balance = balance - 1 WHERE id = ?\");"
+                        + "  java.sql.PreparedStatement audit = conn.prepareStatement(\"SELECT balance FROM account WHERE id = ?\");"
+                        + "  java.sql.PreparedStatement credit = conn.prepareStatement(\"UPDATE account SET balance = balance + 1 WHERE id = ?\");"
+                        + "  credit.setInt(1, to);"
+                        + "  audit.setInt(1, from);"
+                        + "  debit.setInt(1, from);"
+                        + "  debit.executeUpdate();"
+                        + "  credit.executeUpdate();"
+                        + "  debit = conn.prepareStatement(\"SELECT id FROM account WHERE id = ?\");"
+                        + "  debit.setInt(1, from);"
+                        + "}");
+
+        TestWriter writer = new TestWriter();
+        new PreparedStmtExtractor().process(dao, writer);
+
+        assertEquals(List.of("UPDATE account SET balance = balance + 1 WHERE id = ?",
+                        "UPDATE account SET balance = balance - 1 WHERE id = ?"),
+                writer.getFindings().stream().map(Finding::getSqlSnippet).collect(Collectors.toList()),
+                "The SELECTs, including the one reusing a local, must not be reported");
+    }
+
+    @Test
+    void testJdbcTemplateVisitorFindsBoxedInt() throws Exception {
+        ClassPool pool = SampleClasses.newPool();
+        CtClass dao = SampleClasses.springDao(pool);
+
+        TestWriter writer = new TestWriter();
+        new JdbcTemplateIntExtractor().process(dao, writer);
+
+        List<Finding> findings = writer.getFindings();
+        assertEquals(1, findings.size(), findings.toString());
+        assertEquals("bump", findings.get(0).getMethodName());
+        assertEquals(Integer.valueOf(1), findings.get(0).getParamIndex());
+        assertEquals("users", findings.get(0).getTable());
+        assertEquals("id", findings.get(0).getColumn());
+    }
+
+    @Test
+    void testEngineRunsRegisteredVisitors() throws Exception {
+        File dir = new File("build/test-output-walker");
+        ClassPool pool = SampleClasses.newPool();
+        SampleClasses.jdbcDao(pool).writeFile(dir.getPath());
+        SampleClasses.springDao(pool).writeFile(dir.getPath());
+
+        TestWriter writer = new TestWriter();
+        ScanEngine engine = new ScanEngine(writer);
+        engine.loadExtractors();
+        engine.scanDirectory(dir.toPath());
+
+        List<String> types = writer.getFindings().stream().map(Finding::getType).sorted().collect(Collectors.toList());
+        assertEquals(List.of("JdbcTemplateInt", "PreparedStatement"), types);
+    }
+
+    private static int countInstructions(ClassFile classFile) throws Exception {
+        int count = 0;
+        for (Object m : classFile.getMethods()) {
+            MethodInfo method = (MethodInfo) m;
+            if (!method.isMethod() || method.getCodeAttribute() == null) continue;
+            CodeIterator it = method.getCodeAttribute().iterator();
+            while (it.hasNext()) {
+                it.next();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static class CountingVisitor implements IBytecodeVisitor {
+        int methods, instructions, invokes, classEnds;
+
+        @Override
+        public String name() {
+            return "Counting";
+        }
+
+        @Override
+        public void visitMethod(MethodInfo method) {
+            methods++;
+        }
+
+        @Override
+        public void visitInstruction(int pc, int opcode) {
+            instructions++;
+        }
+
+        @Override
+        public void visitInvoke(int pc, int opcode, String owner, String name, String descriptor) {
+            invokes++;
+        }
+
+        @Override
+        public void visitClassEnd() {
+            classEnds++;
+        }
+    }
+
+    private static class FailingVisitor implements IBytecodeVisitor {
+        @Override
+        public String name() {
+            return "Failing";
+        }
+
+        @Override
+        public boolean visitClass(ClassFile classFile, IFindingWriter writer) {
+            return true;
+        }
+
+        @Override
+        public void visitInvoke(int pc, int opcode, String owner, String name, String descriptor) {
+            throw new IllegalStateException("boom");
+        }
+    }
+}
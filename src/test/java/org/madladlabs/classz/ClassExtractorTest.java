@@ -3,11 +3,19 @@ package org.madladlabs.classz;
 
 import org.junit.jupiter.api.*;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
 import org.madladlabs.classz.ClassExtractor;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -44,6 +52,50 @@ public class ClassExtractorTest {
         File expectedClass = new File(outputDir, "antlr/preprocessor/Tool.class");
         assertTrue(expectedClass.exists(), "Expected class file not found: " + expectedClass.getAbsolutePath());
     }
+
+    @Test
+    public void testStreamsDeeplyNestedStoredAndDeflatedArchives() throws Exception {
+        // app.ear (file) -> lib/outer.war (STORED) -> WEB-INF/lib/inner.jar (DEFLATED) -> deep.jar (STORED)
+        byte[] deep  = zip(ZipEntry.STORED,   "com/example/Deep.class", new byte[]{(byte) 0xCA, (byte) 0xFE});
+        byte[] inner = zip(ZipEntry.DEFLATED, "deep.jar", deep, "com/example/Inner.class", new byte[]{1});
+        byte[] outer = zip(ZipEntry.STORED,   "WEB-INF/lib/inner.jar", inner, "WEB-INF/classes/Outer.class", new byte[]{2});
+        File ear = new File(outputDir, "app.ear");
+        Files.write(ear.toPath(), zip(ZipEntry.STORED, "lib/outer.war", outer));
+
+        List<String> seen = new ArrayList<>();
+        ClassExtractor.streamFromFile(ear, (entryName, in) -> {
+            seen.add(entryName);
+            if (entryName.equals("com/example/Deep.class")) {
+                assertArrayEquals(new byte[]{(byte) 0xCA, (byte) 0xFE}, in.readAllBytes());
+            }
+        });
+
+        Collections.sort(seen);
+        assertEquals(List.of("WEB-INF/classes/Outer.class", "com/example/Deep.class", "com/example/Inner.class"), seen);
+    }
+
+    /** Builds an in-memory zip from name/content pairs, using one compression method for all entries. */
+    static byte[] zip(int method, Object... namesAndContents) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                byte[] content = (byte[]) namesAndContents[i + 1];
+                ZipEntry entry = new ZipEntry((String) namesAndContents[i]);
+                entry.setMethod(method);
+                if (method == ZipEntry.STORED) {
+                    CRC32 crc = new CRC32();
+                    crc.update(content);
+                    entry.setSize(content.length);
+                    entry.setCompressedSize(content.length);
+                    entry.setCrc(crc.getValue());
+                }
+                out.putNextEntry(entry);
+                out.write(content);
+                out.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
 }
 
 /*
@@ -0,0 +1,78 @@
+package org.madladlabs.classz;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtNewMethod;
+import org.junit.jupiter.api.*;
+import org.madladlabs.classz.engine.ScanEngine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Regression test for heap growth during a scan: parsed classes must be released
+ * once the extractors are done with them, so retained heap does not grow with the
+ * number of classes scanned.
+ */
+public class ClassPoolMemoryTest {
+
+    private static final File archive = new File("build/test-output-memory/many-classes.jar");
+    private static final int CLASS_COUNT = 20_000;
+    private static final long MAX_RETAINED_BYTES = 32L * 1024 * 1024;
+
+    @BeforeAll
+    public static void generateArchive() throws Exception {
+        archive.getParentFile().mkdirs();
+        ClassPool pool = new ClassPool(true);
+        String padding = "x".repeat(2048);
+
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive))) {
+            for (int i = 0; i < CLASS_COUNT; i++) {
+                CtClass cc = pool.makeClass("com.example.mem.Generated" + i);
+                // A unique string constant makes every parsed class retain a few KB
+                cc.addField(CtField.make("public static final String SQL = \"" + padding + i + "\";", cc));
+                cc.addField(new CtField(CtClass.intType, "id", cc));
+                // A PreparedStatement reference gets the class past the engine's prefilter, so it is parsed
+                cc.addMethod(CtNewMethod.make(
+                        "public void bind(java.sql.PreparedStatement ps) throws java.sql.SQLException { ps.setInt(1, id); }", cc));
+                out.putNextEntry(new ZipEntry("com/example/mem/Generated" + i + ".class"));
+                out.write(cc.toBytecode());
+                out.closeEntry();
+                cc.detach();
+            }
+        }
+    }
+
+    @Test
+    public void testRetainedHeapDoesNotGrowWithClassCount() throws Exception {
+        TestWriter writer = new TestWriter();
+        ScanEngine engine = new ScanEngine(writer);
+        engine.loadExtractors();
+        // Warm-up on a different archive: loads extractors, JDK classes, etc.
+        engine.scanArchive(new File("src/test/resources/archive-samples/AccessEmployeeWithJPA.ear"));
+
+        long before = usedHeapAfterGc();
+        engine.scanArchive(archive);
+        long growth = usedHeapAfterGc() - before;
+
+        assertEquals(CLASS_COUNT, engine.getClassesParsed(), "Every generated class must be parsed");
+        assertTrue(growth < MAX_RETAINED_BYTES,
+                "Heap grew by " + growth / (1024 * 1024) + " MB while scanning " + CLASS_COUNT + " classes");
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,151 @@
+package org.madladlabs.classz;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtNewMethod;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.madladlabs.classz.engine.ScanEngine;
+import org.madladlabs.classz.extractors.PreparedStmtExtractor;
+import org.madladlabs.classz.index.ConstantFlowIndex;
+import org.madladlabs.classz.model.Finding;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConstantFlowIndexTest {
+
+    private static final File outputDir = new File("build/test-output-flow");
+    private static final String UPDATE = "UPDATE app.stock SET qty = ? WHERE id = ?";
+
+    private CtClass sql, helper, dao;
+
+    @BeforeEach
+    public void generateClasses() throws Exception {
+        if (outputDir.exists()) {
+            Files.walk(outputDir.toPath())
+                    .map(Path::toFile)
+                    .sorted((a, b) -> -a.compareTo(b))
+                    .forEach(File::delete);
+        }
+        outputDir.mkdirs();
+
+        ClassPool pool = SampleClasses.newPool();
+        sql = pool.makeClass("com.example.flow.Sql");
+        sql.addField(CtField.make("public static final String TABLE;", sql));
+        sql.addField(CtField.make("public static final String DELETE;", sql));
+        for (String method : List.of(
+                "public static String schema() { return \"app\"; }",
+                "public static String update() { return \"UPDATE \" + TABLE + \" SET qty = ? WHERE id = ?\"; }",
+                "public static String where(String column) { return \" WHERE \" + column + \" = ?\"; }",
+                "public static String pick(boolean first) { return first ? \"a\" : \"b\"; }")) {
+            sql.addMethod(CtNewMethod.make(method, sql));
+        }
+        sql.makeClassInitializer().insertBefore(
+                "TABLE = schema() + \".stock\"; DELETE = \"DELETE FROM \" + TABLE + where(\"id\");");
+        helper = SampleClasses.jdbcDao(pool, "com.example.flow.Helper",
+                "public static java.sql.PreparedStatement prepare(java.sql.Connection c, String sql) throws java.sql.SQLException {"
+                        + "  return c.prepareStatement(sql);"
+                        + "}");
+        dao = SampleClasses.jdbcDao(pool, "com.example.flow.StockDao",
+                "public void adjust(java.sql.Connection conn, int id) throws java.sql.SQLException {"
+                        + "  com.example.flow.Helper.prepare(conn, com.example.flow.Sql.update()).setInt(2, id);"
+                        + "}",
+                "public void reset(java.sql.Connection conn, int qty) throws java.sql.SQLException {"
+                        + "  java.sql.PreparedStatement ps = conn.prepareStatement(com.example.flow.Sql.update());"
+                        + "  ps.setInt(1, qty);"
+                        + "}",
+                "public void delete(java.sql.Connection conn, int id) throws java.sql.SQLException {"
+                        + "  java.sql.PreparedStatement ps = conn.prepareStatement(com.example.flow.Sql.DELETE);"
+                        + "  ps.setInt(1, id);"
+                        + "}");
+        for (CtClass cc : List.of(sql, helper, dao)) {
+            cc.writeFile(outputDir.getPath());
+        }
+    }
+
+    @Test
+    public void testSummariesResolveThroughFieldsAndCalls() throws Exception {
+        ConstantFlowIndex.Builder builder = new ConstantFlowIndex.Builder();
+        builder.add(sql.getClassFile2());
+        builder.add(helper.getClassFile2());
+        ConstantFlowIndex index = ConstantFlowIndex.build(List.of(builder));
+
+        assertEquals("app.stock", index.fieldValue("com.example.flow.Sql", "TABLE"));
+        assertEquals("DELETE FROM app.stock WHERE id = ?", index.fieldValue("com.example.flow.Sql", "DELETE"));
+
+        int update = index.method("com.example.flow.Sql", "update", "()Ljava/lang/String;");
+        assertFalse(index.needsArguments(update));
+        assertEquals(UPDATE, index.returnedString(update, null));
+
+        int where = index.method("com.example.flow.Sql", "where", "(Ljava/lang/String;)Ljava/lang/String;");
+        assertTrue(index.needsArguments(where));
+        assertEquals(" WHERE qty = ?", index.returnedString(where, new Object[]{"qty"}));
+        assertNull(index.returnedString(where, new Object[]{null}));
+
+        int prepare = index.method("com.example.flow.Helper", "prepare",
+                "(Ljava/sql/Connection;Ljava/lang/String;)Ljava/sql/PreparedStatement;");
+        assertEquals(UPDATE, index.preparedSql(prepare, new Object[]{null, UPDATE}));
+
+        int pick = index.method("com.example.flow.Sql", "pick", "(Z)Ljava/lang/String;");
+        assertNull(index.returnedString(pick, null), "A method returning different strings has no single value");
+        assertEquals(-1, index.method("com.example.flow.Sql", "missing", "()Ljava/lang/String;"));
+    }
+
+    @Test
+    public void testPrePassLinksSqlToSettersInOtherClasses() throws Exception {
+        for (int threads : new int[]{1, 4}) {
+            TestWriter writer = new TestWriter();
+            ScanEngine engine = new ScanEngine(writer);
+            engine.loadExtractors();
+            engine.setThreads(threads);
+            engine.setPrePass(true);
+            engine.scanDirectory(outputDir.toPath());
+
+            List<Finding> findings = writer.getFindings().stream()
+                    .filter(f -> f.getClassName().equals("com.example.flow.StockDao"))
+                    .collect(Collectors.toList());
+            assertEquals(List.of(UPDATE, UPDATE, "DELETE FROM app.stock WHERE id = ?"),
+                    findings.stream().map(Finding::getSqlSnippet).collect(Collectors.toList()), findings.toString());
+            assertEquals(List.of(2, 1, 1), findings.stream().map(Finding::getParamIndex).collect(Collectors.toList()));
+            assertEquals(List.of("id", "qty", "id"), findings.stream().map(Finding::getColumn).collect(Collectors.toList()));
+            assertEquals("app.stock", findings.get(0).getTable());
+            assertEquals(1, engine.getMetrics().getClassesPrePassRejected(), "StockDao has nothing to summarise");
+        }
+    }
+
+    @Test
+    public void testWithoutPrePassSqlFromOtherClassesIsUnknown() throws Exception {
+        TestWriter writer = new TestWriter();
+        ScanEngine engine = new ScanEngine(writer);
+        engine.loadExtractors();
+        engine.scanDirectory(outputDir.toPath());
+
+        assertTrue(writer.getFindings().stream().noneMatch(f -> f.getClassName().equals("com.example.flow.StockDao")),
+                writer.getFindings().toString());
+    }
+
+    @Test
+    public void testConcatenationWithinAMethodIsFollowed() throws Exception {
+        CtClass concat = SampleClasses.jdbcDao(SampleClasses.newPool(), "com.example.flow.Concat",
+                "public void update(java.sql.Connection conn, int qty) throws java.sql.SQLException {"
+                        + "  String table = \"stock\";"
+                        + "  java.sql.PreparedStatement ps = conn.prepareStatement(\"UPDATE \" + table + \" SET qty = ? WHERE id = ?\");"
+                        + "  ps.setInt(1, qty);"
+                        + "}");
+
+        TestWriter writer = new TestWriter();
+        new PreparedStmtExtractor().process(concat, writer);
+
+        List<Finding> findings = writer.getFindings();
+        assertEquals(1, findings.size(), findings.toString());
+        assertEquals("UPDATE stock SET qty = ? WHERE id = ?", findings.get(0).getSqlSnippet());
+        assertEquals("qty", findings.get(0).getColumn());
+    }
+}
@@ -0,0 +1,114 @@
+package org.madladlabs.classz;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtNewMethod;
+import javassist.bytecode.AccessFlag;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.annotation.Annotation;
+import org.junit.jupiter.api.Test;
+import org.madladlabs.classz.engine.ClassPrefilter;
+import org.madladlabs.classz.engine.ConstantPoolIndex;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConstantPoolIndexTest {
+
+    @Test
+    void testIndexesReferencedClassesAndMethods() throws Exception {
+        ClassPool pool = SampleClasses.newPool();
+        ConstantPoolIndex index = ConstantPoolIndex.parse(SampleClasses.jdbcDao(pool).toBytecode());
+
+        assertTrue(index.referencesClass(bytes("java/sql/PreparedStatement")));
+        assertTrue(index.referencesClassEndingWith(bytes("/Connection")));
+        assertFalse(index.referencesClassEndingWith(bytes("/JdbcTemplate")));
+        assertTrue(index.referencesMethod(bytes("prepareStatement")));
+        assertFalse(index.referencesMethod(bytes("update")));
+        assertTrue(Arrays.asList(index.classNames()).contains(SampleClasses.JDBC_DAO.replace('.', '/')));
+    }
+
+    @Test
+    void testReadsSuperclassAndInterfaces() throws Exception {
+        ClassPool pool = SampleClasses.newPool();
+        CtClass dao = pool.makeClass("com.example.samples.PooledDao", pool.get("java.util.ArrayList"));
+        dao.addInterface(pool.get("java.io.Serializable"));
+        dao.addInterface(pool.get("java.lang.AutoCloseable"));
+        ConstantPoolIndex index = ConstantPoolIndex.parse(dao.toBytecode());
+
+        assertEquals("com.example.samples.PooledDao", index.thisClass());
+        assertEquals("java.util.ArrayList", index.superclass());
+        assertArrayEquals(new String[]{"java.io.Serializable", "java.lang.AutoCloseable"}, index.interfaces());
+        assertEquals("java.lang.Object",
+                ConstantPoolIndex.parse(SampleClasses.jdbcDao(pool).toBytecode()).superclass());
+    }
+
+    @Test
+    void testReadsDeclaredFieldsAndMethods() throws Exception {
+        ClassPool pool = SampleClasses.newPool();
+        CtClass sql = pool.makeClass("com.example.samples.Sql");
+        sql.addField(CtField.make("public static final String TABLE = \"users\";", sql));
+        sql.addField(CtField.make("public String name;", sql));
+        sql.addMethod(CtNewMethod.make("public String where() { return name + \" = ?\"; }", sql));
+        ConstantPoolIndex declaring = ConstantPoolIndex.parse(sql.toBytecode());
+        ConstantPoolIndex calling = ConstantPoolIndex.parse(SampleClasses.jdbcDao(pool).toBytecode());
+
+        assertTrue(declaring.declaresField(AccessFlag.FINAL, bytes("Ljava/lang/String;")));
+        assertTrue(declaring.declaresField(AccessFlag.STATIC | AccessFlag.FINAL, bytes("Ljava/lang/String;")));
+        assertFalse(declaring.declaresField(AccessFlag.FINAL, bytes("I")));
+        assertTrue(declaring.declaresMethodEndingWith(bytes(")Ljava/lang/String;")));
+        assertFalse(declaring.declaresMethodEndingWith(bytes(")Ljava/sql/PreparedStatement;")));
+        assertFalse(calling.declaresField(AccessFlag.FINAL, bytes("Ljava/lang/String;")));
+        assertFalse(calling.declaresMethodEndingWith(bytes(")Ljava/sql/PreparedStatement;")),
+                "Calling prepareStatement does not declare a method returning a statement");
+    }
+
+    @Test
+    void testPrefilterMatchesDeclaredTypes() throws Exception {
+        ClassPool pool = SampleClasses.newPool();
+        ConstantPoolIndex jdbc = ConstantPoolIndex.parse(SampleClasses.jdbcDao(pool).toBytecode());
+        ConstantPoolIndex spring = ConstantPoolIndex.parse(SampleClasses.springDao(pool).toBytecode());
+
+        ClassPrefilter templates = ClassPrefilter.of(Set.of("/JdbcTemplate"));
+        ClassPrefilter statements = ClassPrefilter.of(Set.of("java.sql.PreparedStatement"));
+
+        assertTrue(templates.matches(spring));
+        assertFalse(templates.matches(jdbc));
+        assertTrue(statements.matches(jdbc));
+        assertFalse(statements.matches(spring));
+        assertNull(ClassPrefilter.of(Set.of()), "No declared types means every class is accepted");
+    }
+
+    @Test
+    void testPrefilterMatchesAnnotationDescriptors() throws Exception {
+        ClassPool pool = SampleClasses.newPool();
+        CtClass entity = pool.makeClass("com.example.samples.Account");
+        ClassFile cf = entity.getClassFile();
+        AnnotationsAttribute attr = new AnnotationsAttribute(cf.getConstPool(), AnnotationsAttribute.visibleTag);
+        attr.addAnnotation(new Annotation("jakarta.persistence.Entity", cf.getConstPool()));
+        cf.addAttribute(attr);
+
+        ConstantPoolIndex index = ConstantPoolIndex.parse(entity.toBytecode());
+        ClassPrefilter entities = ClassPrefilter.of(Set.of("javax/persistence/Entity", "jakarta/persistence/Entity"));
+
+        assertFalse(index.referencesClass(bytes("jakarta/persistence/Entity")), "Annotations have no Class entry");
+        assertTrue(index.containsUtf8(bytes("Ljakarta/persistence/Entity;")));
+        assertTrue(entities.matches(index));
+        assertFalse(entities.matches(ConstantPoolIndex.parse(SampleClasses.jdbcDao(pool).toBytecode())));
+    }
+
+    @Test
+    void testRejectsNonClassBytes() {
+        assertThrows(IOException.class, () -> ConstantPoolIndex.parse("not a class".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
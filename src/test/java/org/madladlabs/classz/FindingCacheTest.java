@@ -0,0 +1,102 @@
+package org.madladlabs.classz;
+
+import javassist.ClassPool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.madladlabs.classz.cache.FindingCache;
+import org.madladlabs.classz.engine.ScanEngine;
+import org.madladlabs.classz.model.Finding;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FindingCacheTest {
+
+    private static final File outputDir = new File("build/test-output-cache");
+    private static final Path classesDir = outputDir.toPath().resolve("classes");
+    private static final Path cacheFile = outputDir.toPath().resolve("findings.cache");
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        if (outputDir.exists()) {
+            Files.walk(outputDir.toPath())
+                    .map(Path::toFile)
+                    .sorted((a, b) -> -a.compareTo(b))
+                    .forEach(File::delete);
+        }
+        ClassPool pool = SampleClasses.newPool();
+        SampleClasses.jdbcDao(pool).writeFile(classesDir.toString());
+        SampleClasses.springDao(pool).writeFile(classesDir.toString());
+    }
+
+    @Test
+    public void testSecondScanReplaysCachedFindings() throws Exception {
+        FindingCache cache = FindingCache.load(cacheFile, fingerprint(), 100);
+        List<String> uncached = scan(cache);
+        assertEquals(2, uncached.size());
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        cache.save();
+
+        FindingCache reloaded = FindingCache.load(cacheFile, fingerprint(), 100);
+        assertEquals(2, reloaded.size());
+        assertEquals(uncached, scan(reloaded));
+        assertEquals(2, reloaded.getHits());
+        assertEquals(0, reloaded.getMisses());
+    }
+
+    @Test
+    public void testChangedExtractorVersionInvalidatesCache() throws Exception {
+        FindingCache cache = FindingCache.load(cacheFile, fingerprint(), 100);
+        scan(cache);
+        cache.save();
+
+        FindingCache stale = FindingCache.load(cacheFile, fingerprint() + ",Other@2", 100);
+        assertEquals(0, stale.size());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        FindingCache cache = FindingCache.load(cacheFile, "test", 2);
+        Finding finding = new Finding("T", "a.B", "m", 3, "SELECT ?", 1, null, null, "int");
+        cache.put(digest(1), List.of(finding));
+        cache.put(digest(2), List.of());
+        cache.get(digest(1));                    // 2 is now the least recently used
+        cache.put(digest(3), List.of());
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get(digest(2)));
+        cache.save();
+
+        FindingCache reloaded = FindingCache.load(cacheFile, "test", 2);
+        assertEquals(finding.toString(), reloaded.get(digest(1)).get(0).toString());
+        assertEquals(List.of(), reloaded.get(digest(3)));
+    }
+
+    private static String fingerprint() {
+        ScanEngine engine = new ScanEngine(new TestWriter());
+        engine.loadExtractors();
+        return engine.getExtractorFingerprint();
+    }
+
+    private static List<String> scan(FindingCache cache) throws Exception {
+        TestWriter writer = new TestWriter();
+        ScanEngine engine = new ScanEngine(writer);
+        engine.loadExtractors();
+        engine.setCache(cache);
+        engine.scanDirectory(classesDir);
+        return writer.getFindings().stream().map(Finding::toString).collect(Collectors.toList());
+    }
+
+    private static byte[] digest(int n) {
+        byte[] digest = new byte[32];
+        digest[0] = (byte) n;
+        return digest;
+    }
+}
@@ -0,0 +1,85 @@
+package org.madladlabs.classz;
+
+import javassist.ClassPool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.madladlabs.classz.cache.FindingCache;
+import org.madladlabs.classz.engine.ScanEngine;
+import org.madladlabs.classz.model.Finding;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FindingHeapTest {
+
+    private static final File outputDir = new File("build/test-output-heap");
+    private static final Path classesDir = outputDir.toPath().resolve("classes");
+    private static final Path cacheFile = outputDir.toPath().resolve("findings.cache");
+
+    private static final String SAVE =
+            "public void save(java.sql.Connection conn, int id) throws java.sql.SQLException {"
+                    + "  java.sql.PreparedStatement ps = conn.prepareStatement(\"UPDATE users SET visits = ? WHERE id = ?\");"
+                    + "  ps.setInt(1, id);"
+                    + "  ps.executeUpdate();"
+                    + "}";
+
+    @BeforeEach
+    public void generateClasses() throws Exception {
+        if (outputDir.exists()) {
+            Files.walk(outputDir.toPath())
+                    .map(Path::toFile)
+                    .sorted((a, b) -> -a.compareTo(b))
+                    .forEach(File::delete);
+        }
+        ClassPool pool = SampleClasses.newPool();
+        SampleClasses.jdbcDao(pool, "com.example.samples.DaoOne", SAVE).writeFile(classesDir.toString());
+        SampleClasses.jdbcDao(pool, "com.example.samples.DaoTwo", SAVE).writeFile(classesDir.toString());
+    }
+
+    @Test
+    public void testFindingsOfDifferentClassesShareStrings() throws Exception {
+        TestWriter writer = new TestWriter();
+        ScanEngine engine = new ScanEngine(writer);
+        engine.loadExtractors();
+        engine.scanDirectory(classesDir);
+
+        assertSharedStrings(writer.getFindings());
+        assertTrue(engine.getDictionarySize() > 0);
+    }
+
+    @Test
+    public void testCachedFindingsShareStrings() throws Exception {
+        String fingerprint = newEngine(new TestWriter()).getExtractorFingerprint();
+        FindingCache cache = FindingCache.load(cacheFile, fingerprint, 100);
+        ScanEngine first = newEngine(new TestWriter());
+        first.setCache(cache);
+        first.scanDirectory(classesDir);
+        cache.save();
+
+        FindingCache reloaded = FindingCache.load(cacheFile, fingerprint, 100);
+        TestWriter writer = new TestWriter();
+        ScanEngine second = newEngine(writer);
+        second.setCache(reloaded);
+        second.scanDirectory(classesDir);
+
+        assertEquals(2, reloaded.getHits());
+        assertSharedStrings(writer.getFindings());
+    }
+
+    private static ScanEngine newEngine(TestWriter writer) {
+        ScanEngine engine = new ScanEngine(writer);
+        engine.loadExtractors();
+        return engine;
+    }
+
+    private static void assertSharedStrings(List<Finding> findings) {
+        assertEquals(2, findings.size());
+        assertSame(findings.get(0).getSqlSnippet(), findings.get(1).getSqlSnippet(),
+                "The same SQL literal in two classes should be one string");
+        assertSame(findings.get(0).getMethodName(), findings.get(1).getMethodName());
+    }
+}
@@ -0,0 +1,109 @@
+package org.madladlabs.classz;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.annotation.Annotation;
+import org.junit.jupiter.api.*;
+import org.madladlabs.classz.engine.PipelineStats;
+import org.madladlabs.classz.engine.ScanEngine;
+import org.madladlabs.classz.model.Finding;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelScanTest {
+
+    private static final File outputDir = new File("build/test-output-parallel");
+    private static final int CLASS_COUNT = 300;
+
+    @BeforeEach
+    public void generateClasses() throws Exception {
+        if (outputDir.exists()) {
+            Files.walk(outputDir.toPath())
+                    .map(Path::toFile)
+                    .sorted((a, b) -> -a.compareTo(b))
+                    .forEach(File::delete);
+        }
+        outputDir.mkdirs();
+
+        ClassPool pool = new ClassPool(true);
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            CtClass cc = pool.makeClass("com.example.gen.Generated" + i);
+            if (i % 3 == 0) {
+                ClassFile cf = cc.getClassFile();
+                AnnotationsAttribute attr = new AnnotationsAttribute(cf.getConstPool(), AnnotationsAttribute.visibleTag);
+                attr.addAnnotation(new Annotation("javax.persistence.Entity", cf.getConstPool()));
+                cf.addAttribute(attr);
+            }
+            for (int f = 0; f <= i % 4; f++) {
+                cc.addField(new CtField(CtClass.intType, "field" + f, cc));
+            }
+            cc.writeFile(outputDir.getPath());
+            cc.detach();
+        }
+    }
+
+    @Test
+    public void testParallelScanMatchesSequentialOrder() throws Exception {
+        List<String> sequential = scan(1);
+        List<String> parallel = scan(4);
+
+        assertEquals(250, sequential.size(), "Expected one finding per int field on every generated entity");
+        assertEquals(sequential, parallel);
+        assertEquals(parallel, scan(4), "Parallel output should be identical from run to run");
+    }
+
+    @Test
+    public void testPrefilterRejectsClassesWithoutEntityAnnotation() throws Exception {
+        ScanEngine engine = new ScanEngine(new TestWriter());
+        engine.loadExtractors();
+        engine.setThreads(2);
+        engine.scanDirectory(outputDir.toPath());
+
+        assertEquals(CLASS_COUNT, engine.getClassesScanned());
+        assertEquals(CLASS_COUNT - CLASS_COUNT / 3, engine.getClassesRejected(),
+                "Only the generated entities should get past the prefilter");
+    }
+
+    @Test
+    public void testArchivePipelineMatchesSequentialScan() throws Exception {
+        File ear = new File("src/test/resources/archive-samples/AccessEmployeeWithJPA.ear");
+
+        TestWriter sequential = new TestWriter();
+        ScanEngine sequentialEngine = new ScanEngine(sequential);
+        sequentialEngine.loadExtractors();
+        sequentialEngine.scanArchive(ear);
+
+        TestWriter pipelined = new TestWriter();
+        ScanEngine pipelinedEngine = new ScanEngine(pipelined);
+        pipelinedEngine.loadExtractors();
+        pipelinedEngine.setThreads(3);
+        pipelinedEngine.scanArchive(ear);
+
+        assertEquals(strings(sequential.getFindings()), strings(pipelined.getFindings()));
+        PipelineStats stats = pipelinedEngine.getPipelineStats();
+        assertNotNull(stats);
+        assertTrue(stats.getClassesRead() > 50, "Expected every class of the EAR to pass through the pipeline");
+    }
+
+    private static List<String> scan(int threads) throws Exception {
+        TestWriter writer = new TestWriter();
+        ScanEngine engine = new ScanEngine(writer);
+        engine.loadExtractors();
+        engine.setThreads(threads);
+        engine.scanDirectory(outputDir.toPath());
+        return strings(writer.getFindings());
+    }
+
+    private static List<String> strings(List<Finding> findings) {
+        return findings.stream().map(Finding::toString).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,60 @@
+package org.madladlabs.classz;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewMethod;
+
+/**
+ * Compiles small JDBC / Spring sample classes with Javassist so extractor tests
+ * do not depend on pre-built class files.
+ */
+public class SampleClasses {
+
+    public static final String JDBC_DAO = "com.example.samples.JdbcDao";
+    public static final String SPRING_DAO = "com.example.samples.SpringDao";
+
+    private SampleClasses() {
+    }
+
+    public static ClassPool newPool() throws Exception {
+        ClassPool pool = new ClassPool(true);
+        CtClass template = pool.makeClass("org.springframework.jdbc.core.JdbcTemplate");
+        template.addMethod(CtNewMethod.make(
+                "public int update(String sql, Object[] args) { return 0; }", template));
+        return pool;
+    }
+
+    /** A DAO using plain JDBC; {@code methods} are full Javassist method sources. */
+    public static CtClass jdbcDao(ClassPool pool, String className, String... methods) throws Exception {
+        CtClass dao = pool.makeClass(className);
+        for (String method : methods) {
+            dao.addMethod(CtNewMethod.make(method, dao));
+        }
+        return dao;
+    }
+
+    public static CtClass jdbcDao(ClassPool pool) throws Exception {
+        return jdbcDao(pool, JDBC_DAO,
+                "public void save(java.sql.Connection conn, int id) throws java.sql.SQLException {"
+                        + "  java.sql.PreparedStatement ps = conn.prepareStatement(\"INSERT INTO users (id, name) VALUES (?, ?)\");"
+                        + "  ps.setInt(1, id);"
+                        + "  ps.setString(2, \"x\");"
+                        + "  ps.executeUpdate();"
+                        + "}",
+                "public void load(java.sql.Connection conn, int id) throws java.sql.SQLException {"
+                        + "  java.sql.PreparedStatement ps = conn.prepareStatement(\"SELECT name FROM users WHERE id = ?\");"
+                        + "  ps.setInt(1, id);"
+                        + "  ps.executeQuery();"
+                        + "}");
+    }
+
+    public static CtClass springDao(ClassPool pool) throws Exception {
+        return jdbcDao(pool, SPRING_DAO,
+                "public void bump(org.springframework.jdbc.core.JdbcTemplate jdbc, int id) {"
+                        + "  jdbc.update(\"UPDATE users SET visits = visits + 1 WHERE id = ?\", new Object[]{ Integer.valueOf(id) });"
+                        + "}",
+                "public void rename(org.springframework.jdbc.core.JdbcTemplate jdbc, String name) {"
+                        + "  jdbc.update(\"UPDATE users SET name = ?\", new Object[]{ name });"
+                        + "}");
+    }
+}
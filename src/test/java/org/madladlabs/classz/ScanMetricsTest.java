@@ -0,0 +1,117 @@
+package org.madladlabs.classz;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.madladlabs.classz.engine.ScanEngine;
+import org.madladlabs.classz.metrics.ScanMetrics;
+import org.madladlabs.classz.metrics.TimingHistogram;
+import org.madladlabs.classz.tools.SyntheticArchiveGenerator;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScanMetricsTest {
+
+    private static final File outputDir = new File("build/test-output-metrics");
+    private static final File ear = new File(outputDir, "metrics.ear");
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        if (outputDir.exists()) {
+            Files.walk(outputDir.toPath())
+                    .map(Path::toFile)
+                    .sorted((a, b) -> -a.compareTo(b))
+                    .forEach(File::delete);
+        }
+        outputDir.mkdirs();
+    }
+
+    @Test
+    public void testArchiveScanCountsEntriesAndTimesStages() throws Exception {
+        SyntheticArchiveGenerator.Summary summary = new SyntheticArchiveGenerator()
+                .classes(200).depth(2).classesPerJar(25).archivesPerLevel(2)
+                .densities(0.1, 0.1, 0.1)
+                .generate(ear);
+
+        ScanEngine engine = new ScanEngine(new TestWriter());
+        engine.loadExtractors();
+        engine.setVisitorTiming(true);
+        engine.scanArchive(ear);
+        ScanMetrics metrics = engine.getMetrics();
+
+        assertEquals(200 + summary.getArchives(), metrics.getEntriesVisited());
+        assertEquals(summary.getArchives(), metrics.getNestedArchives());
+        assertTrue(metrics.getBytesDecompressed() > ear.length(), "Deflated entries are counted inflated");
+        assertEquals(200, metrics.getClassesScanned());
+        assertEquals(200, metrics.getClassesRejected() + metrics.getClassesParsed());
+        assertEquals(0, metrics.getClassesFailed());
+
+        assertEquals(200, metrics.stage(ScanMetrics.INDEX).getCount());
+        assertEquals(metrics.getClassesParsed(), metrics.stage(ScanMetrics.PARSE).getCount());
+        assertEquals(summary.getEntities(), metrics.extractor("HibernateIntField").getCount());
+        assertEquals(summary.getJdbcDaos(), metrics.extractor("PreparedStatement").getCount(),
+                "Visitor timing covers exactly the classes the prefilter let through");
+
+        Path json = outputDir.toPath().resolve("metrics.json");
+        metrics.writeJson(json);
+        JsonNode tree = new ObjectMapper().readTree(json.toFile());
+        assertEquals(200, tree.path("classes").path("scanned").asLong());
+        assertEquals(summary.getArchives(), tree.path("archive").path("nestedArchives").asLong());
+        assertTrue(tree.path("extractors").has("JdbcTemplateInt"));
+    }
+
+    @Test
+    public void testKeepsSlowestClassesFirst() throws Exception {
+        new SyntheticArchiveGenerator().classes(50).depth(0).generate(ear);
+
+        ScanEngine engine = new ScanEngine(new TestWriter());
+        engine.loadExtractors();
+        engine.setSlowClassLimit(3);
+        engine.setClassTimeBudget(60_000);
+        engine.scanArchive(ear);
+        ScanMetrics metrics = engine.getMetrics();
+
+        List<ScanMetrics.ClassTiming> slowest = metrics.getSlowestClasses();
+        assertEquals(3, slowest.size());
+        assertTrue(slowest.get(0).getNanos() >= slowest.get(1).getNanos());
+        assertTrue(slowest.get(1).getNanos() >= slowest.get(2).getNanos());
+        assertTrue(slowest.get(0).getSource().startsWith("metrics.ear!/com/example/synthetic/"));
+        assertEquals(0, metrics.getBudgetOverruns());
+    }
+
+    @Test
+    public void testRecordsBudgetOverruns() {
+        ScanMetrics metrics = new ScanMetrics(0);
+        for (int i = 0; i < 150; i++) {
+            metrics.budgetExceeded("Class" + i, "PreparedStatement", 2_000_000, i % 2 == 0);
+            metrics.classTimed("Class" + i, i);
+        }
+        assertEquals(150, metrics.getBudgetOverruns());
+        assertEquals(100, metrics.getRecordedOverruns().size(), "Only the first 100 are kept in detail");
+        assertTrue(metrics.getRecordedOverruns().get(0).isAborted());
+        assertTrue(metrics.getSlowestClasses().isEmpty());
+        assertTrue(metrics.toString().contains("over time budget: 150"));
+    }
+
+    @Test
+    public void testHistogramPercentilesAreBucketUpperBounds() {
+        TimingHistogram histogram = new TimingHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1_000);                     // bucket [512, 1024)
+        }
+        histogram.record(1_000_000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMaxNanos());
+        assertEquals(1023, histogram.getPercentileNanos(0.5));
+        assertEquals(1023, histogram.getPercentileNanos(0.99));
+        assertEquals(1_000_000, histogram.getPercentileNanos(1.0), "Capped at the maximum seen");
+        assertEquals((99 * 1_000 + 1_000_000) / 100, histogram.getMeanNanos());
+    }
+}
@@ -0,0 +1,54 @@
+package org.madladlabs.classz;
+
+import org.junit.jupiter.api.Test;
+import org.madladlabs.classz.sql.SqlClassifier;
+import org.madladlabs.classz.sql.SqlClassifier.Kind;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlClassifierTest {
+
+    @Test
+    public void testClassifiesByLeadingKeywordIgnoringCaseAndComments() {
+        assertEquals(Kind.SELECT, SqlClassifier.classify("select * from t"));
+        assertEquals(Kind.INSERT, SqlClassifier.classify("  InSeRt INTO t VALUES (?)"));
+        assertEquals(Kind.UPDATE, SqlClassifier.classify("/* hint */ UPDATE t SET a = ?"));
+        assertEquals(Kind.DELETE, SqlClassifier.classify("-- purge\n\tDELETE FROM t"));
+        assertEquals(Kind.CALL, SqlClassifier.classify("call proc(?)"));
+        assertEquals(Kind.NONE, SqlClassifier.classify("Hello, world"));
+        assertEquals(Kind.NONE, SqlClassifier.classify("/* unterminated UPDATE t"));
+        assertEquals(Kind.NONE, SqlClassifier.classify(null));
+        assertTrue(Kind.DELETE.isModifying());
+        assertFalse(Kind.MERGE.isModifying());
+    }
+
+    @Test
+    public void testStripsCommentsInOnePass() {
+        String plain = "UPDATE t SET a = ?";
+        assertSame(plain, SqlClassifier.stripComments(plain), "Nothing to strip, nothing allocated");
+        assertEquals("UPDATE t SET a = ? WHERE id = ?",
+                SqlClassifier.stripComments("UPDATE t /* audit */SET a = ? -- note\nWHERE id = ?  "));
+        assertEquals("INSERT INTO t VALUES ('--not a comment', '/*nor this*/')",
+                SqlClassifier.stripComments("INSERT INTO t VALUES ('--not a comment', '/*nor this*/') -- but this is"));
+        assertEquals("DELETE FROM t /* open", SqlClassifier.stripComments("DELETE FROM t /* open"));
+    }
+
+    @Test
+    public void testCachesPerConstantPoolIndexUntilReset() {
+        SqlClassifier classifier = new SqlClassifier();
+        classifier.reset(10);
+        String first = "UPDATE t SET a = ? -- first";
+        String cleaned = classifier.cleanedOf(3, first);
+        assertEquals("UPDATE t SET a = ?", cleaned);
+        assertSame(cleaned, classifier.cleanedOf(3, first));
+        assertEquals(Kind.UPDATE, classifier.kindOf(3, first));
+
+        classifier.reset(10);                            // next class: index 3 is another constant
+        assertEquals(Kind.SELECT, classifier.kindOf(3, "SELECT 1 FROM dual"));
+        assertEquals("SELECT 1 FROM dual", classifier.cleanedOf(3, "SELECT 1 FROM dual"));
+
+        classifier.reset(100);                           // a bigger constant pool
+        assertEquals(Kind.DELETE, classifier.kindOf(99, "DELETE FROM t"));
+        assertEquals(Kind.INSERT, classifier.kindOf(-1, "INSERT INTO t VALUES (1)"), "Uncached index");
+    }
+}
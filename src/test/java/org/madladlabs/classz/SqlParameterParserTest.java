@@ -0,0 +1,81 @@
+package org.madladlabs.classz;
+
+import org.junit.jupiter.api.Test;
+import org.madladlabs.classz.sql.SqlParameterParser;
+import org.madladlabs.classz.sql.SqlParameters;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlParameterParserTest {
+
+    @Test
+    public void testInsertMapsPlaceholdersToTheColumnList() {
+        SqlParameters p = SqlParameterParser.parse("INSERT INTO app.orders (id, \"customer_id\", created) VALUES (?, ?, now())");
+        assertEquals("app.orders", p.getTable());
+        assertEquals(2, p.getParameterCount());
+        assertEquals("id", p.getColumn(1));
+        assertEquals("customer_id", p.getColumn(2));
+        assertNull(p.getColumn(3));
+
+        SqlParameters literals = SqlParameterParser.parse("insert into t (a, b, c) values ('x, ?', coalesce(?, 0), ?)");
+        assertEquals("b", literals.getColumn(1), "A '?' inside a string literal is not a placeholder");
+        assertEquals("c", literals.getColumn(2));
+
+        assertNull(SqlParameterParser.parse("INSERT INTO t VALUES (?, ?)").getColumn(1), "No column list");
+    }
+
+    @Test
+    public void testUpdateMapsSetAndWhereColumns() {
+        SqlParameters p = SqlParameterParser.parse(
+                "UPDATE accounts a SET a.balance = a.balance + ?, status = ? WHERE a.id = ? AND ? <= a.version");
+        assertEquals("accounts", p.getTable());
+        assertEquals("balance", p.getColumn(1));
+        assertEquals("status", p.getColumn(2));
+        assertEquals("id", p.getColumn(3));
+        assertEquals("version", p.getColumn(4));
+    }
+
+    @Test
+    public void testDeleteMapsComparisons() {
+        SqlParameters p = SqlParameterParser.parse(
+                "DELETE FROM audit /* purge */ WHERE kind IN (?, 'x', ?) AND day BETWEEN ? AND ? AND name NOT LIKE ? OR code = upper(?)");
+        assertEquals("audit", p.getTable());
+        assertEquals(6, p.getParameterCount());
+        assertEquals("kind", p.getColumn(1));
+        assertEquals("kind", p.getColumn(2));
+        assertEquals("day", p.getColumn(3));
+        assertEquals("day", p.getColumn(4));
+        assertEquals("name", p.getColumn(5));
+        assertEquals("code", p.getColumn(6));
+    }
+
+    @Test
+    public void testMergeMapsBothBranches() {
+        SqlParameters p = SqlParameterParser.parse(
+                "MERGE INTO stock s USING (SELECT ? AS sku FROM dual) d ON (s.sku = d.sku) "
+                        + "WHEN MATCHED THEN UPDATE SET s.qty = s.qty + ? "
+                        + "WHEN NOT MATCHED THEN INSERT (sku, qty) VALUES (d.sku, ?)");
+        assertEquals("stock", p.getTable());
+        assertEquals(3, p.getParameterCount());
+        assertNull(p.getColumn(1), "A placeholder in a projection binds no column");
+        assertEquals("qty", p.getColumn(2));
+        assertEquals("qty", p.getColumn(3));
+    }
+
+    @Test
+    public void testOtherStatementsHaveNoParameters() {
+        assertNull(SqlParameterParser.parse("SELECT * FROM t WHERE id = ?").getTable());
+        assertEquals(0, SqlParameterParser.parse("call proc(?)").getParameterCount());
+        assertEquals(0, SqlParameterParser.parse(null).getParameterCount());
+    }
+
+    @Test
+    public void testCachesByStatement() {
+        SqlParameterParser parser = new SqlParameterParser();
+        String sql = "UPDATE t SET a = ? WHERE id = ?";
+        SqlParameters first = parser.parameters(sql);
+        assertSame(first, parser.parameters(new String(sql)));
+        assertEquals("a", first.getColumn(1));
+        assertEquals("id", first.getColumn(2));
+    }
+}
@@ -0,0 +1,60 @@
+package org.madladlabs.classz;
+
+import org.junit.jupiter.api.*;
+import org.madladlabs.classz.engine.ScanEngine;
+import org.madladlabs.classz.model.Finding;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingScanTest {
+
+    private static final File inputEar = new File("src/test/resources/archive-samples/AccessEmployeeWithJPA.ear");
+    private static final File outputDir = new File("build/test-output-streaming");
+
+    @BeforeEach
+    public void cleanOutputDir() throws Exception {
+        if (outputDir.exists()) {
+            Files.walk(outputDir.toPath())
+                    .map(Path::toFile)
+                    .sorted((a, b) -> -a.compareTo(b))
+                    .forEach(File::delete);
+        }
+        outputDir.mkdirs();
+    }
+
+    @Test
+    public void testStreamedScanMatchesStagedScan() throws Exception {
+        TestWriter streamed = new TestWriter();
+        ScanEngine streamingEngine = new ScanEngine(streamed);
+        streamingEngine.loadExtractors();
+        streamingEngine.scanArchive(inputEar);
+
+        ClassExtractor.extractFromFile(inputEar, outputDir);
+        TestWriter staged = new TestWriter();
+        ScanEngine stagedEngine = new ScanEngine(staged);
+        stagedEngine.loadExtractors();
+        stagedEngine.scanDirectory(outputDir.toPath());
+
+        assertFalse(streamed.getFindings().isEmpty(), "Expected findings from the streamed scan");
+        assertEquals(sorted(staged.getFindings()), sorted(streamed.getFindings()));
+    }
+
+    @Test
+    public void testStreamsClassesFromNestedArchives() throws Exception {
+        List<String> seen = new java.util.ArrayList<>();
+        ClassExtractor.streamFromFile(inputEar, (entryName, in) -> seen.add(entryName));
+
+        assertTrue(seen.contains("WEB-INF/classes/client/AccessEmpServlet.class"));
+        assertTrue(seen.contains("com/example/jdbcsamples/User.class"));
+    }
+
+    private static List<String> sorted(List<Finding> findings) {
+        return findings.stream().map(Finding::toString).sorted().collect(Collectors.toList());
+    }
+}
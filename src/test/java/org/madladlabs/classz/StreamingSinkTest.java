@@ -0,0 +1,148 @@
+package org.madladlabs.classz;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.madladlabs.classz.model.Finding;
+import org.madladlabs.classz.reporting.CsvFindingWriter;
+import org.madladlabs.classz.reporting.FindingSink;
+import org.madladlabs.classz.reporting.FindingSinks;
+import org.madladlabs.classz.reporting.ReportAggregator;
+import org.madladlabs.classz.reporting.SortingFindingWriter;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingSinkTest {
+
+    private static final File outputDir = new File("build/test-output-sink");
+
+    @BeforeEach
+    public void cleanOutputDir() throws Exception {
+        if (outputDir.exists()) {
+            Files.walk(outputDir.toPath())
+                    .map(Path::toFile)
+                    .sorted((a, b) -> -a.compareTo(b))
+                    .forEach(File::delete);
+        }
+        outputDir.mkdirs();
+    }
+
+    @Test
+    public void testExternalSortMatchesInMemoryReport() throws Exception {
+        List<Finding> findings = randomFindings(5000);
+
+        Path expected = outputDir.toPath().resolve("aggregated.csv");
+        ReportAggregator aggregator = new ReportAggregator(expected);
+        findings.forEach(aggregator::accept);
+        aggregator.flush();
+
+        Path streamed = outputDir.toPath().resolve("streamed.csv");
+        SortingFindingWriter sorter = new SortingFindingWriter(new CsvFindingWriter(streamed, 100),
+                SortingFindingWriter.BY_CLASS_NAME, 300, outputDir.toPath());
+        findings.forEach(sorter::accept);
+        assertTrue(sorter.getSpilledRuns() >= 16, "Expected the buffer to spill several runs");
+        sorter.close();
+
+        assertEquals(5000, sorter.getCount());
+        assertEquals(Files.readAllLines(expected), Files.readAllLines(streamed));
+        try (var files = Files.list(outputDir.toPath())) {
+            assertEquals(2, files.count(), "Spilled runs should be deleted once merged");
+        }
+    }
+
+    @Test
+    public void testManyRunsAreMergedInSeveralPasses() throws Exception {
+        List<Finding> findings = randomFindings(5000);
+
+        Path expected = outputDir.toPath().resolve("aggregated.csv");
+        ReportAggregator aggregator = new ReportAggregator(expected);
+        findings.forEach(aggregator::accept);
+        aggregator.flush();
+
+        Path streamed = outputDir.toPath().resolve("streamed.csv");
+        SortingFindingWriter sorter = new SortingFindingWriter(new CsvFindingWriter(streamed, 100),
+                SortingFindingWriter.BY_CLASS_NAME, 7, outputDir.toPath());
+        findings.forEach(sorter::accept);
+        assertEquals(714, sorter.getSpilledRuns(), "More runs than one merge opens at once");
+        sorter.close();
+
+        assertEquals(Files.readAllLines(expected), Files.readAllLines(streamed));
+        try (var files = Files.list(outputDir.toPath())) {
+            assertEquals(2, files.count(), "Intermediate runs should be deleted as well");
+        }
+    }
+
+    @Test
+    public void testRowsReachTheFileBeforeClose() throws Exception {
+        Path csv = outputDir.toPath().resolve("partial.csv");
+        CsvFindingWriter writer = new CsvFindingWriter(csv, 10);
+        randomFindings(25).forEach(writer::accept);
+
+        // Header plus the first two flushed batches are on disk while the scan is still running
+        assertEquals(21, Files.readAllLines(csv).size());
+        writer.close();
+        assertEquals(26, Files.readAllLines(csv).size());
+    }
+
+    @Test
+    public void testJsonAndJsonLinesWriters() throws Exception {
+        List<Finding> findings = randomFindings(50);
+        ObjectMapper mapper = new ObjectMapper();
+
+        Path json = outputDir.toPath().resolve("report.json");
+        try (FindingSink sink = FindingSinks.forPath(json)) {
+            findings.forEach(sink::accept);
+        }
+        JsonNode array = mapper.readTree(json.toFile());
+        assertTrue(array.isArray());
+        assertEquals(50, array.size());
+        assertTrue(array.get(0).get("className").asText().startsWith("com.example.Dao"));
+        assertTrue(array.get(0).get("sqlSnippet").isNull(), "Null fields are written as JSON null");
+
+        Path jsonl = outputDir.toPath().resolve("report.jsonl");
+        try (FindingSink sink = FindingSinks.forPath(jsonl)) {
+            findings.forEach(sink::accept);
+        }
+        List<String> lines = Files.readAllLines(jsonl);
+        assertEquals(50, lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals(array.get(i), mapper.readTree(lines.get(i)), "Line " + i + " should be the same record");
+        }
+        assertTrue(Files.readString(jsonl).endsWith("}\n"), "Every record, the last one too, ends its line");
+
+        assertThrows(IllegalArgumentException.class, () -> FindingSinks.forPath(outputDir.toPath().resolve("r.html")));
+    }
+
+    @Test
+    public void testReportAggregatorWritesJson() throws Exception {
+        Path json = outputDir.toPath().resolve("aggregated.json");
+        ReportAggregator aggregator = new ReportAggregator(json);
+        randomFindings(20).forEach(aggregator::accept);
+        assertTrue(aggregator.flush());
+
+        JsonNode array = new ObjectMapper().readTree(json.toFile());
+        assertEquals(20, array.size());
+        for (int i = 1; i < array.size(); i++) {
+            assertTrue(array.get(i - 1).get("className").asText().compareTo(array.get(i).get("className").asText()) <= 0);
+        }
+    }
+
+    static List<Finding> randomFindings(int count) {
+        Random random = new Random(42);
+        List<Finding> findings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // Few distinct class names, so the stability of the sort matters
+            findings.add(new Finding("PreparedStatement", "com.example.Dao" + random.nextInt(40), "m" + i, i,
+                    i % 3 == 0 ? null : "UPDATE t SET c = ? WHERE id = " + i, random.nextInt(5), null, null, "int"));
+        }
+        return findings;
+    }
+}
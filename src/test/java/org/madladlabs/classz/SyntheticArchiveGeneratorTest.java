@@ -0,0 +1,79 @@
+package org.madladlabs.classz;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.madladlabs.classz.engine.ScanEngine;
+import org.madladlabs.classz.tools.SyntheticArchiveGenerator;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SyntheticArchiveGeneratorTest {
+
+    private static final File outputDir = new File("build/test-output-synthetic");
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        if (outputDir.exists()) {
+            Files.walk(outputDir.toPath())
+                    .map(Path::toFile)
+                    .sorted((a, b) -> -a.compareTo(b))
+                    .forEach(File::delete);
+        }
+        outputDir.mkdirs();
+    }
+
+    @Test
+    public void testNestedEarScansToExpectedFindings() throws Exception {
+        File ear = new File(outputDir, "synthetic.ear");
+        SyntheticArchiveGenerator.Summary summary = new SyntheticArchiveGenerator()
+                .classes(500).depth(3).classesPerJar(40).archivesPerLevel(2)
+                .densities(0.1, 0.1, 0.1)
+                .generate(ear);
+
+        assertEquals(500, summary.getClasses());
+        assertTrue(summary.getJdbcDaos() > 0 && summary.getTemplateDaos() > 0 && summary.getEntities() > 0);
+        assertEquals(summary.expectedFindings(), scan(ear).size());
+    }
+
+    @Test
+    public void testStoredNestingAndTarOutput() throws Exception {
+        File ear = new File(outputDir, "stored.ear");
+        File tar = new File(outputDir, "synthetic.tar");
+        SyntheticArchiveGenerator.Summary stored = new SyntheticArchiveGenerator()
+                .classes(300).depth(2).classesPerJar(50).storeNested(true).generate(ear);
+        SyntheticArchiveGenerator.Summary tarred = new SyntheticArchiveGenerator()
+                .classes(300).depth(1).classesPerJar(50).generate(tar);
+
+        assertEquals(stored.expectedFindings(), tarred.expectedFindings(), "Same seed, same classes");
+        assertEquals(6, tarred.getArchives());
+        assertEquals(stored.expectedFindings(), scan(ear).size());
+        assertEquals(tarred.expectedFindings(), scan(tar).size());
+    }
+
+    @Test
+    public void testForEachClassIsReproducible() throws Exception {
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+        long findings = new SyntheticArchiveGenerator().classes(100).seed(7)
+                .forEachClass((name, bytes) -> first.add(name)).expectedFindings();
+
+        assertEquals(findings, new SyntheticArchiveGenerator().classes(100).seed(7)
+                .forEachClass((name, bytes) -> second.add(name)).expectedFindings());
+        assertEquals(100, first.size());
+        assertEquals(first, second);
+    }
+
+    private static List<?> scan(File archive) throws Exception {
+        TestWriter writer = new TestWriter();
+        ScanEngine engine = new ScanEngine(writer);
+        engine.loadExtractors();
+        engine.scanArchive(archive);
+        return writer.getFindings();
+    }
+}
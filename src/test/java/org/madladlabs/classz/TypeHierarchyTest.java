@@ -0,0 +1,151 @@
+package org.madladlabs.classz;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewMethod;
+import javassist.Modifier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.madladlabs.classz.engine.ScanEngine;
+import org.madladlabs.classz.index.TypeHierarchy;
+import org.madladlabs.classz.model.Finding;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TypeHierarchyTest {
+
+    private static final File outputDir = new File("build/test-output-hierarchy");
+
+    @BeforeEach
+    public void generateClasses() throws Exception {
+        if (outputDir.exists()) {
+            Files.walk(outputDir.toPath())
+                    .map(Path::toFile)
+                    .sorted((a, b) -> -a.compareTo(b))
+                    .forEach(File::delete);
+        }
+        outputDir.mkdirs();
+
+        ClassPool pool = SampleClasses.newPool();
+        CtClass template = pool.get("org.springframework.jdbc.core.JdbcTemplate");
+        CtClass auditing = pool.makeClass("com.example.h.AuditingTemplate", template);
+        CtClass lookalike = SampleClasses.jdbcDao(pool, "com.example.h.LegacyJdbcTemplate",
+                "public int update(String sql, Object[] args) { return 0; }");
+        CtClass db = pool.makeClass("com.example.h.Db");
+        db.setModifiers(Modifier.PUBLIC | Modifier.ABSTRACT);
+        db.addInterface(pool.get("java.sql.Connection"));
+        CtClass dao = SampleClasses.jdbcDao(pool, "com.example.h.OrderDao",
+                "public void ship(com.example.h.AuditingTemplate jdbc, int id) {"
+                        + "  jdbc.update(\"UPDATE orders SET shipped = 1 WHERE id = ?\", new Object[]{ Integer.valueOf(id) });"
+                        + "}",
+                "public void legacy(com.example.h.LegacyJdbcTemplate jdbc, int id) {"
+                        + "  jdbc.update(\"UPDATE orders SET legacy = 1 WHERE id = ?\", new Object[]{ Integer.valueOf(id) });"
+                        + "}",
+                "public void cancel(com.example.h.Db db, int id) throws java.sql.SQLException {"
+                        + "  java.sql.PreparedStatement ps = db.prepareStatement(\"DELETE FROM orders WHERE id = ?\");"
+                        + "  ps.setInt(1, id);"
+                        + "}");
+        CtClass operations = pool.makeInterface("org.springframework.jdbc.core.JdbcOperations");
+        operations.addMethod(CtNewMethod.make("public abstract int update(String sql, Object[] args);", operations));
+        CtClass reports = SampleClasses.jdbcDao(pool, "com.example.h.ReportDao",
+                "public void archive(org.springframework.jdbc.core.JdbcOperations jdbc, int id) {"
+                        + "  jdbc.update(\"UPDATE reports SET archived = 1 WHERE id = ?\", new Object[]{ Integer.valueOf(id) });"
+                        + "}");
+        CtClass driver = pool.makeInterface("oracle.jdbc.OracleConnection", pool.get("java.sql.Connection"));
+        driver.addMethod(CtNewMethod.make(
+                "public abstract java.sql.PreparedStatement prepareStatement(String sql) throws java.sql.SQLException;", driver));
+        CtClass sessions = SampleClasses.jdbcDao(pool, "com.example.h.SessionDao",
+                "public void expire(oracle.jdbc.OracleConnection conn, int id) throws java.sql.SQLException {"
+                        + "  java.sql.PreparedStatement ps = conn.prepareStatement(\"DELETE FROM sessions WHERE id = ?\");"
+                        + "  ps.setInt(1, id);"
+                        + "}");
+        for (CtClass cc : List.of(template, auditing, lookalike, db, dao, operations, reports, sessions)) {   // not driver
+            cc.writeFile(outputDir.getPath());
+        }
+    }
+
+    @Test
+    public void testSubtypesThroughSuperclassesAndInterfaces() {
+        TypeHierarchy.Builder first = new TypeHierarchy.Builder();
+        first.add("a.Base", null, new String[]{"java.sql.Connection"});
+        first.add("a.Middle", "a.Base", new String[0]);
+        TypeHierarchy.Builder second = new TypeHierarchy.Builder();
+        second.add("a.Leaf", "a.Middle", new String[]{"a.Marker"});
+        second.add("a.Other", "java.lang.Object", new String[0]);
+        TypeHierarchy hierarchy = TypeHierarchy.build(List.of(first, second));
+
+        assertEquals(4, hierarchy.size());
+        for (int i = 0; i < 2; i++) {                  // the second round is answered from the memo
+            assertTrue(hierarchy.isSubtypeOf("a.Leaf", "java.sql.Connection"));
+            assertTrue(hierarchy.isSubtypeOf("a.Leaf", "a.Base"));
+            assertTrue(hierarchy.isSubtypeOf("a.Leaf", "a.Marker"));
+            assertFalse(hierarchy.isSubtypeOf("a.Base", "a.Leaf"));
+            assertFalse(hierarchy.isSubtypeOf("a.Other", "java.sql.Connection"));
+        }
+        assertTrue(hierarchy.isSubtypeOf("java.sql.Connection", "java.sql.Connection"));
+        assertTrue(hierarchy.isSubtypeOf("x.Unknown", "x.Unknown"), "A type is always its own subtype");
+        assertFalse(hierarchy.isSubtypeOf("x.Unknown", "java.sql.Connection"));
+        assertFalse(hierarchy.isSubtypeOf("a.Leaf", "x.Unknown"));
+        assertEquals(List.of("a.Base", "a.Middle", "a.Leaf"), hierarchy.subtypesOf("java.sql.Connection"));
+    }
+
+    @Test
+    public void testCyclicInputIsCutOff() {
+        TypeHierarchy.Builder builder = new TypeHierarchy.Builder();
+        builder.add("a.A", "a.B", new String[0]);
+        builder.add("a.B", "a.A", new String[0]);
+        TypeHierarchy hierarchy = TypeHierarchy.build(List.of(builder));
+
+        assertTrue(hierarchy.isSubtypeOf("a.A", "a.B"));
+        assertFalse(hierarchy.isSubtypeOf("a.A", "java.sql.Connection"));
+    }
+
+    @Test
+    public void testPrePassMatchesSubtypesInsteadOfNames() throws Exception {
+        assertEquals(List.of("ship", "cancel"), scanMethods(true));
+        assertEquals(List.of("ship", "legacy"), scanMethods(false),
+                "Without the hierarchy, types are matched on their names");
+    }
+
+    @Test
+    public void testDaoTypedAgainstJdbcOperationsIsScanned() throws Exception {
+        for (boolean prePass : new boolean[]{true, false}) {
+            assertEquals(List.of("archive"), scanMethods(prePass, "com.example.h.ReportDao"), "prePass " + prePass);
+        }
+    }
+
+    @Test
+    public void testTypesOutsideTheInputAreMatchedByName() throws Exception {
+        for (boolean prePass : new boolean[]{true, false}) {
+            assertEquals(List.of("expire"), scanMethods(prePass, "com.example.h.SessionDao"), "prePass " + prePass);
+        }
+        TypeHierarchy.Builder builder = new TypeHierarchy.Builder();
+        builder.add("a.Db", "oracle.jdbc.OracleConnection", new String[0]);
+        TypeHierarchy hierarchy = TypeHierarchy.build(List.of(builder));
+        assertTrue(hierarchy.contains("a.Db"));
+        assertFalse(hierarchy.contains("oracle.jdbc.OracleConnection"), "Only named as a supertype");
+        assertFalse(hierarchy.contains("x.Unknown"));
+    }
+
+    private static List<String> scanMethods(boolean prePass) throws Exception {
+        return scanMethods(prePass, "com.example.h.OrderDao");
+    }
+
+    private static List<String> scanMethods(boolean prePass, String className) throws Exception {
+        TestWriter writer = new TestWriter();
+        ScanEngine engine = new ScanEngine(writer);
+        engine.loadExtractors();
+        engine.setPrePass(prePass);
+        engine.scanDirectory(outputDir.toPath());
+        return writer.getFindings().stream()
+                .filter(f -> f.getClassName().equals(className))
+                .map(Finding::getMethodName)
+                .collect(Collectors.toList());
+    }
+}